@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm.bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uia.comm.protocol.AbstractProtocol;
+import uia.comm.protocol.BulkProtocolMonitor;
+import uia.comm.protocol.ProtocolEventArgs;
+import uia.comm.protocol.ProtocolEventHandler;
+import uia.comm.protocol.ProtocolMonitor;
+
+/**
+ * Throughput of protocol monitors.<br>
+ * One operation parses a stream of about 256K bytes. Counters report frames/s and bytes/s.
+ * Run with <code>-prof gc</code> to get allocation per operation.<br>
+ * Subclasses declare the parameters which make sense for their protocols, so no configuration is measured twice.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public abstract class AbstractProtocolBenchmark {
+
+    private static final int STREAM_SIZE = 256 * 1024;
+
+    protected byte[] stream;
+
+    protected int[] bounds;
+
+    protected BulkProtocolMonitor<Object> monitor;
+
+    private Handler handler;
+
+    /**
+     * Counters of each iteration.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+
+        public long frames;
+
+        public long errors;
+
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void clean() {
+            this.frames = 0;
+            this.errors = 0;
+            this.bytes = 0;
+        }
+    }
+
+    /**
+     * Get protocol name used by Frames.
+     *
+     * @return Protocol name.
+     */
+    protected abstract String getProtocol();
+
+    /**
+     * Get size of frames.
+     *
+     * @return Size in bytes.
+     */
+    protected abstract int getFrameSize();
+
+    /**
+     * Get percentage of frames followed by garbage or broken.
+     *
+     * @return Percentage.
+     */
+    protected abstract int getGarbage();
+
+    /**
+     * Check if compiled monitors are used.
+     *
+     * @return True if compiled.
+     */
+    protected abstract boolean isCompiled();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ArrayList<Integer> ends = new ArrayList<Integer>();
+        int count = Math.max(16, STREAM_SIZE / getFrameSize());
+        this.stream = Frames.stream(getProtocol(), getFrameSize(), count, getGarbage(), 1234L, ends);
+        this.bounds = new int[ends.size()];
+        for (int i = 0; i < this.bounds.length; i++) {
+            this.bounds[i] = ends.get(i);
+        }
+
+        AbstractProtocol<Object> p = Frames.create(getProtocol(), isCompiled(), getFrameSize());
+        this.handler = new Handler();
+        p.addMessageHandler(this.handler);
+        this.monitor = (BulkProtocolMonitor<Object>) p.createMonitor("bench");
+    }
+
+    @Benchmark
+    public void parse(Counters counters) {
+        long frames = this.handler.frames;
+        long errors = this.handler.errors;
+
+        read();
+
+        counters.frames += this.handler.frames - frames;
+        counters.errors += this.handler.errors - errors;
+        counters.bytes += this.stream.length;
+    }
+
+    /**
+     * Feed the whole stream to the monitor.
+     */
+    protected abstract void read();
+
+    /**
+     * Feed the stream by chunks.
+     *
+     * @param chunk Bytes of each read. 1: byte by byte, 0: the whole stream at once.
+     */
+    protected void read(int chunk) {
+        if (chunk == 1) {
+            for (byte b : this.stream) {
+                this.monitor.read(b);
+            }
+        }
+        else if (chunk <= 0) {
+            this.monitor.read(this.stream, 0, this.stream.length);
+        }
+        else {
+            for (int offset = 0; offset < this.stream.length; offset += chunk) {
+                this.monitor.read(this.stream, offset, Math.min(chunk, this.stream.length - offset));
+            }
+        }
+    }
+
+    static class Handler implements ProtocolEventHandler<Object> {
+
+        long frames;
+
+        long errors;
+
+        long checksum;
+
+        @Override
+        public void messageReceived(ProtocolMonitor<Object> monitor, ProtocolEventArgs args) {
+            this.frames++;
+            this.checksum += args.getData().length;
+            args.release();
+        }
+
+        @Override
+        public void messageError(ProtocolMonitor<Object> monitor, ProtocolEventArgs args) {
+            this.errors++;
+        }
+    }
+}
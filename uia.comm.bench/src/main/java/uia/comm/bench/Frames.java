@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import uia.comm.protocol.AbstractProtocol;
+import uia.comm.protocol.LenReader;
+import uia.comm.protocol.MultiProtocol;
+import uia.comm.protocol.MultiProtocolMonitor;
+import uia.comm.protocol.Protocol;
+import uia.comm.protocol.hl.HLProtocol;
+import uia.comm.protocol.ho.HOProtocol;
+import uia.comm.protocol.ht.HTProtocol;
+import uia.comm.protocol.htx.HTxProtocol;
+import uia.comm.protocol.ng.NGProtocol;
+import uia.comm.protocol.xml.XMLProtocol;
+
+/**
+ * Protocols and data streams used by benchmarks.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public final class Frames {
+
+    static final byte[] HT_HEAD = new byte[] { (byte) 0x8a, (byte) 0x8a };
+
+    static final byte[] HT_TAIL = new byte[] { (byte) 0xa8, (byte) 0xa8, (byte) 0xa8 };
+
+    static final byte HTX_HEAD = (byte) 0x7e;
+
+    static final int HTX_HC = 2;
+
+    static final byte HTX_TAIL = (byte) 0x7f;
+
+    static final byte[] HL_HEAD = new byte[] { 0x10, 0x01 };
+
+    static final byte[] HO_HEAD = new byte[] { (byte) 0xfa, (byte) 0xfb };
+
+    static final String XML_ROOT = "root";
+
+    private static final String[] MULTI = { "HT", "HL", "XML" };
+
+    private Frames() {
+    }
+
+    /**
+     * Create a protocol.
+     *
+     * @param name HT, HTx, HL, HO, XML, NG or MULTI.
+     * @param compiled Use compiled monitors or not.
+     * @param frameSize Size of frames.
+     * @return The protocol.
+     */
+    public static AbstractProtocol<Object> create(String name, boolean compiled, int frameSize) {
+        if ("MULTI".equals(name)) {
+            ArrayList<Protocol<MultiProtocolMonitor<Object>>> ps = new ArrayList<Protocol<MultiProtocolMonitor<Object>>>();
+            for (String item : MULTI) {
+                ps.add(Frames.<MultiProtocolMonitor<Object>> createOne(item, compiled, frameSize));
+            }
+            return new MultiProtocol<Object>(ps);
+        }
+        return createOne(name, compiled, frameSize);
+    }
+
+    /**
+     * Create a data stream.
+     *
+     * @param name HT, HTx, HL, HO, XML, NG or MULTI.
+     * @param frameSize Size of frames.
+     * @param count Number of frames.
+     * @param garbage Percentage of frames followed by garbage or broken.
+     * @param seed Random seed.
+     * @param bounds End offsets of frames and garbage in the stream.
+     * @return The stream.
+     */
+    public static byte[] stream(String name, int frameSize, int count, int garbage, long seed, List<Integer> bounds) {
+        Random random = new Random(seed);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            String item = "MULTI".equals(name) ? MULTI[i % MULTI.length] : name;
+            byte[] frame = frame(item, frameSize, random);
+            if (random.nextInt(100) < garbage) {
+                if (random.nextBoolean() && !"NG".equals(item)) {
+                    // broken frame, monitors must resync on the next head.
+                    out.write(frame, 0, frame.length - 1 - random.nextInt(Math.max(1, frame.length / 2)));
+                }
+                else {
+                    out.write(frame, 0, frame.length);
+                }
+                bounds.add(out.size());
+                byte[] noise = noise(random, 1 + random.nextInt(32));
+                out.write(noise, 0, noise.length);
+            }
+            else {
+                out.write(frame, 0, frame.length);
+            }
+            bounds.add(out.size());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Create a frame.
+     *
+     * @param name HT, HTx, HL, HO, XML or NG.
+     * @param size Size of the frame.
+     * @param random Random.
+     * @return The frame.
+     */
+    public static byte[] frame(String name, int size, Random random) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if ("HT".equals(name)) {
+            write(out, HT_HEAD);
+            write(out, body(random, size - HT_HEAD.length - HT_TAIL.length));
+            write(out, HT_TAIL);
+        }
+        else if ("HTx".equals(name)) {
+            for (int i = 0; i < HTX_HC; i++) {
+                out.write(HTX_HEAD);
+            }
+            write(out, body(random, size - HTX_HC - 1));
+            out.write(HTX_TAIL);
+        }
+        else if ("HL".equals(name)) {
+            int len = Math.max(0, size - HL_HEAD.length - 2);
+            write(out, HL_HEAD);
+            out.write(len >> 8);
+            out.write(len);
+            write(out, body(random, len));
+        }
+        else if ("HO".equals(name)) {
+            write(out, HO_HEAD);
+            write(out, body(random, size - HO_HEAD.length));
+        }
+        else if ("XML".equals(name)) {
+            byte[] head = ("<" + XML_ROOT + ">").getBytes();
+            byte[] tail = ("</" + XML_ROOT + ">").getBytes();
+            write(out, head);
+            write(out, body(random, size - head.length - tail.length));
+            write(out, tail);
+        }
+        else {
+            write(out, body(random, size));
+        }
+        return out.toByteArray();
+    }
+
+    private static <C> AbstractProtocol<C> createOne(String name, boolean compiled, int frameSize) {
+        if ("HT".equals(name)) {
+            HTProtocol<C> p = new HTProtocol<C>(HT_HEAD, HT_TAIL);
+            p.setCompiled(compiled);
+            return p;
+        }
+        if ("HTx".equals(name)) {
+            HTxProtocol<C> p = new HTxProtocol<C>(HTX_HEAD, HTX_HC, HTX_TAIL);
+            p.setCompiled(compiled);
+            return p;
+        }
+        if ("HL".equals(name)) {
+            HLProtocol<C> p = new HLProtocol<C>(4, 0, 2, 2, new LenReader() {
+
+                @Override
+                public int read(byte[] data) {
+                    return ((data[0] & 0xff) << 8) + (data[1] & 0xff);
+                }
+            }, HL_HEAD);
+            p.setCompiled(compiled);
+            return p;
+        }
+        if ("HO".equals(name)) {
+            return new HOProtocol<C>(HO_HEAD, frameSize);
+        }
+        if ("XML".equals(name)) {
+            XMLProtocol<C> p = new XMLProtocol<C>(XML_ROOT);
+            p.setCompiled(compiled);
+            return p;
+        }
+        if ("NG".equals(name)) {
+            return new NGProtocol<C>();
+        }
+        throw new IllegalArgumentException("unknown protocol: " + name);
+    }
+
+    /**
+     * Body bytes are 0x20 ~ 0x3b, so they never look like a head or a tail.
+     */
+    private static byte[] body(Random random, int len) {
+        byte[] body = new byte[Math.max(0, len)];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) (0x20 + random.nextInt(0x1c));
+        }
+        return body;
+    }
+
+    /**
+     * Noise includes first bytes of heads to make monitors start and drop partial messages.
+     */
+    private static byte[] noise(Random random, int len) {
+        byte[] starts = new byte[] { HT_HEAD[0], HTX_HEAD, HL_HEAD[0], HO_HEAD[0], '<', 0x00, (byte) 0xff };
+        byte[] noise = new byte[len];
+        for (int i = 0; i < len; i++) {
+            noise[i] = random.nextInt(4) == 0 ? starts[random.nextInt(starts.length)] : (byte) random.nextInt(256);
+        }
+        return noise;
+    }
+
+    private static void write(ByteArrayOutputStream out, byte[] data) {
+        out.write(data, 0, data.length);
+    }
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm.bench;
+
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Throughput of protocols without compiled monitors. MULTI combines interpreted HT, HL and XML monitors.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class PlainProtocolBenchmark extends AbstractProtocolBenchmark {
+
+    @Param({ "HO", "MULTI" })
+    public String protocol;
+
+    /**
+     * Size of frames: small, medium and large.
+     */
+    @Param({ "32", "1024", "65536" })
+    public int frameSize;
+
+    /**
+     * Bytes of each read. 1: byte by byte, 0: the whole stream at once.
+     */
+    @Param({ "1", "64", "0" })
+    public int chunk;
+
+    /**
+     * Percentage of frames followed by garbage or broken.
+     */
+    @Param({ "0", "20" })
+    public int garbage;
+
+    @Override
+    protected String getProtocol() {
+        return this.protocol;
+    }
+
+    @Override
+    protected int getFrameSize() {
+        return this.frameSize;
+    }
+
+    @Override
+    protected int getGarbage() {
+        return this.garbage;
+    }
+
+    @Override
+    protected boolean isCompiled() {
+        return false;
+    }
+
+    @Override
+    protected void read() {
+        read(this.chunk);
+    }
+}
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.net.SocketException;
+
+/**
+ * Client which gets the reply later without blocking.<br>
+ * It is separated from CommClient, so clients implementing CommClient only keep working.
+ *
+ * @author Kyle K. Lin
+ *
+ * @param <C>
+ */
+public interface AsyncCommClient<C> extends CommClient<C> {
+
+    /**
+     * send data to socket server and get the reply later.
+     * The future is completed by the thread handling the reply, or failed with TimeoutException when no reply in time.
+     * Listeners run on those threads, so they must be short.
+     *
+     * @param data Data.
+     * @param txId Transaction id.
+     * @param timeout Timeout milliseconds.
+     * @return Future of the reply.
+     * @throws SocketException Raise when server is not connected.
+     */
+    public abstract CommFuture<byte[]> sendAsync(final byte[] data, String txId, long timeout) throws SocketException;
+}
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Open addressing hash table of pending call outs keyed by numeric transaction id.<br>
+ * Keys are kept in a long array with linear probing, so put, get and remove create no object.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+class CallOutTable {
+
+    private long[] keys;
+
+    private MessageCallOut[] values;
+
+    private int mask;
+
+    private int size;
+
+    CallOutTable() {
+        this(64);
+    }
+
+    CallOutTable(int capacity) {
+        int cap = 16;
+        while (cap < capacity * 2) {
+            cap <<= 1;
+        }
+        this.keys = new long[cap];
+        this.values = new MessageCallOut[cap];
+        this.mask = cap - 1;
+    }
+
+    synchronized int size() {
+        return this.size;
+    }
+
+    synchronized boolean contains(long txId) {
+        return this.values[indexOf(txId)] != null;
+    }
+
+    synchronized MessageCallOut get(long txId) {
+        return this.values[indexOf(txId)];
+    }
+
+    /**
+     * Put a call out.
+     *
+     * @param txId Transaction id.
+     * @param callOut Call out.
+     * @return Previous call out of the transaction id or null.
+     */
+    synchronized MessageCallOut put(long txId, MessageCallOut callOut) {
+        int idx = indexOf(txId);
+        MessageCallOut prev = this.values[idx];
+        this.keys[idx] = txId;
+        this.values[idx] = callOut;
+        if (prev == null && ++this.size * 2 > this.keys.length) {
+            resize(this.keys.length << 1);
+        }
+        return prev;
+    }
+
+    synchronized MessageCallOut remove(long txId) {
+        int idx = indexOf(txId);
+        MessageCallOut prev = this.values[idx];
+        if (prev != null) {
+            delete(idx);
+        }
+        return prev;
+    }
+
+    /**
+     * Remove the call out only if it is still the one of the transaction id.
+     *
+     * @param txId Transaction id.
+     * @param callOut Call out.
+     * @return True if removed.
+     */
+    synchronized boolean remove(long txId, MessageCallOut callOut) {
+        int idx = indexOf(txId);
+        if (this.values[idx] != callOut || callOut == null) {
+            return false;
+        }
+        delete(idx);
+        return true;
+    }
+
+    /**
+     * Remove all call outs.
+     *
+     * @return Removed call outs.
+     */
+    synchronized List<MessageCallOut> clear() {
+        List<MessageCallOut> result = new ArrayList<MessageCallOut>(this.size);
+        for (int i = 0; i < this.values.length; i++) {
+            if (this.values[i] != null) {
+                result.add(this.values[i]);
+                this.values[i] = null;
+            }
+        }
+        this.size = 0;
+        return result;
+    }
+
+    private int indexOf(long txId) {
+        int idx = hash(txId) & this.mask;
+        while (this.values[idx] != null && this.keys[idx] != txId) {
+            idx = (idx + 1) & this.mask;
+        }
+        return idx;
+    }
+
+    private void delete(int idx) {
+        this.values[idx] = null;
+        this.size--;
+
+        // shift back the following entries of the cluster, so no tombstone is needed.
+        int gap = idx;
+        int i = (idx + 1) & this.mask;
+        while (this.values[i] != null) {
+            int home = hash(this.keys[i]) & this.mask;
+            if (((i - home) & this.mask) >= ((i - gap) & this.mask)) {
+                this.keys[gap] = this.keys[i];
+                this.values[gap] = this.values[i];
+                this.values[i] = null;
+                gap = i;
+            }
+            i = (i + 1) & this.mask;
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = this.keys;
+        MessageCallOut[] oldValues = this.values;
+        this.keys = new long[capacity];
+        this.values = new MessageCallOut[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int idx = indexOf(oldKeys[i]);
+                this.keys[idx] = oldKeys[i];
+                this.values[idx] = oldValues[i];
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
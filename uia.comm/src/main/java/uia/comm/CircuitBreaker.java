@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+/**
+ * Circuit breaker of a member of a client group.<br>
+ * After continuous failures the circuit is opened and the member is skipped. When the open time passes, one request is allowed to try the member again.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class CircuitBreaker {
+
+    /**
+     * State of circuit.
+     */
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+
+    private final long openMillis;
+
+    private State state;
+
+    private int failures;
+
+    private long openedTime;
+
+    private boolean trying;
+
+    /**
+     * Constructor.
+     *
+     * @param failureThreshold Number of continuous failures to open the circuit.
+     * @param openMillis Milliseconds to keep the circuit open.
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = Math.max(0, openMillis);
+        this.state = State.CLOSED;
+    }
+
+    /**
+     * Get state.
+     *
+     * @return State.
+     */
+    public synchronized State getState() {
+        return this.state;
+    }
+
+    /**
+     * Get number of continuous failures.
+     *
+     * @return Number of failures.
+     */
+    public synchronized int getFailures() {
+        return this.failures;
+    }
+
+    /**
+     * Check if a request can be sent. An open circuit allows one trial request after the open time.
+     *
+     * @return True if allowed.
+     */
+    public synchronized boolean allowRequest() {
+        switch (this.state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - this.openedTime < this.openMillis) {
+                    return false;
+                }
+                this.state = State.HALF_OPEN;
+                this.trying = true;
+                return true;
+            default:
+                if (this.trying) {
+                    return false;
+                }
+                this.trying = true;
+                return true;
+        }
+    }
+
+    /**
+     * Record a success. The circuit is closed.
+     */
+    public synchronized void onSuccess() {
+        this.failures = 0;
+        this.trying = false;
+        this.state = State.CLOSED;
+    }
+
+    /**
+     * Record a failure. The circuit is opened if the trial request failed or too many continuous failures.
+     */
+    public synchronized void onFailure() {
+        this.failures++;
+        this.trying = false;
+        if (this.state == State.HALF_OPEN || this.failures >= this.failureThreshold) {
+            this.state = State.OPEN;
+            this.openedTime = System.currentTimeMillis();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s, failures:%s", this.state, this.failures);
+    }
+}
@@ -0,0 +1,278 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Result of an asynchronous communication operation.<br>
+ * Listeners are notified once, by the thread which completes the future, or immediately if the future is done already.
+ *
+ * @author Kyle K. Lin
+ *
+ * @param <V> Type of result.
+ */
+public class CommFuture<V> implements Future<V> {
+
+    private final static Logger logger = Logger.getLogger(CommFuture.class);
+
+    private final Object key = new Object();
+
+    private int state;  // 0: running, 1: done, -1: failed, -2: cancelled.
+
+    private V result;
+
+    private Throwable cause;
+
+    private List<Listener<V>> listeners;
+
+    /**
+     * Constructor.
+     */
+    public CommFuture() {
+        this.state = 0;
+    }
+
+    /**
+     * Create a future completed already.
+     *
+     * @param result The result.
+     * @return The future.
+     */
+    public static <V> CommFuture<V> done(V result) {
+        CommFuture<V> future = new CommFuture<V>();
+        future.setDone(result);
+        return future;
+    }
+
+    /**
+     * Create a future failed already.
+     *
+     * @param cause The cause.
+     * @return The future.
+     */
+    public static <V> CommFuture<V> failed(Throwable cause) {
+        CommFuture<V> future = new CommFuture<V>();
+        future.setFailed(cause);
+        return future;
+    }
+
+    /**
+     * Complete this future.
+     *
+     * @param result The result.
+     * @return True if this call completes the future.
+     */
+    public boolean setDone(V result) {
+        List<Listener<V>> ls;
+        synchronized (this.key) {
+            if (this.state != 0) {
+                return false;
+            }
+            this.state = 1;
+            this.result = result;
+            ls = this.listeners;
+            this.listeners = null;
+            this.key.notifyAll();
+        }
+        notifyListeners(ls);
+        return true;
+    }
+
+    /**
+     * Fail this future.
+     *
+     * @param cause The cause.
+     * @return True if this call completes the future.
+     */
+    public boolean setFailed(Throwable cause) {
+        List<Listener<V>> ls;
+        synchronized (this.key) {
+            if (this.state != 0) {
+                return false;
+            }
+            this.state = -1;
+            this.cause = cause;
+            ls = this.listeners;
+            this.listeners = null;
+            this.key.notifyAll();
+        }
+        notifyListeners(ls);
+        return true;
+    }
+
+    /**
+     * Add a listener notified when this future is completed.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(Listener<V> listener) {
+        synchronized (this.key) {
+            if (this.state == 0) {
+                if (this.listeners == null) {
+                    this.listeners = new ArrayList<Listener<V>>(1);
+                }
+                this.listeners.add(listener);
+                return;
+            }
+        }
+        notifyListener(listener);
+    }
+
+    /**
+     * Check if this future is completed successfully.
+     *
+     * @return True if completed successfully.
+     */
+    public boolean isSuccess() {
+        synchronized (this.key) {
+            return this.state == 1;
+        }
+    }
+
+    /**
+     * Get the cause of failure.
+     *
+     * @return The cause or null if not failed.
+     */
+    public Throwable getCause() {
+        synchronized (this.key) {
+            return this.cause;
+        }
+    }
+
+    /**
+     * Get the result without waiting.
+     *
+     * @return The result or null if not completed successfully.
+     */
+    public V getNow() {
+        synchronized (this.key) {
+            return this.result;
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        List<Listener<V>> ls;
+        synchronized (this.key) {
+            if (this.state != 0) {
+                return false;
+            }
+            this.state = -2;
+            ls = this.listeners;
+            this.listeners = null;
+            this.key.notifyAll();
+        }
+        notifyListeners(ls);
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        synchronized (this.key) {
+            return this.state == -2;
+        }
+    }
+
+    @Override
+    public boolean isDone() {
+        synchronized (this.key) {
+            return this.state != 0;
+        }
+    }
+
+    @Override
+    public V get() throws InterruptedException, ExecutionException {
+        synchronized (this.key) {
+            while (this.state == 0) {
+                this.key.wait();
+            }
+            return report();
+        }
+    }
+
+    @Override
+    public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (this.key) {
+            while (this.state == 0) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    throw new TimeoutException();
+                }
+                TimeUnit.NANOSECONDS.timedWait(this.key, left);
+            }
+            return report();
+        }
+    }
+
+    private V report() throws ExecutionException {
+        if (this.state == -2) {
+            throw new CancellationException();
+        }
+        if (this.state == -1) {
+            throw new ExecutionException(this.cause);
+        }
+        return this.result;
+    }
+
+    private void notifyListeners(List<Listener<V>> ls) {
+        if (ls == null) {
+            return;
+        }
+        for (Listener<V> listener : ls) {
+            notifyListener(listener);
+        }
+    }
+
+    private void notifyListener(Listener<V> listener) {
+        try {
+            listener.completed(this);
+        }
+        catch (Exception ex) {
+            logger.error("future listener failed", ex);
+        }
+    }
+
+    /**
+     * Listener of CommFuture.
+     *
+     * @author Kyle K. Lin
+     *
+     * @param <V> Type of result.
+     */
+    public static interface Listener<V> {
+
+        /**
+         * Executed when the future is completed, failed or cancelled.
+         *
+         * @param future The future.
+         */
+        public void completed(CommFuture<V> future);
+    }
+}
@@ -5,21 +5,19 @@ import java.net.InetSocketAddress;
 import java.net.SocketException;
 import java.nio.channels.DatagramChannel;
 import java.util.HashMap;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.log4j.Logger;
 
+import uia.comm.protocol.AbstractProtocol;
 import uia.comm.protocol.Protocol;
 import uia.comm.protocol.ProtocolEventArgs;
 import uia.comm.protocol.ProtocolEventHandler;
 import uia.comm.protocol.ProtocolMonitor;
 import uia.utils.ByteUtils;
 
-public class DatagramClient implements ProtocolEventHandler<DatagramDataController>, CommClient<DatagramDataController> {
+public class DatagramClient implements ProtocolEventHandler<DatagramDataController>, AsyncCommClient<DatagramDataController> {
 
     private final static Logger logger = Logger.getLogger(DatagramClient.class);
 
@@ -43,6 +41,12 @@ public class DatagramClient implements ProtocolEventHandler<DatagramDataControll
 
     private int port;
 
+    private Executor executor;
+
+    private HashedWheelTimer timer;
+
+    private SocketDataSelectorGroup reactorGroup;
+
     /**
      * The constructor.
      *
@@ -52,8 +56,13 @@ public class DatagramClient implements ProtocolEventHandler<DatagramDataControll
      */
     public DatagramClient(final Protocol<DatagramDataController> protocol, final MessageManager manager, String aliasName) {
         this.aliasName = aliasName;
+        this.executor = DispatchExecutor.shared();
+        this.timer = HashedWheelTimer.shared();
+        this.reactorGroup = SocketDataSelectorGroup.shared();
         this.protocol = protocol;
-        this.protocol.addMessageHandler(this);
+        if (!(protocol instanceof AbstractProtocol)) {
+            this.protocol.addMessageHandler(this);
+        }
         this.manager = manager;
         this.callIns = new HashMap<String, MessageCallIn<DatagramDataController>>();
         this.callOuts = new HashMap<String, MessageCallOut>();
@@ -65,6 +74,25 @@ public class DatagramClient implements ProtocolEventHandler<DatagramDataControll
         return this.aliasName;
     }
 
+    /**
+     * Get the reactors reading replies of this client.
+     *
+     * @return The reactors or null if replies are not read.
+     */
+    public SocketDataSelectorGroup getReactorGroup() {
+        return this.reactorGroup;
+    }
+
+    /**
+     * Set the reactors reading replies of this client. Default is SocketDataSelectorGroup.shared().<br>
+     * Null means replies are not read. It takes effect when the client is connected.
+     *
+     * @param reactorGroup The reactors.
+     */
+    public void setReactorGroup(SocketDataSelectorGroup reactorGroup) {
+        this.reactorGroup = reactorGroup;
+    }
+
     /**
      * Get address.
      * @return Address.
@@ -145,6 +173,19 @@ public class DatagramClient implements ProtocolEventHandler<DatagramDataControll
                     this.ch,
                     this.manager,
                     this.protocol.createMonitor(this.aliasName));
+            if (this.protocol instanceof AbstractProtocol) {
+                ((AbstractProtocol<DatagramDataController>) this.protocol).addMessageHandler(this.controller, this);
+            }
+            if (this.reactorGroup != null) {
+                final DatagramDataController controller = this.controller;
+                this.reactorGroup.register(controller, new Runnable() {
+
+                    @Override
+                    public void run() {
+                        closed(controller);
+                    }
+                });
+            }
 
             logger.info(String.format("%s> connect to %s:%s",
                     this.aliasName,
@@ -172,6 +213,42 @@ public class DatagramClient implements ProtocolEventHandler<DatagramDataControll
         return this.protocol;
     }
 
+    /**
+     * Get the executor running call in, call out and event handlers.
+     *
+     * @return The executor.
+     */
+    public Executor getExecutor() {
+        return this.executor;
+    }
+
+    /**
+     * Set the executor running call in, call out and event handlers. Default is DispatchExecutor.shared().
+     *
+     * @param executor The executor.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor == null ? DispatchExecutor.shared() : executor;
+    }
+
+    /**
+     * Get the timer watching call out timeouts.
+     *
+     * @return The timer.
+     */
+    public HashedWheelTimer getTimer() {
+        return this.timer;
+    }
+
+    /**
+     * Set the timer watching call out timeouts. Default is HashedWheelTimer.shared().
+     *
+     * @param timer The timer.
+     */
+    public void setTimer(HashedWheelTimer timer) {
+        this.timer = timer == null ? HashedWheelTimer.shared() : timer;
+    }
+
     @Override
     public void registerCallin(MessageCallIn<DatagramDataController> callIn) {
         this.callIns.put(callIn.getCmdName(), callIn);
@@ -189,12 +266,16 @@ public class DatagramClient implements ProtocolEventHandler<DatagramDataControll
         }
 
         try {
+            this.ch.close();
             logger.info(String.format("%s> disconnect", this.aliasName));
         }
         catch (Exception ex) {
             logger.error(String.format("%s> disconnect - %s", this.aliasName, ex));
         }
         finally {
+            if (this.protocol instanceof AbstractProtocol) {
+                ((AbstractProtocol<DatagramDataController>) this.protocol).removeMessageHandler(this.controller);
+            }
             this.started = false;
             this.controller = null;
             this.ch = null;
@@ -237,35 +318,28 @@ public class DatagramClient implements ProtocolEventHandler<DatagramDataControll
             throw new SocketException(this.aliasName + "> is not started.");
         }
 
-        MessageCallOutConcurrent callout = new MessageCallOutConcurrent(getName(), txId, timeout);
-        ExecutorService threadPool = Executors.newSingleThreadExecutor();
-
-        try {
-            synchronized (this.callOuts) {
-                this.callOuts.put(txId, callout);
-            }
+        MessageCallOutFuture future = register(txId, timeout);
+        if (!this.controller.send(data, retry)) {
+            future.cancel(false);
+            logger.debug(String.format("%s> send %s failure", this.aliasName, ByteUtils.toHexString(data, 100)));
+            throw new SocketException(this.aliasName + "> send failure");
+        }
+        return future.await(timeout);
+    }
 
-            if (this.controller.send(data, retry)) {
-                try {
-                    Future<byte[]> future = threadPool.submit(callout);
-                    return future.get();
-                }
-                catch (Exception e) {
-                    logger.error(String.format("%s> callout failed", this.aliasName), e);
-                    return null;
-                }
-            }
-            else {
-                logger.debug(String.format("%s> send %s failure", this.aliasName, ByteUtils.toHexString(data, 100)));
-                throw new SocketException(this.aliasName + "> send failure");
-            }
+    @Override
+    public CommFuture<byte[]> sendAsync(final byte[] data, final String txId, long timeout) throws SocketException {
+        if (!this.started) {
+            throw new SocketException(this.aliasName + "> is not started.");
         }
-        finally {
-            threadPool.shutdown();
-            synchronized (this.callOuts) {
-                this.callOuts.remove(txId);
-            }
+
+        MessageCallOutFuture future = register(txId, timeout);
+        if (!this.controller.send(data, 1)) {
+            future.cancel(false);
+            logger.debug(String.format("%s> send %s failure", this.aliasName, ByteUtils.toHexString(data, 100)));
+            throw new SocketException(this.aliasName + "> send failure");
         }
+        return future;
     }
 
     @Override
@@ -280,34 +354,39 @@ public class DatagramClient implements ProtocolEventHandler<DatagramDataControll
         }
 
         final String tx = callOut.getTxId();
+        final MessageCallOutTimed timed = new MessageCallOutTimed(callOut);
         synchronized (this.callOuts) {
-            this.callOuts.put(tx, callOut);
+            this.callOuts.put(tx, timed);
         }
 
         if (this.controller.send(data, retry)) {
-            Timer timer = new Timer();
-            timer.schedule(new TimerTask() {
+            timed.watch(this.timer, timeout, new Runnable() {
 
                 @Override
                 public void run() {
-                    MessageCallOut out = null;
                     synchronized (DatagramClient.this.callOuts) {
-                        if (DatagramClient.this.callOuts.containsKey(tx)) {
-                            logger.debug(String.format("%s> tx:%s callOut timeout", DatagramClient.this.aliasName, callOut.getTxId()));
-                            out = DatagramClient.this.callOuts.remove(tx);
+                        // a newer call out with the same tx is not my business.
+                        if (DatagramClient.this.callOuts.get(tx) != timed) {
+                            return;
                         }
+                        DatagramClient.this.callOuts.remove(tx);
                     }
-                    if (out != null) {
-                        try {
-                            out.timeout();
-                        }
-                        catch (Exception ex) {
+                    logger.debug(String.format("%s> tx:%s callOut timeout", DatagramClient.this.aliasName, tx));
+                    dispatch(new Runnable() {
 
+                        @Override
+                        public void run() {
+                            try {
+                                timed.timeout();
+                            }
+                            catch (Exception ex) {
+
+                            }
                         }
-                    }
+                    }, null);
                 }
 
-            }, timeout);
+            });
             return true;
         }
         else {
@@ -350,14 +429,14 @@ public class DatagramClient implements ProtocolEventHandler<DatagramDataControll
             }
 
             logger.debug(String.format("%s> cmd:%s callIn", this.aliasName, cmd));
-            new Thread(new Runnable() {
+            dispatch(new Runnable() {
 
                 @Override
                 public void run() {
                     callIn.execute(received, DatagramClient.this.controller);
                 }
 
-            }).start();
+            }, null);
         }
         else {
             String tx = this.manager.findTx(received);
@@ -372,14 +451,19 @@ public class DatagramClient implements ProtocolEventHandler<DatagramDataControll
             }
 
             logger.debug(String.format("%s> cmd:%s tx:%s callout reply", this.aliasName, cmd, tx));
-            new Thread(new Runnable() {
+            if (callOut instanceof MessageCallOutFuture) {
+                // the caller of sync send is waiting for the reply, just wake it up.
+                ((MessageCallOutFuture) callOut).execute(received, args);
+                return;
+            }
+            dispatch(new Runnable() {
 
                 @Override
                 public void run() {
                     callOut.execute(received);
                 }
 
-            }).start();
+            }, null);
         }
     }
 
@@ -394,4 +478,51 @@ public class DatagramClient implements ProtocolEventHandler<DatagramDataControll
                 monitor.getProtocol().getAliasName()));
         logger.debug("error data: " + ByteUtils.toHexString(args.getData(), "-"));
     }
-}
\ No newline at end of file
+
+    private MessageCallOutFuture register(final String txId, long timeout) {
+        final MessageCallOutFuture future = new MessageCallOutFuture(this.aliasName, txId);
+        MessageCallOut replaced;
+        synchronized (this.callOuts) {
+            replaced = this.callOuts.put(txId, future);
+        }
+        MessageCallOutFuture.replaced(replaced);
+        future.addListener(new CommFuture.Listener<byte[]>() {
+
+            @Override
+            public void completed(CommFuture<byte[]> f) {
+                synchronized (DatagramClient.this.callOuts) {
+                    if (DatagramClient.this.callOuts.get(txId) == future) {
+                        DatagramClient.this.callOuts.remove(txId);
+                    }
+                }
+            }
+        });
+        future.watch(this.timer, timeout);
+        return future;
+    }
+
+    private void closed(final DatagramDataController controller) {
+        // the reactor is shared, don't block it.
+        dispatch(new Runnable() {
+
+            @Override
+            public void run() {
+                if (DatagramClient.this.controller == controller) {
+                    disconnect();
+                }
+            }
+        }, null);
+    }
+
+    private void dispatch(Runnable task, ProtocolEventArgs args) {
+        try {
+            this.executor.execute(task);
+        }
+        catch (RejectedExecutionException ex) {
+            logger.error(String.format("%s> dispatch rejected, %s", this.aliasName, this.executor));
+            if (args != null) {
+                args.release();
+            }
+        }
+    }
+}
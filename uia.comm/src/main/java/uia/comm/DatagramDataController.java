@@ -19,11 +19,13 @@
 package uia.comm;
 
 import java.io.IOException;
+import java.net.PortUnreachableException;
 import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
 
 import org.apache.log4j.Logger;
 
+import uia.comm.protocol.AbstractProtocolMonitor;
 import uia.comm.protocol.ProtocolMonitor;
 import uia.utils.ByteUtils;
 
@@ -105,12 +107,45 @@ public class DatagramDataController implements DataController {
     }
 
     synchronized void receive(byte[] data) throws IOException {
-        for (byte b : data) {
-            this.monitor.read(b);
-        }
+        AbstractProtocolMonitor.feed(this.monitor, data, 0, data.length);
         this.monitor.readEnd();
     }
 
+    /**
+     * Receive datagrams from the connected channel until no more is ready.<br>
+     * The buffer is owned by the reactor thread, each datagram is one message.
+     *
+     * @param buffer Heap buffer to read data.
+     * @return False if the channel is closed.
+     * @throws IOException
+     */
+    synchronized boolean receive(ByteBuffer buffer) throws IOException {
+        DatagramChannel ch = this.ch;
+        if (ch == null || !ch.isOpen()) {
+            return false;
+        }
+
+        int len;
+        do {
+            buffer.clear();
+            try {
+                len = ch.read(buffer);
+            }
+            catch (PortUnreachableException ex) {
+                // ICMP from remote, the channel is still usable.
+                logger.debug(String.format("%s> port unreachable", this.name));
+                return true;
+            }
+            if (len > 0) {
+                this.lastUpdate = System.currentTimeMillis();
+                AbstractProtocolMonitor.feed(this.monitor, buffer.array(), buffer.arrayOffset(), len);
+                this.monitor.readEnd();
+            }
+        }
+        while (len > 0);
+        return len >= 0;
+    }
+
     DatagramChannel getChannel() {
         return this.ch;
     }
@@ -9,6 +9,8 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.util.Iterator;
 import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.log4j.Logger;
 
@@ -45,6 +47,8 @@ public class DatagramServer implements ProtocolEventHandler<DatagramDataControll
 
     private int idleTime;
 
+    private Executor executor;
+
     public DatagramServer(Protocol<DatagramDataController> protocol, int port, MessageManager manager, String aliasName) throws Exception {
         this(protocol, port, manager, aliasName, ConnectionStyle.NORMAL);
     }
@@ -60,6 +64,7 @@ public class DatagramServer implements ProtocolEventHandler<DatagramDataControll
      */
     public DatagramServer(Protocol<DatagramDataController> protocol, int port, MessageManager manager, String aliasName, ConnectionStyle connectionStyle) throws Exception {
         this.aliasName = aliasName;
+        this.executor = DispatchExecutor.shared();
         this.protocol = protocol;
         this.protocol.addMessageHandler(this);
         this.manager = manager;
@@ -72,6 +77,24 @@ public class DatagramServer implements ProtocolEventHandler<DatagramDataControll
         this.port = port;
     }
 
+    /**
+     * Get the executor running call in, call out and event handlers.
+     *
+     * @return The executor.
+     */
+    public Executor getExecutor() {
+        return this.executor;
+    }
+
+    /**
+     * Set the executor running call in, call out and event handlers. Default is DispatchExecutor.shared().
+     *
+     * @param executor The executor.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor == null ? DispatchExecutor.shared() : executor;
+    }
+
     public void connect() throws IOException {
         this.serverSelector = Selector.open();
 
@@ -97,19 +120,24 @@ public class DatagramServer implements ProtocolEventHandler<DatagramDataControll
     }
 
     @Override
-    public synchronized void messageReceived(final ProtocolMonitor<DatagramDataController> monitor, ProtocolEventArgs args) {
+    public synchronized void messageReceived(final ProtocolMonitor<DatagramDataController> monitor, final ProtocolEventArgs args) {
         if (args.getData() == null || args.getData().length == 0) {
             return;
         }
 
         if (this.controllers.get(monitor.getController().getName()) == null) {
+            args.release();
             return;
         }
 
         final byte[] received = this.manager.decode(args.getData());
+        if (received != args.getData()) {
+            args.release();
+        }
         System.out.println(new String(received));
         if (!this.manager.validate(received)) {
             logger.debug(String.format("%s> data wrong: %s", this.aliasName, ByteUtils.toHexString(received, "-")));
+            args.release();
             return;
         }
 
@@ -121,6 +149,7 @@ public class DatagramServer implements ProtocolEventHandler<DatagramDataControll
                     monitor.getName(),
                     monitor.getProtocol().getAliasName(),
                     cmd));
+            args.release();
             return;
         }
 
@@ -134,6 +163,7 @@ public class DatagramServer implements ProtocolEventHandler<DatagramDataControll
                         monitor.getName(),
                         monitor.getProtocol().getAliasName(),
                         cmd));
+                args.release();
                 return;
             }
 
@@ -142,14 +172,19 @@ public class DatagramServer implements ProtocolEventHandler<DatagramDataControll
                     monitor.getName(),
                     monitor.getProtocol().getAliasName(),
                     cmd));
-            new Thread(new Runnable() {
+            dispatch(new Runnable() {
 
                 @Override
                 public void run() {
-                    callIn.execute(received, monitor.getController());
+                    try {
+                        callIn.execute(received, monitor.getController());
+                    }
+                    finally {
+                        args.release();
+                    }
                 }
 
-            }).start();
+            }, args);
         }
         else {
             TreeMap<String, MessageCallOut> callOuts = this.clientCallouts.get(monitor.getController().getName());
@@ -157,6 +192,7 @@ public class DatagramServer implements ProtocolEventHandler<DatagramDataControll
                 logger.debug(String.format("%s> %s> not found",
                         this.aliasName,
                         monitor.getController().getName()));
+                args.release();
                 return;
             }
 
@@ -169,6 +205,7 @@ public class DatagramServer implements ProtocolEventHandler<DatagramDataControll
                         monitor.getProtocol().getAliasName(),
                         cmd,
                         tx));
+                args.release();
                 return;
             }
 
@@ -182,14 +219,24 @@ public class DatagramServer implements ProtocolEventHandler<DatagramDataControll
                     monitor.getProtocol().getAliasName(),
                     cmd,
                     tx));
-            new Thread(new Runnable() {
+            if (callOut instanceof MessageCallOutFuture) {
+                // the caller of sync send is waiting for the reply, just wake it up.
+                ((MessageCallOutFuture) callOut).execute(received, args);
+                return;
+            }
+            dispatch(new Runnable() {
 
                 @Override
                 public void run() {
-                    callOut.execute(received);
+                    try {
+                        callOut.execute(received);
+                    }
+                    finally {
+                        args.release();
+                    }
                 }
 
-            }).start();
+            }, args);
         }
     }
 
@@ -260,4 +307,16 @@ public class DatagramServer implements ProtocolEventHandler<DatagramDataControll
             }
         }
     }
+
+    private void dispatch(Runnable task, ProtocolEventArgs args) {
+        try {
+            this.executor.execute(task);
+        }
+        catch (RejectedExecutionException ex) {
+            logger.error(String.format("%s> dispatch rejected, %s", this.aliasName, this.executor));
+            if (args != null) {
+                args.release();
+            }
+        }
+    }
 }
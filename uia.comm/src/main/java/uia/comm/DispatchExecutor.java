@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor used to run call in, call out and connection events.<br>
+ * The bounded form keeps a fixed number of daemon threads and a limited queue, tasks over the limit are handed to the rejection policy.
+ * The default policy rejects the task, the caller logs and drops it. Running it on the caller would run user code on a selector thread,
+ * and a call in waiting for a reply there would block the reactor which reads the reply.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class DispatchExecutor implements Executor {
+
+    private static DispatchExecutor shared;
+
+    private final String name;
+
+    private final ThreadPoolExecutor pool;
+
+    private final AtomicInteger threadSeq;
+
+    private final AtomicLong submitted;
+
+    private final AtomicLong completed;
+
+    private final AtomicLong rejected;
+
+    private final AtomicInteger running;
+
+    private DispatchExecutor(String name, int threads, int queueSize, final RejectedExecutionHandler handler) {
+        this.name = name;
+        this.threadSeq = new AtomicInteger();
+        this.submitted = new AtomicLong();
+        this.completed = new AtomicLong();
+        this.rejected = new AtomicLong();
+        this.running = new AtomicInteger();
+        if (threads <= 0) {
+            this.pool = null;
+            return;
+        }
+
+        this.pool = new ThreadPoolExecutor(
+                threads,
+                threads,
+                60,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, queueSize)),
+                new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        return DispatchExecutor.this.newThread(r);
+                    }
+                },
+                new RejectedExecutionHandler() {
+
+                    @Override
+                    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                        DispatchExecutor.this.rejected.incrementAndGet();
+                        handler.rejectedExecution(r, executor);
+                    }
+                });
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Get the executor shared by servers and clients which don't have their own executor.<br>
+     * It has 2 threads per processor and a queue of 10000 tasks.
+     *
+     * @return The executor.
+     */
+    public static synchronized DispatchExecutor shared() {
+        if (shared == null) {
+            shared = bounded("comm-dispatch", 2 * Runtime.getRuntime().availableProcessors(), 10000);
+        }
+        return shared;
+    }
+
+    /**
+     * Create a bounded executor rejecting tasks with RejectedExecutionException when the queue is full.
+     *
+     * @param name Prefix of thread names.
+     * @param threads Number of threads.
+     * @param queueSize Maximum number of waiting tasks.
+     * @return The executor.
+     */
+    public static DispatchExecutor bounded(String name, int threads, int queueSize) {
+        return bounded(name, threads, queueSize, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Create a bounded executor.
+     *
+     * @param name Prefix of thread names.
+     * @param threads Number of threads.
+     * @param queueSize Maximum number of waiting tasks.
+     * @param rejectedHandler Policy used when the queue is full.
+     * @return The executor.
+     */
+    public static DispatchExecutor bounded(String name, int threads, int queueSize, RejectedExecutionHandler rejectedHandler) {
+        return new DispatchExecutor(name, Math.max(1, threads), queueSize, rejectedHandler);
+    }
+
+    /**
+     * Create an executor starting a new thread for each task. It is the behavior before executors were pluggable.
+     *
+     * @param name Prefix of thread names.
+     * @return The executor.
+     */
+    public static DispatchExecutor threadPerTask(String name) {
+        return new DispatchExecutor(name, 0, 0, null);
+    }
+
+    /**
+     * Get name.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        this.submitted.incrementAndGet();
+        Runnable task = new Runnable() {
+
+            @Override
+            public void run() {
+                DispatchExecutor.this.running.incrementAndGet();
+                try {
+                    command.run();
+                }
+                finally {
+                    DispatchExecutor.this.running.decrementAndGet();
+                    DispatchExecutor.this.completed.incrementAndGet();
+                }
+            }
+        };
+
+        if (this.pool == null) {
+            newThread(task).start();
+        }
+        else {
+            this.pool.execute(task);
+        }
+    }
+
+    /**
+     * Get number of tasks submitted.
+     *
+     * @return Number of tasks.
+     */
+    public long getSubmittedCount() {
+        return this.submitted.get();
+    }
+
+    /**
+     * Get number of tasks finished, including tasks run by the rejection policy.
+     *
+     * @return Number of tasks.
+     */
+    public long getCompletedCount() {
+        return this.completed.get();
+    }
+
+    /**
+     * Get number of tasks handed to the rejection policy.
+     *
+     * @return Number of tasks.
+     */
+    public long getRejectedCount() {
+        return this.rejected.get();
+    }
+
+    /**
+     * Get number of tasks running now.
+     *
+     * @return Number of tasks.
+     */
+    public int getActiveCount() {
+        return this.running.get();
+    }
+
+    /**
+     * Get number of tasks waiting in the queue.
+     *
+     * @return Number of tasks.
+     */
+    public int getQueueSize() {
+        return this.pool == null ? 0 : this.pool.getQueue().size();
+    }
+
+    /**
+     * Stop accepting new tasks. Queued tasks are still executed.
+     */
+    public void shutdown() {
+        if (this.pool != null) {
+            this.pool.shutdown();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s(submitted:%s, completed:%s, rejected:%s, active:%s, queue:%s)",
+                this.name,
+                getSubmittedCount(),
+                getCompletedCount(),
+                getRejectedCount(),
+                getActiveCount(),
+                getQueueSize());
+    }
+
+    private Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, this.name + "-" + this.threadSeq.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
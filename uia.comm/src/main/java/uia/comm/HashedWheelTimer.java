@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Hashed timing wheel used to watch request timeouts.<br>
+ * Scheduling and cancelling are O(1), and all timeouts are checked by one daemon thread every tick.
+ * Expired tasks run on the timer thread, so they must be short.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class HashedWheelTimer {
+
+    private final static Logger logger = Logger.getLogger(HashedWheelTimer.class);
+
+    private static HashedWheelTimer shared;
+
+    private final String name;
+
+    private final long tick;
+
+    private final Timeout[] wheel;
+
+    private final int mask;
+
+    private final ConcurrentLinkedQueue<Timeout> added;
+
+    private final long startTime;
+
+    private final AtomicInteger state;  // 0: not started, 1: started, 2: stopped.
+
+    private long tickCount;
+
+    private Thread worker;
+
+    /**
+     * Constructor.
+     *
+     * @param name Name of timer thread.
+     * @param tickMillis Tick resolution in milliseconds.
+     * @param ticksPerWheel Number of buckets, rounded up to a power of 2.
+     */
+    public HashedWheelTimer(String name, long tickMillis, int ticksPerWheel) {
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+
+        this.name = name;
+        this.tick = Math.max(1, tickMillis) * 1000000L;
+        this.wheel = new Timeout[size];
+        this.mask = size - 1;
+        this.added = new ConcurrentLinkedQueue<Timeout>();
+        this.startTime = System.nanoTime();
+        this.state = new AtomicInteger(0);
+    }
+
+    /**
+     * Get the timer shared by servers and clients which don't have their own timer.<br>
+     * The tick is 10 milliseconds and the wheel has 512 buckets.
+     *
+     * @return The timer.
+     */
+    public static synchronized HashedWheelTimer shared() {
+        if (shared == null) {
+            shared = new HashedWheelTimer("comm-timer", 10, 512);
+        }
+        return shared;
+    }
+
+    /**
+     * Get tick resolution.
+     *
+     * @return Tick in milliseconds.
+     */
+    public long getTickMillis() {
+        return this.tick / 1000000L;
+    }
+
+    /**
+     * Schedule a task.
+     *
+     * @param task The task.
+     * @param delayMillis Delay in milliseconds.
+     * @return Handle used to cancel the task.
+     */
+    public Timeout schedule(Runnable task, long delayMillis) {
+        start();
+        Timeout timeout = new Timeout(task, System.nanoTime() - this.startTime + Math.max(0, delayMillis) * 1000000L);
+        this.added.offer(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stop the timer. Tasks not expired yet are dropped.
+     */
+    public synchronized void stop() {
+        if (this.state.getAndSet(2) == 1) {
+            this.worker.interrupt();
+        }
+    }
+
+    private synchronized void start() {
+        if (this.state.get() == 0) {
+            this.state.set(1);
+            this.worker = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    running();
+                }
+            }, this.name);
+            this.worker.setDaemon(true);
+            this.worker.start();
+        }
+        else if (this.state.get() == 2) {
+            throw new IllegalStateException(this.name + "> stopped");
+        }
+    }
+
+    private void running() {
+        while (this.state.get() == 1) {
+            long deadline = this.tick * (this.tickCount + 1);
+            long sleep = (this.startTime + deadline - System.nanoTime() + 999999) / 1000000;
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                }
+                catch (InterruptedException ex) {
+                    continue;
+                }
+            }
+
+            transferAdded();
+            expire((int) (this.tickCount & this.mask), deadline);
+            this.tickCount++;
+        }
+    }
+
+    private void transferAdded() {
+        Timeout timeout;
+        while ((timeout = this.added.poll()) != null) {
+            if (timeout.state.get() != Timeout.WAITING) {
+                continue;
+            }
+            long calculated = timeout.deadline / this.tick;
+            timeout.rounds = Math.max(0, (calculated - this.tickCount) / this.wheel.length);
+            int idx = (int) (Math.max(calculated, this.tickCount) & this.mask);
+
+            timeout.next = this.wheel[idx];
+            if (timeout.next != null) {
+                timeout.next.prev = timeout;
+            }
+            this.wheel[idx] = timeout;
+        }
+    }
+
+    private void expire(int idx, long deadline) {
+        Timeout timeout = this.wheel[idx];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.state.get() != Timeout.WAITING) {
+                remove(idx, timeout);
+            }
+            else if (timeout.rounds <= 0) {
+                remove(idx, timeout);
+                if (timeout.state.compareAndSet(Timeout.WAITING, Timeout.EXPIRED)) {
+                    try {
+                        timeout.task.run();
+                    }
+                    catch (Exception ex) {
+                        logger.error(this.name + "> task failed", ex);
+                    }
+                }
+            }
+            else {
+                timeout.rounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    private void remove(int idx, Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        }
+        else {
+            this.wheel[idx] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+    }
+
+    /**
+     * Handle of a scheduled task.
+     *
+     * @author Kyle K. Lin
+     *
+     */
+    public static class Timeout {
+
+        private static final int WAITING = 0;
+
+        private static final int CANCELLED = 1;
+
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+
+        private final long deadline;
+
+        private final AtomicInteger state;
+
+        private long rounds;
+
+        private Timeout prev;
+
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+            this.state = new AtomicInteger(WAITING);
+        }
+
+        /**
+         * Cancel the task. The task is removed from the wheel when its bucket is checked.
+         *
+         * @return True if the task will not run.
+         */
+        public boolean cancel() {
+            return this.state.compareAndSet(WAITING, CANCELLED);
+        }
+
+        public boolean isCancelled() {
+            return this.state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return this.state.get() == EXPIRED;
+        }
+    }
+}
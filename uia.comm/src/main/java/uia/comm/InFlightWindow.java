@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Window of in-flight transactions of one connection.<br>
+ * A transaction holds a slot from being written until its reply future is completed. Transactions beyond the window wait in a bounded queue and are written when slots are freed.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+class InFlightWindow {
+
+    private static final int QUEUED = 0;
+
+    private static final int SENT = 1;
+
+    private static final int DONE = 2;
+
+    private final int maxInFlight;
+
+    private final int maxQueued;
+
+    private final ArrayDeque<Entry> queue;
+
+    private int inFlight;
+
+    private int queued;
+
+    /**
+     * Constructor.
+     *
+     * @param maxInFlight Max number of in-flight transactions.
+     * @param maxQueued Max number of transactions waiting for a slot.
+     */
+    InFlightWindow(int maxInFlight, int maxQueued) {
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = maxQueued;
+        this.queue = new ArrayDeque<Entry>();
+    }
+
+    /**
+     * Get max number of in-flight transactions.
+     *
+     * @return Max number.
+     */
+    int getMaxInFlight() {
+        return this.maxInFlight;
+    }
+
+    /**
+     * Get number of in-flight transactions.
+     *
+     * @return Number of transactions.
+     */
+    synchronized int getInFlight() {
+        return this.inFlight;
+    }
+
+    /**
+     * Get number of transactions waiting for a slot.
+     *
+     * @return Number of transactions.
+     */
+    synchronized int getQueued() {
+        return this.queued;
+    }
+
+    /**
+     * Submit a transaction. The write task runs now if a slot is free, otherwise it runs when one is freed.<br>
+     * The slot is freed when the future is completed.
+     *
+     * @param future Reply future of the transaction.
+     * @param write Task to write the request.
+     * @throws RejectedExecutionException Raise when the window and the queue are full.
+     */
+    <V> void submit(CommFuture<V> future, Runnable write) {
+        final Entry entry = new Entry(future, write);
+        boolean now = false;
+        synchronized (this) {
+            if (this.inFlight < this.maxInFlight) {
+                this.inFlight++;
+                entry.state = SENT;
+                now = true;
+            }
+            else if (this.queued < this.maxQueued) {
+                this.queued++;
+                this.queue.offer(entry);
+            }
+            else {
+                throw new RejectedExecutionException(String.format("window full, inFlight:%s, queued:%s", this.inFlight, this.queued));
+            }
+        }
+
+        future.addListener(new CommFuture.Listener<V>() {
+
+            @Override
+            public void completed(CommFuture<V> f) {
+                release(entry);
+            }
+        });
+        if (now && !future.isDone()) {
+            write.run();
+        }
+    }
+
+    /**
+     * Fail transactions waiting for a slot.
+     *
+     * @param cause The cause.
+     */
+    void clear(Throwable cause) {
+        List<Entry> entries;
+        synchronized (this) {
+            entries = new ArrayList<Entry>(this.queue);
+            this.queue.clear();
+            this.queued = 0;
+            for (Entry entry : entries) {
+                entry.state = DONE;
+            }
+        }
+        for (Entry entry : entries) {
+            entry.future.setFailed(cause);
+        }
+    }
+
+    private void release(Entry entry) {
+        List<Runnable> writes = null;
+        synchronized (this) {
+            if (entry.state == SENT) {
+                this.inFlight--;
+            }
+            else if (entry.state == QUEUED) {
+                // timeout or cancelled before written, the entry is skipped when polled.
+                this.queued--;
+            }
+            entry.state = DONE;
+
+            while (this.inFlight < this.maxInFlight && !this.queue.isEmpty()) {
+                Entry next = this.queue.poll();
+                if (next.state != QUEUED) {
+                    continue;
+                }
+                next.state = SENT;
+                this.queued--;
+                this.inFlight++;
+                if (writes == null) {
+                    writes = new ArrayList<Runnable>();
+                }
+                writes.add(next.write);
+            }
+        }
+
+        if (writes != null) {
+            for (Runnable write : writes) {
+                write.run();
+            }
+        }
+    }
+
+    private static class Entry {
+
+        private final CommFuture<?> future;
+
+        private final Runnable write;
+
+        private int state;
+
+        private Entry(CommFuture<?> future, Runnable write) {
+            this.future = future;
+            this.write = write;
+            this.state = QUEUED;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.util.Arrays;
+
+/**
+ * Latencies of recent replies used to find a percentile.<br>
+ * The percentile is calculated again after some new samples, not for every request.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+class LatencyTracker {
+
+    private static final int MIN_SAMPLES = 16;
+
+    private static final int REFRESH = 32;
+
+    private final long[] samples;
+
+    private int count;
+
+    private int next;
+
+    private int fresh;
+
+    private double percentile;
+
+    private long value;
+
+    LatencyTracker(int size) {
+        this.samples = new long[Math.max(MIN_SAMPLES, size)];
+        this.value = -1;
+    }
+
+    synchronized void record(long millis) {
+        this.samples[this.next] = millis;
+        this.next = (this.next + 1) % this.samples.length;
+        if (this.count < this.samples.length) {
+            this.count++;
+        }
+        this.fresh++;
+    }
+
+    /**
+     * Get the latency of specific percentile.
+     *
+     * @param percentile Percentile between 0 and 1.
+     * @return Milliseconds or -1 if not enough samples.
+     */
+    synchronized long percentile(double percentile) {
+        if (this.count < MIN_SAMPLES) {
+            return -1;
+        }
+        if (this.value >= 0 && this.percentile == percentile && this.fresh < REFRESH) {
+            return this.value;
+        }
+
+        long[] sorted = Arrays.copyOf(this.samples, this.count);
+        Arrays.sort(sorted);
+        int idx = (int) Math.ceil(percentile * sorted.length) - 1;
+        this.value = sorted[Math.min(sorted.length - 1, Math.max(0, idx))];
+        this.percentile = percentile;
+        this.fresh = 0;
+        return this.value;
+    }
+}
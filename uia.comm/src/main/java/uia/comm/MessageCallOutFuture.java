@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.net.SocketException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import uia.comm.protocol.ProtocolEventArgs;
+
+/**
+ * Call out completing a future with the reply.<br>
+ * The future is completed by the thread handling the reply, or failed with TimeoutException by the timer.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+class MessageCallOutFuture extends CommFuture<byte[]> implements MessageCallOut {
+
+    private final String name;
+
+    private final String txId;
+
+    private final long numericTxId;
+
+    private volatile HashedWheelTimer.Timeout timeout;
+
+    MessageCallOutFuture(String name, String txId) {
+        this.name = name;
+        this.txId = txId;
+        this.numericTxId = -1;
+    }
+
+    MessageCallOutFuture(String name, long txId) {
+        this.name = name;
+        this.txId = null;
+        this.numericTxId = txId;
+    }
+
+    /**
+     * Fail a call out replaced by a new request with the same transaction id, so it does not wait for its timeout.
+     *
+     * @param callOut The replaced call out. Can be null.
+     */
+    static void replaced(MessageCallOut callOut) {
+        if (callOut instanceof MessageCallOutFuture) {
+            MessageCallOutFuture future = (MessageCallOutFuture) callOut;
+            future.setFailed(new SocketException(future.name + "> tx:" + future.getTxId() + " replaced by a new request"));
+        }
+        else if (callOut != null) {
+            callOut.timeout();
+        }
+    }
+
+    /**
+     * Start to watch the timeout.
+     *
+     * @param timer The timer.
+     * @param delay Timeout in milliseconds.
+     */
+    void watch(HashedWheelTimer timer, long delay) {
+        this.timeout = timer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                timeout();
+            }
+
+        }, delay);
+    }
+
+    /**
+     * Wait the reply.
+     *
+     * @param delay Timeout in milliseconds.
+     * @return Reply or null if timeout or failed.
+     */
+    byte[] await(long delay) {
+        try {
+            return get(delay + 1000, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException ex) {
+            cancel(false);
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch (TimeoutException ex) {
+            // the timer is late, give up.
+            cancel(false);
+            return null;
+        }
+        catch (ExecutionException ex) {
+            return null;
+        }
+    }
+
+    @Override
+    public String getTxId() {
+        return this.txId != null ? this.txId : Long.toString(this.numericTxId);
+    }
+
+    @Override
+    public void execute(byte[] reply) {
+        setDone(reply);
+    }
+
+    /**
+     * Complete with the reply of a received frame and release the frame.<br>
+     * The reply is copied if it is a pooled array, since the caller keeps it after the frame goes back to the pool.
+     *
+     * @param reply The reply.
+     * @param args Event arguments of the frame.
+     */
+    void execute(byte[] reply, ProtocolEventArgs args) {
+        if (args.isPooled() && reply == args.getData()) {
+            reply = reply.clone();
+        }
+        args.release();
+        setDone(reply);
+    }
+
+    @Override
+    public void timeout() {
+        setFailed(new TimeoutException(this.name + "> tx:" + getTxId() + " timeout"));
+    }
+
+    @Override
+    public boolean setDone(byte[] result) {
+        cancelTimeout();
+        return super.setDone(result);
+    }
+
+    @Override
+    public boolean setFailed(Throwable cause) {
+        cancelTimeout();
+        return super.setFailed(cause);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        cancelTimeout();
+        return super.cancel(mayInterruptIfRunning);
+    }
+
+    private void cancelTimeout() {
+        HashedWheelTimer.Timeout timeout = this.timeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+/**
+ * Call out watched by a timer. The timer is cancelled when the reply arrives.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+class MessageCallOutTimed implements MessageCallOut {
+
+    private final MessageCallOut callOut;
+
+    private volatile HashedWheelTimer.Timeout timeout;
+
+    MessageCallOutTimed(MessageCallOut callOut) {
+        this.callOut = callOut;
+    }
+
+    /**
+     * Start to watch the timeout.
+     *
+     * @param timer The timer.
+     * @param delay Timeout in milliseconds.
+     * @param task Task executed when timeout.
+     */
+    void watch(HashedWheelTimer timer, long delay, Runnable task) {
+        this.timeout = timer.schedule(task, delay);
+    }
+
+    @Override
+    public String getTxId() {
+        return this.callOut.getTxId();
+    }
+
+    @Override
+    public void execute(byte[] reply) {
+        HashedWheelTimer.Timeout timeout = this.timeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        this.callOut.execute(reply);
+    }
+
+    @Override
+    public void timeout() {
+        this.callOut.timeout();
+    }
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Bounded buffer of data sent while the link is down.<br>
+ * The data is written in order when the link is back. Data whose future is cancelled is skipped.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+class OutboundBuffer {
+
+    private final int maxSize;
+
+    private final ArrayDeque<Entry> entries;
+
+    OutboundBuffer(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new ArrayDeque<Entry>();
+    }
+
+    /**
+     * Get number of buffered data.
+     *
+     * @return Number of data.
+     */
+    synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Buffer data.
+     *
+     * @param data Data.
+     * @return Future completed when the data is written, or failed immediately when the buffer is full.
+     */
+    synchronized CommFuture<Boolean> offer(byte[] data) {
+        if (this.entries.size() >= this.maxSize) {
+            return CommFuture.failed(new RejectedExecutionException(String.format("outbound buffer full, size:%s", this.maxSize)));
+        }
+
+        Entry entry = new Entry(data);
+        this.entries.offer(entry);
+        return entry.future;
+    }
+
+    /**
+     * Write buffered data to the controller in order. The caller must hold the lock of this buffer.
+     *
+     * @param controller The controller of the new link.
+     */
+    void flushTo(SocketDataController controller) {
+        Entry entry;
+        while ((entry = this.entries.poll()) != null) {
+            if (entry.future.isDone()) {
+                continue;
+            }
+            final CommFuture<Boolean> future = entry.future;
+            controller.sendAsync(entry.data).addListener(new CommFuture.Listener<Boolean>() {
+
+                @Override
+                public void completed(CommFuture<Boolean> written) {
+                    if (written.isSuccess()) {
+                        future.setDone(Boolean.TRUE);
+                    }
+                    else {
+                        future.setFailed(written.getCause());
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Fail all buffered data.
+     *
+     * @param cause The cause.
+     */
+    void clear(Throwable cause) {
+        List<Entry> result;
+        synchronized (this) {
+            result = new ArrayList<Entry>(this.entries);
+            this.entries.clear();
+        }
+        for (Entry entry : result) {
+            entry.future.setFailed(cause);
+        }
+    }
+
+    private static class Entry {
+
+        private final byte[] data;
+
+        private final CommFuture<Boolean> future;
+
+        private Entry(byte[] data) {
+            this.data = data;
+            this.future = new CommFuture<Boolean>();
+        }
+    }
+}
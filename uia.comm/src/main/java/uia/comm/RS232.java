@@ -29,14 +29,12 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.SocketException;
 import java.util.HashMap;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.log4j.Logger;
 
+import uia.comm.protocol.AbstractProtocol;
 import uia.comm.protocol.Protocol;
 import uia.comm.protocol.ProtocolEventArgs;
 import uia.comm.protocol.ProtocolEventHandler;
@@ -48,7 +46,7 @@ import uia.utils.ByteUtils;
  * @author Kyle K. Lin
  *
  */
-public class RS232 implements ProtocolEventHandler<RS232>, CommClient<RS232> {
+public class RS232 implements ProtocolEventHandler<RS232>, AsyncCommClient<RS232> {
 
     private final static Logger logger = Logger.getLogger(RS232.class);
 
@@ -72,14 +70,25 @@ public class RS232 implements ProtocolEventHandler<RS232>, CommClient<RS232> {
 
     private boolean started;
 
+    private Executor executor;
+
+    private HashedWheelTimer timer;
+
     public RS232(final Protocol<RS232> protocol, final MessageManager manager, String aliasName) {
         this.protocol = protocol;
-        this.protocol.addMessageHandler(this);
+        if (protocol instanceof AbstractProtocol) {
+            ((AbstractProtocol<RS232>) protocol).addMessageHandler(this, this);
+        }
+        else {
+            this.protocol.addMessageHandler(this);
+        }
         this.manager = manager;
         this.callIns = new HashMap<String, MessageCallIn<RS232>>();
         this.callOuts = new HashMap<String, MessageCallOut>();
         this.started = false;
         this.aliasName = aliasName;
+        this.executor = DispatchExecutor.shared();
+        this.timer = HashedWheelTimer.shared();
     }
 
     /**
@@ -150,6 +159,42 @@ public class RS232 implements ProtocolEventHandler<RS232>, CommClient<RS232> {
         return this.aliasName;
     }
 
+    /**
+     * Get the executor running call in, call out and event handlers.
+     *
+     * @return The executor.
+     */
+    public Executor getExecutor() {
+        return this.executor;
+    }
+
+    /**
+     * Set the executor running call in, call out and event handlers. Default is DispatchExecutor.shared().
+     *
+     * @param executor The executor.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor == null ? DispatchExecutor.shared() : executor;
+    }
+
+    /**
+     * Get the timer watching call out timeouts.
+     *
+     * @return The timer.
+     */
+    public HashedWheelTimer getTimer() {
+        return this.timer;
+    }
+
+    /**
+     * Set the timer watching call out timeouts. Default is HashedWheelTimer.shared().
+     *
+     * @param timer The timer.
+     */
+    public void setTimer(HashedWheelTimer timer) {
+        this.timer = timer == null ? HashedWheelTimer.shared() : timer;
+    }
+
     @Override
     public void registerCallin(MessageCallIn<RS232> callIn) {
         this.callIns.put(callIn.getCmdName(), callIn);
@@ -204,36 +249,36 @@ public class RS232 implements ProtocolEventHandler<RS232>, CommClient<RS232> {
             throw new SocketException(this.aliasName + "> is not started.");
         }
 
-        MessageCallOutConcurrent callout = new MessageCallOutConcurrent(getName(), txId, timeout);
-        ExecutorService threadPool = Executors.newSingleThreadExecutor();
-
-        synchronized (this.callOuts) {
-            this.callOuts.put(txId, callout);
-        }
-
+        MessageCallOutFuture future = register(txId, timeout);
         try {
             this.out.write(this.manager.encode(data));
             logger.debug(String.format("%s> send %s", this.aliasName, ByteUtils.toHexString(data, 100)));
         }
         catch (Exception ex) {
+            future.cancel(false);
             logger.debug(String.format("%s> send %s failure", this.aliasName, ByteUtils.toHexString(data, 100)));
             throw new SocketException(this.aliasName + "> send failure");
         }
+        return future.await(timeout);
+    }
 
-        try {
-            Future<byte[]> future = threadPool.submit(callout);
-            return future.get();
+    @Override
+    public CommFuture<byte[]> sendAsync(final byte[] data, final String txId, long timeout) throws SocketException {
+        if (!this.started) {
+            throw new SocketException(this.aliasName + "> is not started.");
         }
-        catch (Exception e) {
-            logger.error(String.format("%s> callout failed", this.aliasName), e);
-            return null;
+
+        MessageCallOutFuture future = register(txId, timeout);
+        try {
+            this.out.write(this.manager.encode(data));
+            logger.debug(String.format("%s> send %s", this.aliasName, ByteUtils.toHexString(data, 100)));
         }
-        finally {
-            threadPool.shutdown();
-            synchronized (this.callOuts) {
-                this.callOuts.remove(txId);
-            }
+        catch (Exception ex) {
+            future.cancel(false);
+            logger.debug(String.format("%s> send %s failure", this.aliasName, ByteUtils.toHexString(data, 100)));
+            throw new SocketException(this.aliasName + "> send failure");
         }
+        return future;
     }
 
     @Override
@@ -248,36 +293,41 @@ public class RS232 implements ProtocolEventHandler<RS232>, CommClient<RS232> {
         }
 
         final String tx = callOut.getTxId();
+        final MessageCallOutTimed timed = new MessageCallOutTimed(callOut);
         synchronized (this.callOuts) {
-            this.callOuts.put(tx, callOut);
+            this.callOuts.put(tx, timed);
         }
 
         try {
             this.out.write(this.manager.encode(data));
             logger.debug(String.format("%s> send %s", this.aliasName, ByteUtils.toHexString(data, 100)));
-            Timer timer = new Timer();
-            timer.schedule(new TimerTask() {
+            timed.watch(this.timer, timeout, new Runnable() {
 
                 @Override
                 public void run() {
-                    MessageCallOut out = null;
                     synchronized (RS232.this.callOuts) {
-                        if (RS232.this.callOuts.containsKey(tx)) {
-                            logger.debug(String.format("%s> tx:%s callOut timeout", RS232.this.aliasName, callOut.getTxId()));
-                            out = RS232.this.callOuts.remove(tx);
+                        // a newer call out with the same tx is not my business.
+                        if (RS232.this.callOuts.get(tx) != timed) {
+                            return;
                         }
+                        RS232.this.callOuts.remove(tx);
                     }
-                    if (out != null) {
-                        try {
-                            out.timeout();
-                        }
-                        catch (Exception ex) {
+                    logger.debug(String.format("%s> tx:%s callOut timeout", RS232.this.aliasName, tx));
+                    dispatch(new Runnable() {
 
+                        @Override
+                        public void run() {
+                            try {
+                                timed.timeout();
+                            }
+                            catch (Exception ex) {
+
+                            }
                         }
-                    }
+                    }, null);
                 }
 
-            }, timeout);
+            });
             return true;
         }
         catch (Exception ex) {
@@ -316,14 +366,14 @@ public class RS232 implements ProtocolEventHandler<RS232>, CommClient<RS232> {
             }
 
             logger.debug(String.format("%s> cmd:%s callIn", this.aliasName, cmd));
-            new Thread(new Runnable() {
+            dispatch(new Runnable() {
 
                 @Override
                 public void run() {
                     callIn.execute(received, RS232.this);
                 }
 
-            }).start();
+            }, null);
         }
         else {
             String tx = this.manager.findTx(received);
@@ -338,14 +388,19 @@ public class RS232 implements ProtocolEventHandler<RS232>, CommClient<RS232> {
             }
 
             logger.debug(String.format("%s> cmd:%s tx:%s callout reply", this.aliasName, cmd, tx));
-            new Thread(new Runnable() {
+            if (callOut instanceof MessageCallOutFuture) {
+                // the caller of sync send is waiting for the reply, just wake it up.
+                ((MessageCallOutFuture) callOut).execute(received, args);
+                return;
+            }
+            dispatch(new Runnable() {
 
                 @Override
                 public void run() {
                     callOut.execute(received);
                 }
 
-            }).start();
+            }, null);
         }
     }
 
@@ -369,4 +424,38 @@ public class RS232 implements ProtocolEventHandler<RS232>, CommClient<RS232> {
             e.printStackTrace();
         }
     }
+
+    private MessageCallOutFuture register(final String txId, long timeout) {
+        final MessageCallOutFuture future = new MessageCallOutFuture(this.aliasName, txId);
+        MessageCallOut replaced;
+        synchronized (this.callOuts) {
+            replaced = this.callOuts.put(txId, future);
+        }
+        MessageCallOutFuture.replaced(replaced);
+        future.addListener(new CommFuture.Listener<byte[]>() {
+
+            @Override
+            public void completed(CommFuture<byte[]> f) {
+                synchronized (RS232.this.callOuts) {
+                    if (RS232.this.callOuts.get(txId) == future) {
+                        RS232.this.callOuts.remove(txId);
+                    }
+                }
+            }
+        });
+        future.watch(this.timer, timeout);
+        return future;
+    }
+
+    private void dispatch(Runnable task, ProtocolEventArgs args) {
+        try {
+            this.executor.execute(task);
+        }
+        catch (RejectedExecutionException ex) {
+            logger.error(String.format("%s> dispatch rejected, %s", this.aliasName, this.executor));
+            if (args != null) {
+                args.release();
+            }
+        }
+    }
 }
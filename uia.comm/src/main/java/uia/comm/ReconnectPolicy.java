@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.util.Random;
+
+/**
+ * Policy of reconnecting a dropped link.<br>
+ * The delay grows exponentially from the initial delay to the max delay, and a random part of it is taken off so clients dropped together don't reconnect together.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class ReconnectPolicy {
+
+    private static final Random RANDOM = new Random();
+
+    private final long initialDelay;
+
+    private final long maxDelay;
+
+    private double multiplier;
+
+    private double jitter;
+
+    private int maxBuffered;
+
+    /**
+     * Constructor. The multiplier is 2, the jitter is 0.2 and 1000 messages are buffered.
+     *
+     * @param initialDelay Delay milliseconds of the first attempt.
+     * @param maxDelay Max delay milliseconds.
+     */
+    public ReconnectPolicy(long initialDelay, long maxDelay) {
+        this.initialDelay = Math.max(1, initialDelay);
+        this.maxDelay = Math.max(this.initialDelay, maxDelay);
+        this.multiplier = 2;
+        this.jitter = 0.2;
+        this.maxBuffered = 1000;
+    }
+
+    public long getInitialDelay() {
+        return this.initialDelay;
+    }
+
+    public long getMaxDelay() {
+        return this.maxDelay;
+    }
+
+    public double getMultiplier() {
+        return this.multiplier;
+    }
+
+    /**
+     * Set the multiplier of the delay after each failed attempt.
+     *
+     * @param multiplier Multiplier, at least 1.
+     */
+    public void setMultiplier(double multiplier) {
+        this.multiplier = Math.max(1, multiplier);
+    }
+
+    public double getJitter() {
+        return this.jitter;
+    }
+
+    /**
+     * Set the max ratio of the delay taken off randomly.
+     *
+     * @param jitter Ratio between 0 and 1.
+     */
+    public void setJitter(double jitter) {
+        this.jitter = Math.min(1, Math.max(0, jitter));
+    }
+
+    public int getMaxBuffered() {
+        return this.maxBuffered;
+    }
+
+    /**
+     * Set max number of messages buffered while the link is down. 0 means sending fails while the link is down.
+     *
+     * @param maxBuffered Max number of messages.
+     */
+    public void setMaxBuffered(int maxBuffered) {
+        this.maxBuffered = Math.max(0, maxBuffered);
+    }
+
+    /**
+     * Get the delay before specific attempt.
+     *
+     * @param attempt Number of failed attempts since the link dropped, from 0.
+     * @return Delay milliseconds.
+     */
+    public long getDelay(int attempt) {
+        double delay = this.initialDelay * Math.pow(this.multiplier, Math.min(attempt, 62));
+        delay = Math.min(delay, this.maxDelay);
+        return Math.max(1, (long) (delay * (1 - this.jitter * RANDOM.nextDouble())));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("initialDelay:%s, maxDelay:%s, multiplier:%s, jitter:%s, maxBuffered:%s",
+                this.initialDelay,
+                this.maxDelay,
+                this.multiplier,
+                this.jitter,
+                this.maxBuffered);
+    }
+}
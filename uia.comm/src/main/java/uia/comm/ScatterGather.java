@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replies of a request sent to many clients.<br>
+ * Replies are collected as they arrive. The gather is done when all clients reply or fail, or the deadline passes.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class ScatterGather {
+
+    private final long deadline;
+
+    private final Listener listener;
+
+    private final HashMap<String, byte[]> replies;
+
+    private final HashMap<String, Throwable> failures;
+
+    private final HashSet<String> clientNames;
+
+    private int pending;
+
+    ScatterGather(long timeout, Listener listener) {
+        this.deadline = System.currentTimeMillis() + Math.max(0, timeout);
+        this.listener = listener;
+        this.replies = new HashMap<String, byte[]>();
+        this.failures = new HashMap<String, Throwable>();
+        this.clientNames = new HashSet<String>();
+        this.pending = 1;   // released by scattered()
+    }
+
+    /**
+     * Get replies arrived so far.
+     *
+     * @return Reply data with its client name.
+     */
+    public synchronized Map<String, byte[]> getReplies() {
+        return new HashMap<String, byte[]>(this.replies);
+    }
+
+    /**
+     * Get failures so far, e.g. client missing, send failure or timeout.
+     *
+     * @return Cause with its client name.
+     */
+    public synchronized Map<String, Throwable> getFailures() {
+        return new HashMap<String, Throwable>(this.failures);
+    }
+
+    /**
+     * Get number of clients not replied yet.
+     *
+     * @return Number of clients.
+     */
+    public synchronized int getPending() {
+        return this.pending;
+    }
+
+    /**
+     * Check if all clients replied or failed, or the deadline passed.
+     *
+     * @return True if done.
+     */
+    public synchronized boolean isDone() {
+        return this.pending == 0 || System.currentTimeMillis() >= this.deadline;
+    }
+
+    /**
+     * Wait until done.
+     *
+     * @return Replies arrived before the deadline with client names.
+     * @throws InterruptedException Raise if interrupted.
+     */
+    public synchronized Map<String, byte[]> await() throws InterruptedException {
+        long wait;
+        while (this.pending > 0 && (wait = this.deadline - System.currentTimeMillis()) > 0) {
+            wait(wait);
+        }
+        return getReplies();
+    }
+
+    synchronized void expect(String clientName) {
+        this.clientNames.add(clientName);
+        this.pending++;
+    }
+
+    synchronized Set<String> getClientNames() {
+        return new HashSet<String>(this.clientNames);
+    }
+
+    synchronized void scattered() {
+        done();
+    }
+
+    void replied(String clientName, byte[] reply) {
+        synchronized (this) {
+            if (this.replies.containsKey(clientName) || this.failures.containsKey(clientName)) {
+                return;
+            }
+            this.replies.put(clientName, reply);
+            done();
+        }
+        if (this.listener != null) {
+            this.listener.replied(clientName, reply);
+        }
+    }
+
+    void missing(String clientName, Throwable cause) {
+        synchronized (this) {
+            this.failures.put(clientName, cause);
+        }
+        if (this.listener != null) {
+            this.listener.failed(clientName, cause);
+        }
+    }
+
+    void failed(String clientName, Throwable cause) {
+        synchronized (this) {
+            if (this.replies.containsKey(clientName) || this.failures.containsKey(clientName)) {
+                return;
+            }
+            this.failures.put(clientName, cause);
+            done();
+        }
+        if (this.listener != null) {
+            this.listener.failed(clientName, cause);
+        }
+    }
+
+    private void done() {
+        if (--this.pending == 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Listener of replies.
+     *
+     * @author Kyle K. Lin
+     *
+     */
+    public static interface Listener {
+
+        /**
+         * Reply arrived.
+         *
+         * @param clientName Client name.
+         * @param reply Reply data.
+         */
+        public void replied(String clientName, byte[] reply);
+
+        /**
+         * Send failure or timeout.
+         *
+         * @param clientName Client name.
+         * @param cause The cause.
+         */
+        public void failed(String clientName, Throwable cause);
+    }
+}
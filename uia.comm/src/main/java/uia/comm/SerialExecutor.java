@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Executor running tasks one at a time in submission order on a shared executor.<br>
+ * Each connection can have its own SerialExecutor, so messages of a connection are handled in order while connections run in parallel.<br>
+ * The waiting tasks are bounded. When full, the task is rejected with RejectedExecutionException, since running it on the caller would break the order.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class SerialExecutor implements Executor {
+
+    private final static Logger logger = Logger.getLogger(SerialExecutor.class);
+
+    private final Executor executor;
+
+    private final int maxQueued;
+
+    private final ArrayDeque<Runnable> tasks;
+
+    private final Runnable drain;
+
+    private boolean running;
+
+    /**
+     * Constructor. At most 10000 tasks are waiting.
+     *
+     * @param executor The shared executor running the tasks.
+     */
+    public SerialExecutor(Executor executor) {
+        this(executor, 10000);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param executor The shared executor running the tasks.
+     * @param maxQueued Max number of waiting tasks.
+     */
+    public SerialExecutor(Executor executor, int maxQueued) {
+        this.executor = executor;
+        this.maxQueued = Math.max(1, maxQueued);
+        this.tasks = new ArrayDeque<Runnable>();
+        this.drain = new Runnable() {
+
+            @Override
+            public void run() {
+                drain();
+            }
+        };
+    }
+
+    /**
+     * Get number of tasks waiting.
+     *
+     * @return Number of tasks.
+     */
+    public int size() {
+        synchronized (this.tasks) {
+            return this.tasks.size();
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        synchronized (this.tasks) {
+            if (this.tasks.size() >= this.maxQueued) {
+                throw new RejectedExecutionException("serial tasks full, size:" + this.tasks.size());
+            }
+            this.tasks.offer(task);
+            if (this.running) {
+                return;
+            }
+            this.running = true;
+        }
+
+        try {
+            this.executor.execute(this.drain);
+        }
+        catch (RejectedExecutionException ex) {
+            synchronized (this.tasks) {
+                this.tasks.removeLastOccurrence(task);
+                this.running = false;
+            }
+            throw ex;
+        }
+    }
+
+    private void drain() {
+        boolean drained = false;
+        try {
+            while (true) {
+                Runnable task;
+                synchronized (this.tasks) {
+                    task = this.tasks.poll();
+                    if (task == null) {
+                        this.running = false;
+                        drained = true;
+                        return;
+                    }
+                }
+                try {
+                    task.run();
+                }
+                catch (RuntimeException ex) {
+                    logger.error("serial task failed", ex);
+                }
+            }
+        }
+        finally {
+            if (!drained) {
+                // an Error escaped from a task, the rest of tasks are drained by another run.
+                redrain();
+            }
+        }
+    }
+
+    private void redrain() {
+        try {
+            this.executor.execute(this.drain);
+        }
+        catch (RuntimeException ex) {
+            // next execute() starts to drain again.
+            synchronized (this.tasks) {
+                this.running = false;
+            }
+            logger.error("serial drain rejected", ex);
+        }
+    }
+}
@@ -22,20 +22,22 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.log4j.Logger;
 
+import uia.comm.protocol.AbstractProtocol;
 import uia.comm.protocol.Protocol;
 import uia.comm.protocol.ProtocolEventArgs;
 import uia.comm.protocol.ProtocolEventHandler;
@@ -48,7 +50,7 @@ import uia.utils.ByteUtils;
  * @author Kyle K. Lin
  *
  */
-public class SocketClient implements ProtocolEventHandler<SocketDataController>, CommClient<SocketDataController> {
+public class SocketClient implements ProtocolEventHandler<SocketDataController>, AsyncCommClient<SocketDataController> {
 
     private final static Logger logger = Logger.getLogger(SocketClient.class);
 
@@ -64,7 +66,7 @@ public class SocketClient implements ProtocolEventHandler<SocketDataController>,
 
     private final int clientPort;
 
-    private boolean started;
+    private volatile boolean started;
 
     private SocketDataController controller;
 
@@ -78,6 +80,38 @@ public class SocketClient implements ProtocolEventHandler<SocketDataController>,
 
     private int maxCache;
 
+    private int readBufferSize;
+
+    private Executor executor;
+
+    private HashedWheelTimer timer;
+
+    private boolean orderedDispatch;
+
+    private int maxInFlight;
+
+    private int maxQueued;
+
+    private volatile InFlightWindow window;
+
+    private SocketDataSelectorGroup reactorGroup;
+
+    private int connectTimeout;
+
+    private InetSocketAddress remote;
+
+    private CommFuture<Boolean> connecting;
+
+    private ReconnectPolicy reconnectPolicy;
+
+    private volatile boolean autoReconnect;
+
+    private int attempts;
+
+    private HashedWheelTimer.Timeout reconnectTask;
+
+    private volatile OutboundBuffer buffer;
+
     /**
      * The constructor.
      *
@@ -99,16 +133,105 @@ public class SocketClient implements ProtocolEventHandler<SocketDataController>,
      */
     public SocketClient(final Protocol<SocketDataController> protocol, final MessageManager manager, String aliasName, int clientPort) {
         this.protocol = protocol;
-        this.protocol.addMessageHandler(this);
+        if (!(protocol instanceof AbstractProtocol)) {
+            this.protocol.addMessageHandler(this);
+        }
         this.manager = manager;
         this.callIns = new HashMap<String, MessageCallIn<SocketDataController>>();
         this.callOuts = new ConcurrentHashMap<String, MessageCallOut>();
         this.started = false;
         this.aliasName = aliasName;
+        this.executor = DispatchExecutor.shared();
+        this.timer = HashedWheelTimer.shared();
+        this.reactorGroup = SocketDataSelectorGroup.shared();
         this.maxCache = 20 * 1024;  // 20K
+        this.readBufferSize = SocketDataController.DEFAULT_READ_BUFFER_SIZE;
+        this.maxQueued = 10000;
+        this.connectTimeout = 2000;
         this.clientPort = clientPort;
     }
 
+    /**
+     * Check if messages are handled in order.
+     *
+     * @return True if ordered.
+     */
+    public boolean isOrderedDispatch() {
+        return this.orderedDispatch;
+    }
+
+    /**
+     * Set if messages are handled in order. Default is false.<br>
+     * If true, messages are handled one at a time in the received order by a SerialExecutor on top of the executor.
+     * It takes effect when the client is connected.
+     *
+     * @param orderedDispatch True if ordered.
+     */
+    public void setOrderedDispatch(boolean orderedDispatch) {
+        this.orderedDispatch = orderedDispatch;
+    }
+
+    /**
+     * Get max number of in-flight transactions.
+     *
+     * @return Max number. 0 means pipelining is disabled.
+     */
+    public int getMaxInFlight() {
+        return this.maxInFlight;
+    }
+
+    /**
+     * Set max number of in-flight transactions. Default is 0, pipelining is disabled.<br>
+     * If positive, transactions sent with a txId hold a slot until the reply is received or timeout.
+     * Transactions beyond the window wait in a bounded queue and are written when slots are freed, the timeout includes the waiting time.
+     * It takes effect when the client is connected.
+     *
+     * @param maxInFlight Max number.
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Get max number of transactions waiting for a slot.
+     *
+     * @return Max number.
+     */
+    public int getMaxQueued() {
+        return this.maxQueued;
+    }
+
+    /**
+     * Set max number of transactions waiting for a slot. Default is 10000.<br>
+     * Transactions beyond the queue fail with RejectedExecutionException.
+     * It takes effect when the client is connected.
+     *
+     * @param maxQueued Max number.
+     */
+    public void setMaxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * Get number of in-flight transactions.
+     *
+     * @return Number of transactions. 0 if pipelining is disabled.
+     */
+    public int getInFlight() {
+        InFlightWindow window = this.window;
+        return window == null ? 0 : window.getInFlight();
+    }
+
+    /**
+     * Get number of transactions waiting for a slot.
+     *
+     * @return Number of transactions. 0 if pipelining is disabled.
+     */
+    public int getQueued() {
+        InFlightWindow window = this.window;
+        return window == null ? 0 : window.getQueued();
+    }
+
     public int getMaxCache() {
         return this.maxCache;
     }
@@ -117,6 +240,44 @@ public class SocketClient implements ProtocolEventHandler<SocketDataController>,
         this.maxCache = Math.max(16, maxCache);
     }
 
+    /**
+     * Get size of the buffer used to read data.
+     *
+     * @return Size in bytes.
+     */
+    public int getReadBufferSize() {
+        return this.readBufferSize;
+    }
+
+    /**
+     * Set size of the buffer used to read data by the dedicated selector thread. It takes effect when the client is connected.<br>
+     * The shared reactors use their own buffers.
+     *
+     * @param readBufferSize Size in bytes.
+     */
+    public void setReadBufferSize(int readBufferSize) {
+        this.readBufferSize = Math.max(256, readBufferSize);
+    }
+
+    /**
+     * Get the reactors reading data of this client.
+     *
+     * @return The reactors or null if a dedicated selector thread is used.
+     */
+    public SocketDataSelectorGroup getReactorGroup() {
+        return this.reactorGroup;
+    }
+
+    /**
+     * Set the reactors reading data of this client. Default is SocketDataSelectorGroup.shared().<br>
+     * Null means a dedicated selector thread is used. It takes effect when the client is connected.
+     *
+     * @param reactorGroup The reactors.
+     */
+    public void setReactorGroup(SocketDataSelectorGroup reactorGroup) {
+        this.reactorGroup = reactorGroup;
+    }
+
     /**
      * Get address.
      * @return Address.
@@ -131,6 +292,7 @@ public class SocketClient implements ProtocolEventHandler<SocketDataController>,
      */
     public void setAddr(String addr) {
         this.addr = addr;
+        this.remote = null;
     }
 
     /**
@@ -147,6 +309,7 @@ public class SocketClient implements ProtocolEventHandler<SocketDataController>,
      */
     public void setPort(int port) {
         this.port = port;
+        this.remote = null;
     }
 
     /**
@@ -156,14 +319,136 @@ public class SocketClient implements ProtocolEventHandler<SocketDataController>,
      * @param port Port no.
      * @return True if connect success or connected already.
      */
-    public synchronized boolean connect(String address, int port) {
+    public boolean connect(String address, int port) {
         disconnect();
+        synchronized (this) {
+            setAddr(address);
+            setPort(port);
+            this.started = false;
+            this.attempts = 0;
+        }
+        return tryConnect();
+    }
 
-        this.addr = address;
-        this.port = port;
-        this.started = false;
+    /**
+     * Connect to specific socket server without blocking.<br>
+     * The connection is finished by the reactor, many clients can be connected concurrently this way.
+     *
+     * @param address Address.
+     * @param port Port no.
+     * @return Future completed with true when connected, or failed when connect failure or timeout.
+     */
+    public CommFuture<Boolean> connectAsync(String address, int port) {
+        disconnect();
+        synchronized (this) {
+            setAddr(address);
+            setPort(port);
+            this.started = false;
+            this.attempts = 0;
+        }
+        return tryConnectAsync();
+    }
 
-        return tryConnect();
+    /**
+     * Try connect to remote without blocking.<br>
+     * If the client has no reactor group, the blocking connect runs on the executor.
+     *
+     * @return Future completed with true when connected, or failed when connect failure or timeout.
+     */
+    public CommFuture<Boolean> tryConnectAsync() {
+        final CommFuture<Boolean> result;
+        synchronized (this) {
+            if (this.addr == null) {
+                return CommFuture.failed(new SocketException(this.aliasName + "> address is missing"));
+            }
+            this.autoReconnect = this.reconnectPolicy != null;
+            if (this.started) {
+                return CommFuture.done(Boolean.TRUE);
+            }
+            if (this.connecting != null) {
+                return this.connecting;
+            }
+
+            result = new CommFuture<Boolean>();
+            this.connecting = result;
+            if (this.reactorGroup != null) {
+                connectByReactor(result);
+                return result;
+            }
+        }
+
+        try {
+            this.executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    connectBlocking(result);
+                }
+            });
+        }
+        catch (RejectedExecutionException ex) {
+            synchronized (this) {
+                if (this.connecting == result) {
+                    this.connecting = null;
+                }
+            }
+            result.setFailed(ex);
+        }
+        return result;
+    }
+
+    /**
+     * Get timeout of connecting to remote.
+     *
+     * @return Timeout milliseconds.
+     */
+    public int getConnectTimeout() {
+        return this.connectTimeout;
+    }
+
+    /**
+     * Set timeout of connecting to remote. Default is 2000 milliseconds.
+     *
+     * @param connectTimeout Timeout milliseconds.
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = Math.max(1, connectTimeout);
+    }
+
+    /**
+     * Get the policy of reconnecting a dropped link.
+     *
+     * @return The policy or null if disabled.
+     */
+    public ReconnectPolicy getReconnectPolicy() {
+        return this.reconnectPolicy;
+    }
+
+    /**
+     * Set the policy of reconnecting a dropped link. Default is null, the client stays disconnected.<br>
+     * If set, the timer retries connecting after the link drops or a connect fails, until disconnect() is called.
+     * Data sent while the link is down is buffered and written in order when the link is back.
+     *
+     * @param reconnectPolicy The policy.
+     */
+    public synchronized void setReconnectPolicy(ReconnectPolicy reconnectPolicy) {
+        this.reconnectPolicy = reconnectPolicy;
+        if (this.buffer != null) {
+            this.buffer.clear(new SocketException(this.aliasName + "> reconnect policy changed"));
+        }
+        this.buffer = reconnectPolicy != null && reconnectPolicy.getMaxBuffered() > 0
+                ? new OutboundBuffer(reconnectPolicy.getMaxBuffered())
+                : null;
+    }
+
+    /**
+     * Get number of data buffered while the link is down.
+     *
+     * @return Number of data.
+     */
+    public int getBuffered() {
+        OutboundBuffer buffer = this.buffer;
+        return buffer == null ? 0 : buffer.size();
     }
 
     public void lastUpdate() {
@@ -175,52 +460,167 @@ public class SocketClient implements ProtocolEventHandler<SocketDataController>,
     }
 
     /**
-     * Try connect to remote.
+     * Try connect to remote.<br>
+     * If a connect is in progress, wait for it instead of opening another channel.
+     * The blocking connect doesn't hold the lock of this client, so reactor and timer threads are never blocked by it.
+     *
      * @return Connected or not.
      */
-    public synchronized boolean tryConnect() {
-        if (this.addr == null) {
-            this.started = false;
-            return false;
+    public boolean tryConnect() {
+        CommFuture<Boolean> result;
+        boolean blocking = false;
+        synchronized (this) {
+            if (this.addr == null) {
+                this.started = false;
+                return false;
+            }
+            this.autoReconnect = this.reconnectPolicy != null;
+            if (this.started) {
+                return true;
+            }
+
+            result = this.connecting;
+            if (result == null) {
+                result = new CommFuture<Boolean>();
+                this.connecting = result;
+                if (this.reactorGroup != null) {
+                    connectByReactor(result);
+                }
+                else {
+                    blocking = true;
+                }
+            }
         }
 
-        if (this.started) {
-            return true;
+        if (blocking) {
+            connectBlocking(result);
+        }
+        try {
+            return result.get(this.connectTimeout + 1000L, TimeUnit.MILLISECONDS);
         }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        catch (Exception ex) {
+            return false;
+        }
+    }
 
+    /**
+     * Connect without blocking, the reactor finishes the connect. The lock of this client is held.
+     */
+    private void connectByReactor(final CommFuture<Boolean> result) {
         try {
             this.ch = SocketChannel.open();
-            if (this.ch == null || this.ch.socket() == null) {
-                logger.info(String.format("%s> channel to %s:%s can't be opened",
-                        this.aliasName,
-                        this.addr,
-                        this.port));
-                return false;
-            }
-
+            this.ch.configureBlocking(false);
             if (this.clientPort > 0) {              // with specific port
                 this.ch.socket().bind(new InetSocketAddress(this.clientPort));
             }
+            boolean now = this.ch.connect(resolve());
 
-            // this.ch.configureBlocking(true);     // default is true ?!
-            this.ch.socket().connect(new InetSocketAddress(InetAddress.getByName(this.addr), this.port), 2000);
-            this.ch.configureBlocking(false);
+            final SocketDataController controller = open();
+            final CommFuture<Boolean> finished = new CommFuture<Boolean>();
+            final HashedWheelTimer.Timeout timeout = this.timer.schedule(new Runnable() {
 
-            /**
-            this.ch.configureBlocking(false);
-            this.ch.connect(new InetSocketAddress(InetAddress.getByName(this.addr), this.port));
-            // must have in non-blocking mode!!
-            while (!this.ch.finishConnect()) {
+                @Override
+                public void run() {
+                    finished.setFailed(new SocketTimeoutException(SocketClient.this.aliasName + "> connect timeout"));
+                }
+
+            }, this.connectTimeout);
+            finished.addListener(new CommFuture.Listener<Boolean>() {
+
+                @Override
+                public void completed(final CommFuture<Boolean> f) {
+                    timeout.cancel();
+                    // completed by the reactor or the timer, don't take the lock of this client on their threads.
+                    offload(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            Throwable cause = connected(controller, result, f);
+                            if (cause == null) {
+                                result.setDone(Boolean.TRUE);
+                            }
+                            else {
+                                result.setFailed(cause);
+                            }
+                        }
+                    });
+                }
+            });
+
+            Runnable closed = new Runnable() {
+
+                @Override
+                public void run() {
+                    closed(controller);
+                }
+            };
+            if (now) {
+                this.reactorGroup.register(controller, closed);
+                finished.setDone(Boolean.TRUE);
+            }
+            else {
+                this.reactorGroup.next().connect(controller, closed, finished);
             }
-             */
+        }
+        catch (Exception ex) {
+            connectFailed(ex);
+            this.connecting = null;
+            release();
+            scheduleReconnect();
+            result.setFailed(ex);
+        }
+    }
 
-            this.controller = new SocketDataController(
-                    this.aliasName,
-                    this.ch,
-                    this.manager,
-                    this.protocol.createMonitor(this.aliasName));
-            this.controller.setMaxCache(this.maxCache);
-            this.controller.start();
+    /**
+     * Connect in the current thread without the lock of this client.
+     */
+    private void connectBlocking(CommFuture<Boolean> result) {
+        SocketChannel ch = null;
+        try {
+            ch = SocketChannel.open();
+            if (this.clientPort > 0) {              // with specific port
+                ch.socket().bind(new InetSocketAddress(this.clientPort));
+            }
+            ch.socket().connect(resolve(), this.connectTimeout);
+        }
+        catch (Exception ex) {
+            close(ch);
+            connectFailed(ex);
+            synchronized (this) {
+                if (this.connecting == result) {
+                    this.connecting = null;
+                    scheduleReconnect();
+                }
+            }
+            result.setFailed(ex);
+            return;
+        }
+
+        synchronized (this) {
+            if (this.connecting != result) {
+                // disconnected while connecting.
+                close(ch);
+                result.setFailed(new SocketException(this.aliasName + "> connect cancelled"));
+                return;
+            }
+            this.connecting = null;
+
+            try {
+                this.ch = ch;
+                open();
+                this.controller.start();
+            }
+            catch (Exception ex) {
+                connectFailed(ex);
+                release();
+                scheduleReconnect();
+                result.setFailed(ex);
+                return;
+            }
 
             if (this.clientPort > 0) {
                 logger.info(String.format("%s> connect to %s:%s(%d)",
@@ -235,29 +635,38 @@ public class SocketClient implements ProtocolEventHandler<SocketDataController>,
                         this.addr,
                         this.port));
             }
-            this.started = true;
-            return true;
+            online();
         }
-        catch (Exception ex) {
-            if (this.clientPort > 0) {
-                logger.error(String.format("%s> connect to %s:%s(%d) failed. %s",
-                        this.aliasName,
-                        this.addr,
-                        this.port,
-                        this.clientPort,
-                        ex.getMessage()));
-            }
-            else {
-                logger.error(String.format("%s> connect to %s:%s failed. %s",
-                        this.aliasName,
-                        this.addr,
-                        this.port,
-                        ex.getMessage()));
+        result.setDone(Boolean.TRUE);
+    }
+
+    private void connectFailed(Exception ex) {
+        if (this.clientPort > 0) {
+            logger.error(String.format("%s> connect to %s:%s(%d) failed. %s",
+                    this.aliasName,
+                    this.addr,
+                    this.port,
+                    this.clientPort,
+                    ex.getMessage()));
+        }
+        else {
+            logger.error(String.format("%s> connect to %s:%s failed. %s",
+                    this.aliasName,
+                    this.addr,
+                    this.port,
+                    ex.getMessage()));
+        }
+    }
+
+    private void close(SocketChannel ch) {
+        if (ch == null) {
+            return;
+        }
+        try {
+            ch.close();
+        }
+        catch (IOException ex) {
 
-            }
-            logger.error(ex);
-            disconnect();
-            return false;
         }
     }
 
@@ -271,6 +680,42 @@ public class SocketClient implements ProtocolEventHandler<SocketDataController>,
         return this.protocol;
     }
 
+    /**
+     * Get the executor running call in, call out and event handlers.
+     *
+     * @return The executor.
+     */
+    public Executor getExecutor() {
+        return this.executor;
+    }
+
+    /**
+     * Set the executor running call in, call out and event handlers. Default is DispatchExecutor.shared().
+     *
+     * @param executor The executor.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor == null ? DispatchExecutor.shared() : executor;
+    }
+
+    /**
+     * Get the timer watching call out timeouts.
+     *
+     * @return The timer.
+     */
+    public HashedWheelTimer getTimer() {
+        return this.timer;
+    }
+
+    /**
+     * Set the timer watching call out timeouts. Default is HashedWheelTimer.shared().
+     *
+     * @param timer The timer.
+     */
+    public void setTimer(HashedWheelTimer timer) {
+        this.timer = timer == null ? HashedWheelTimer.shared() : timer;
+    }
+
     @Override
     public void registerCallin(MessageCallIn<SocketDataController> callIn) {
         this.callIns.put(callIn.getCmdName(), callIn);
@@ -282,25 +727,34 @@ public class SocketClient implements ProtocolEventHandler<SocketDataController>,
     }
 
     @Override
-    public synchronized void disconnect() {
-        if (!this.started || this.controller == null || this.ch == null) {
-            return;
-        }
-
-        try {
-            this.controller.stop();
-            logger.info(String.format("%s> disconnect", this.aliasName));
+    public void disconnect() {
+        CommFuture<Boolean> connecting;
+        boolean released = false;
+        synchronized (this) {
+            this.autoReconnect = false;
+            if (this.reconnectTask != null) {
+                this.reconnectTask.cancel();
+                this.reconnectTask = null;
+            }
+            if (this.buffer != null) {
+                this.buffer.clear(new SocketException(this.aliasName + "> disconnected"));
+            }
+            connecting = this.connecting;
+            this.connecting = null;
+
+            // a connecting client has controller but is not started yet.
+            if (this.controller != null && this.ch != null) {
+                logger.info(String.format("%s> disconnect", this.aliasName));
+                release();
+                released = true;
+            }
         }
-        catch (Exception ex) {
-            logger.error(String.format("%s> disconnect - %s", this.aliasName, ex));
+        if (connecting != null) {
+            connecting.setFailed(new SocketException(this.aliasName + "> connect cancelled"));
         }
-        finally {
-            this.started = false;
-            this.controller = null;
-            this.ch = null;
+        if (released) {
             System.gc();
         }
-
     }
 
     @Override
@@ -311,7 +765,9 @@ public class SocketClient implements ProtocolEventHandler<SocketDataController>,
     @Override
     public boolean send(final byte[] data, int times) throws SocketException {
         if (!this.started) {
-            throw new SocketException(this.aliasName + "> is not started.");
+            // buffered or throw.
+            CommFuture<Boolean> written = write(data);
+            return !written.isDone() || written.isSuccess();
         }
 
         try {
@@ -326,6 +782,17 @@ public class SocketClient implements ProtocolEventHandler<SocketDataController>,
         }
     }
 
+    /**
+     * Send data to socket server without waiting.
+     *
+     * @param data Data.
+     * @return Future completed when the data is written.
+     * @throws SocketException Raise if not started and the data can't be buffered.
+     */
+    public CommFuture<Boolean> sendAsync(final byte[] data) throws SocketException {
+        return write(data);
+    }
+
     @Override
     public byte[] send(final byte[] data, String txId, long timeout) throws SocketException {
         return send(data, txId, timeout, 1);
@@ -333,34 +800,84 @@ public class SocketClient implements ProtocolEventHandler<SocketDataController>,
 
     @Override
     public byte[] send(final byte[] data, String txId, long timeout, int retry) throws SocketException {
-        if (!this.started) {
+        if (!this.started && !canBuffer()) {
             throw new SocketException(this.aliasName + "> is not started.");
         }
 
-        MessageCallOutConcurrent callout = new MessageCallOutConcurrent(getName(), txId, timeout);
-        ExecutorService threadPool = Executors.newSingleThreadExecutor();
+        if (!this.started || this.window != null) {
+            return request(data, register(txId, timeout)).await(timeout);
+        }
 
-        try {
-            this.callOuts.put(txId, callout);
-            if (this.controller.send(data, retry)) {
-                try {
-                    Future<byte[]> future = threadPool.submit(callout);
-                    return future.get();
-                }
-                catch (Exception e) {
-                    logger.error(String.format("%s> callout failed", this.aliasName), e);
-                    return null;
-                }
-            }
-            else {
-                logger.debug(String.format("%s> send %s failed", this.aliasName, ByteUtils.toHexString(data, 100)));
-                throw new SocketException(this.aliasName + "> send failed");
-            }
+        MessageCallOutFuture future = register(txId, timeout);
+        if (!this.controller.send(data, retry)) {
+            future.cancel(false);
+            logger.debug(String.format("%s> send %s failed", this.aliasName, ByteUtils.toHexString(data, 100)));
+            throw new SocketException(this.aliasName + "> send failed");
         }
-        finally {
-            threadPool.shutdown();
-            this.callOuts.remove(txId);
+        return future.await(timeout);
+    }
+
+    @Override
+    public CommFuture<byte[]> sendAsync(final byte[] data, final String txId, long timeout) throws SocketException {
+        if (!this.started && !canBuffer()) {
+            throw new SocketException(this.aliasName + "> is not started.");
         }
+
+        return request(data, register(txId, timeout));
+    }
+
+    /**
+     * Allocate a numeric transaction id which is not pending on the connection.<br>
+     * The message manager must be a TxIdMessageManager.
+     *
+     * @return Transaction id.
+     * @throws SocketException Raise if not started.
+     */
+    public long nextTxId() throws SocketException {
+        SocketDataController controller = this.controller;
+        if (!this.started || controller == null) {
+            throw new SocketException(this.aliasName + "> is not started.");
+        }
+
+        return controller.nextTxId();
+    }
+
+    /**
+     * Send data to socket server with a numeric transaction id and wait result.<br>
+     * The reply is correlated by TxIdMessageManager.findTxId without creating a String.
+     *
+     * @param data Data.
+     * @param txId Transaction id, usually allocated by nextTxId().
+     * @param timeout Timeout milliseconds.
+     * @return Reply data or Null if timeout or send failure.
+     * @throws SocketException Raise if not started.
+     */
+    public byte[] send(final byte[] data, long txId, long timeout) throws SocketException {
+        SocketDataController controller = this.controller;
+        if (!this.started || controller == null) {
+            throw new SocketException(this.aliasName + "> is not started.");
+        }
+
+        return request(data, register(controller, txId, timeout)).await(timeout);
+    }
+
+    /**
+     * Send data to socket server with a numeric transaction id and get the reply later.<br>
+     * The reply is correlated by TxIdMessageManager.findTxId without creating a String.
+     *
+     * @param data Data.
+     * @param txId Transaction id, usually allocated by nextTxId().
+     * @param timeout Timeout milliseconds.
+     * @return Future of the reply.
+     * @throws SocketException Raise if not started.
+     */
+    public CommFuture<byte[]> sendAsync(final byte[] data, long txId, long timeout) throws SocketException {
+        SocketDataController controller = this.controller;
+        if (!this.started || controller == null) {
+            throw new SocketException(this.aliasName + "> is not started.");
+        }
+
+        return request(data, register(controller, txId, timeout));
     }
 
     @Override
@@ -370,36 +887,47 @@ public class SocketClient implements ProtocolEventHandler<SocketDataController>,
 
     @Override
     public boolean send(final byte[] data, final MessageCallOut callOut, long timeout, int retry) throws SocketException {
-        if (!this.started) {
+        if (!this.started && !canBuffer()) {
             throw new SocketException(this.aliasName + "> is not started.");
         }
 
+        if (!this.started || this.window != null) {
+            return sendByFuture(data, callOut, timeout);
+        }
+
         final String tx = callOut.getTxId();
-        this.callOuts.put(tx, callOut);
+        final MessageCallOutTimed timed = new MessageCallOutTimed(callOut);
+        this.callOuts.put(tx, timed);
 
         if (this.controller.send(data, retry)) {
-            Timer timer = new Timer();
-            timer.schedule(new TimerTask() {
+            timed.watch(this.timer, timeout, new Runnable() {
 
                 @Override
                 public void run() {
-                    MessageCallOut out = SocketClient.this.callOuts.remove(tx);
-                    if(out != null) {
-                        try {
-                            logger.info(String.format("%s> tx:%s callOut timeout", SocketClient.this.aliasName, out.getTxId()));
-                            out.timeout();
-                        }
-                        catch (Exception ex) {
+                    // a newer call out with the same tx is not my business.
+                    if (!SocketClient.this.callOuts.remove(tx, timed)) {
+                        return;
+                    }
+                    logger.info(String.format("%s> tx:%s callOut timeout", SocketClient.this.aliasName, tx));
+                    dispatch(new Runnable() {
 
+                        @Override
+                        public void run() {
+                            try {
+                                timed.timeout();
+                            }
+                            catch (Exception ex) {
+
+                            }
                         }
-                    }
+                    }, null, SocketClient.this.controller);
                 }
 
-            }, timeout);
+            });
             return true;
         }
         else {
-            this.callOuts.remove(tx);
+            this.callOuts.remove(tx, timed);
             logger.debug(String.format("%s> send %s failed", this.aliasName, ByteUtils.toHexString(data, 100)));
             return false;
         }
@@ -416,8 +944,12 @@ public class SocketClient implements ProtocolEventHandler<SocketDataController>,
         }
 
         final byte[] received = this.manager.decode(args.getData());
+        if (received != args.getData()) {
+            args.release();
+        }
         if (!this.manager.validate(received)) {
             logger.debug(String.format("%s> data wrong: %s", this.aliasName, ByteUtils.toHexString(received, "-")));
+            args.release();
             return;
         }
 
@@ -425,6 +957,7 @@ public class SocketClient implements ProtocolEventHandler<SocketDataController>,
         String cmd = this.manager.findCmd(received);
         if (cmd == null) {
             logger.debug(String.format("%s> cmd: missing", this.aliasName));
+            args.release();
             return;
         }
 
@@ -432,36 +965,64 @@ public class SocketClient implements ProtocolEventHandler<SocketDataController>,
             final MessageCallIn<SocketDataController> callIn = this.callIns.get(cmd);
             if (callIn == null) {
                 logger.debug(String.format("%s> cmd:%s callIn missing", this.aliasName, cmd));
+                args.release();
                 return;
             }
 
             logger.debug(String.format("%s> cmd:%s callIn", this.aliasName, cmd));
-            new Thread(new Runnable() {
+            dispatch(new Runnable() {
 
                 @Override
                 public void run() {
-                    callIn.execute(received, SocketClient.this.controller);
+                    try {
+                        callIn.execute(received, SocketClient.this.controller);
+                    }
+                    finally {
+                        args.release();
+                    }
                 }
 
-            }).start();
+            }, args, monitor.getController());
         }
         else {
-            String tx = this.manager.findTx(received);
-            final MessageCallOut callOut = this.callOuts.remove(tx);
+            MessageCallOut found = null;
+            CallOutTable table = monitor.getController().getCallOutTable();
+            if (table != null) {
+                long txId = ((TxIdMessageManager) this.manager).findTxId(received);
+                found = txId < 0 ? null : table.remove(txId);
+            }
+            if (found == null && (table == null || !this.callOuts.isEmpty())) {
+                found = this.callOuts.remove(this.manager.findTx(received));
+            }
+
+            final MessageCallOut callOut = found;
             if (callOut == null) {
-                logger.debug(String.format("%s> cmd:%s tx:%s callout reply missing", this.aliasName, cmd, tx));
+                logger.debug(String.format("%s> cmd:%s callout reply missing", this.aliasName, cmd));
+                args.release();
                 return;
             }
 
-            logger.debug(String.format("%s> cmd:%s tx:%s callout reply", this.aliasName, cmd, tx));
-            new Thread(new Runnable() {
+            if (logger.isDebugEnabled()) {
+                logger.debug(String.format("%s> cmd:%s tx:%s callout reply", this.aliasName, cmd, callOut.getTxId()));
+            }
+            if (callOut instanceof MessageCallOutFuture) {
+                // the caller of sync send is waiting for the reply, just wake it up.
+                ((MessageCallOutFuture) callOut).execute(received, args);
+                return;
+            }
+            dispatch(new Runnable() {
 
                 @Override
                 public void run() {
-                    callOut.execute(received);
+                    try {
+                        callOut.execute(received);
+                    }
+                    finally {
+                        args.release();
+                    }
                 }
 
-            }).start();
+            }, args, monitor.getController());
         }
     }
 
@@ -504,4 +1065,337 @@ public class SocketClient implements ProtocolEventHandler<SocketDataController>,
             }
         }
     }
+
+    private SocketDataController open() throws IOException {
+        this.controller = new SocketDataController(
+                this.aliasName,
+                this.ch,
+                this.manager,
+                this.protocol.createMonitor(this.aliasName));
+        this.controller.setMaxCache(this.maxCache);
+        this.controller.setReadBufferSize(this.readBufferSize);
+        if (this.orderedDispatch) {
+            this.controller.setDispatcher(new SerialExecutor(this.executor));
+        }
+        this.window = this.maxInFlight > 0 ? new InFlightWindow(this.maxInFlight, this.maxQueued) : null;
+        if (this.protocol instanceof AbstractProtocol) {
+            ((AbstractProtocol<SocketDataController>) this.protocol).addMessageHandler(this.controller, this);
+        }
+        return this.controller;
+    }
+
+    private InetSocketAddress resolve() throws UnknownHostException {
+        // resolve once, the address is cleared when addr or port is changed.
+        if (this.remote == null) {
+            this.remote = new InetSocketAddress(InetAddress.getByName(this.addr), this.port);
+        }
+        return this.remote;
+    }
+
+    private synchronized Throwable connected(SocketDataController controller, CommFuture<Boolean> result, CommFuture<Boolean> finished) {
+        if (this.connecting == result) {
+            this.connecting = null;
+        }
+        if (this.controller != controller) {
+            // disconnected or reconnected while connecting.
+            controller.stop();
+            return new SocketException(this.aliasName + "> connect cancelled");
+        }
+        if (!finished.isSuccess()) {
+            logger.error(String.format("%s> connect to %s:%s failed. %s",
+                    this.aliasName,
+                    this.addr,
+                    this.port,
+                    finished.getCause()));
+            release();
+            scheduleReconnect();
+            return finished.getCause();
+        }
+
+        logger.info(String.format("%s> connect to %s:%s",
+                this.aliasName,
+                this.addr,
+                this.port));
+        online();
+        return null;
+    }
+
+    private void release() {
+        try {
+            if (this.controller != null) {
+                this.controller.stop();
+                if (this.protocol instanceof AbstractProtocol) {
+                    ((AbstractProtocol<SocketDataController>) this.protocol).removeMessageHandler(this.controller);
+                }
+            }
+            else if (this.ch != null) {
+                this.ch.close();
+            }
+        }
+        catch (Exception ex) {
+            logger.error(String.format("%s> disconnect - %s", this.aliasName, ex));
+        }
+        finally {
+            this.started = false;
+            this.controller = null;
+            this.ch = null;
+            if (this.window != null) {
+                this.window.clear(new SocketException(this.aliasName + "> disconnected"));
+                this.window = null;
+            }
+        }
+    }
+
+    private boolean canBuffer() {
+        return this.autoReconnect && this.buffer != null;
+    }
+
+    private CommFuture<Boolean> write(byte[] data) throws SocketException {
+        SocketDataController controller = this.controller;
+        if (this.started && controller != null) {
+            return controller.sendAsync(data);
+        }
+
+        OutboundBuffer buffer = this.buffer;
+        if (buffer != null && this.autoReconnect) {
+            // the buffer is flushed with this lock held before the client is started again.
+            synchronized (buffer) {
+                controller = this.controller;
+                if (this.started && controller != null) {
+                    return controller.sendAsync(data);
+                }
+                return buffer.offer(data);
+            }
+        }
+        throw new SocketException(this.aliasName + "> is not started.");
+    }
+
+    private void online() {
+        this.attempts = 0;
+        OutboundBuffer buffer = this.buffer;
+        if (buffer == null) {
+            this.started = true;
+            return;
+        }
+        synchronized (buffer) {
+            int size = buffer.size();
+            buffer.flushTo(this.controller);
+            this.started = true;
+            if (size > 0) {
+                logger.info(String.format("%s> flush %s buffered", this.aliasName, size));
+            }
+        }
+    }
+
+    private synchronized void lost(SocketDataController controller) {
+        if (this.controller != controller) {
+            return;
+        }
+        release();
+        scheduleReconnect();
+    }
+
+    private void scheduleReconnect() {
+        ReconnectPolicy policy = this.reconnectPolicy;
+        if (!this.autoReconnect || policy == null || this.reconnectTask != null) {
+            return;
+        }
+
+        long delay = policy.getDelay(this.attempts++);
+        logger.info(String.format("%s> reconnect in %sms, attempt:%s", this.aliasName, delay, this.attempts));
+        this.reconnectTask = this.timer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                // the timer is shared, don't take the lock of this client on its thread.
+                offload(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        reconnect();
+                    }
+                });
+            }
+
+        }, delay);
+    }
+
+    /**
+     * Run a task on the executor, or on the current thread if the executor rejects it.
+     */
+    private void offload(Runnable task) {
+        try {
+            this.executor.execute(task);
+        }
+        catch (RejectedExecutionException ex) {
+            task.run();
+        }
+    }
+
+    private void reconnect() {
+        synchronized (this) {
+            this.reconnectTask = null;
+            if (!this.autoReconnect || this.started) {
+                return;
+            }
+        }
+        // a failed attempt schedules the next one.
+        tryConnectAsync();
+    }
+
+    private void closed(final SocketDataController controller) {
+        if (this.controller != controller) {
+            controller.stop();
+            return;
+        }
+        logger.info(String.format("%s> closed by remote", this.aliasName));
+        // the reactor is shared, don't block it. lost() must run even if the executor is full.
+        offload(new Runnable() {
+
+            @Override
+            public void run() {
+                lost(controller);
+            }
+        });
+    }
+
+    private boolean sendByFuture(final byte[] data, final MessageCallOut callOut, long timeout) {
+        final SocketDataController controller = this.controller;
+        MessageCallOutFuture future = request(data, register(callOut.getTxId(), timeout));
+        future.addListener(new CommFuture.Listener<byte[]>() {
+
+            @Override
+            public void completed(final CommFuture<byte[]> f) {
+                if (f.isSuccess()) {
+                    dispatch(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            callOut.execute(f.getNow());
+                        }
+                    }, null, controller);
+                }
+                else if (f.getCause() instanceof TimeoutException) {
+                    logger.info(String.format("%s> tx:%s callOut timeout", SocketClient.this.aliasName, callOut.getTxId()));
+                    dispatch(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            try {
+                                callOut.timeout();
+                            }
+                            catch (Exception ex) {
+
+                            }
+                        }
+                    }, null, controller);
+                }
+            }
+        });
+        return !(future.getCause() instanceof RejectedExecutionException);
+    }
+
+    private MessageCallOutFuture request(final byte[] data, final MessageCallOutFuture future) {
+        Runnable write = new Runnable() {
+
+            @Override
+            public void run() {
+                final CommFuture<Boolean> written;
+                try {
+                    written = write(data);
+                }
+                catch (SocketException ex) {
+                    future.setFailed(ex);
+                    return;
+                }
+                written.addListener(new CommFuture.Listener<Boolean>() {
+
+                    @Override
+                    public void completed(CommFuture<Boolean> w) {
+                        if (w.getCause() instanceof RejectedExecutionException) {
+                            future.setFailed(w.getCause());
+                        }
+                        else if (!w.isSuccess()) {
+                            future.setFailed(new SocketException(SocketClient.this.aliasName + "> send failed"));
+                        }
+                    }
+                });
+                if (!written.isDone() && !SocketClient.this.started) {
+                    // buffered, don't send it when nobody waits the reply.
+                    future.addListener(new CommFuture.Listener<byte[]>() {
+
+                        @Override
+                        public void completed(CommFuture<byte[]> f) {
+                            if (!f.isSuccess()) {
+                                written.cancel(false);
+                            }
+                        }
+                    });
+                }
+            }
+        };
+
+        InFlightWindow window = this.window;
+        if (window == null) {
+            write.run();
+            return future;
+        }
+        try {
+            window.submit(future, write);
+        }
+        catch (RejectedExecutionException ex) {
+            logger.debug(String.format("%s> tx:%s rejected, %s", this.aliasName, future.getTxId(), ex.getMessage()));
+            future.setFailed(ex);
+        }
+        return future;
+    }
+
+    private MessageCallOutFuture register(SocketDataController controller, final long txId, long timeout) throws SocketException {
+        final CallOutTable table = controller.getCallOutTable();
+        if (table == null) {
+            throw new SocketException(this.aliasName + "> message manager has no numeric transaction id");
+        }
+
+        final MessageCallOutFuture future = new MessageCallOutFuture(this.aliasName, txId);
+        MessageCallOutFuture.replaced(table.put(txId, future));
+        future.addListener(new CommFuture.Listener<byte[]>() {
+
+            @Override
+            public void completed(CommFuture<byte[]> f) {
+                table.remove(txId, future);
+            }
+        });
+        future.watch(this.timer, timeout);
+        return future;
+    }
+
+    private MessageCallOutFuture register(final String txId, long timeout) {
+        final MessageCallOutFuture future = new MessageCallOutFuture(this.aliasName, txId);
+        MessageCallOutFuture.replaced(this.callOuts.put(txId, future));
+        future.addListener(new CommFuture.Listener<byte[]>() {
+
+            @Override
+            public void completed(CommFuture<byte[]> f) {
+                SocketClient.this.callOuts.remove(txId, future);
+            }
+        });
+        future.watch(this.timer, timeout);
+        return future;
+    }
+
+    private void dispatch(Runnable task, ProtocolEventArgs args, SocketDataController controller) {
+        Executor executor = controller == null ? null : controller.getDispatcher();
+        if (executor == null) {
+            executor = this.executor;
+        }
+        try {
+            executor.execute(task);
+        }
+        catch (RejectedExecutionException ex) {
+            logger.error(String.format("%s> dispatch rejected, %s", this.aliasName, this.executor));
+            if (args != null) {
+                args.release();
+            }
+        }
+    }
 }
@@ -18,32 +18,39 @@
  *******************************************************************************/
 package uia.comm;
 
+import java.net.SocketException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * Group of clients which sends requests to all clients at the same time.<br>
+ * A client keeps one pending request per transaction id. Broadcasts by send(data, txId, timeout) run one after another,
+ * but if other requests with the same transaction id overlap, the earlier one fails at once, so they should use unique transaction ids.
  *
  * @author Kyle K. Lin
  *
  */
 public class SocketClientGroup {
 
-    private final int nThreads;
+    private final ConcurrentHashMap<String, SocketClient> clients;
 
-    private final HashMap<String, SocketClient> clients;
+    /**
+     * Constructor.
+     */
+    public SocketClientGroup() {
+        this.clients = new ConcurrentHashMap<String, SocketClient>();
+    }
 
     /**
      * Constructor.
      *
-     * @param nThreads Number of threads.
+     * @param nThreads Not used. Requests are sent through the async path of clients, so no thread pool is needed.
+     * @deprecated Use SocketClientGroup() instead, the number of threads is ignored.
      */
+    @Deprecated
     public SocketClientGroup(int nThreads) {
-        this.nThreads = nThreads;
-        this.clients = new HashMap<String, SocketClient>();
+        this();
     }
 
     /**
@@ -74,109 +81,127 @@ public class SocketClientGroup {
         this.clients.remove(clientName);
     }
 
+    /**
+     * Connect all clients concurrently without blocking. Each client uses its own address and port.
+     *
+     * @return Futures of connections with client names.
+     */
+    public Map<String, CommFuture<Boolean>> connect() {
+        HashMap<String, CommFuture<Boolean>> result = new HashMap<String, CommFuture<Boolean>>();
+        for (Map.Entry<String, SocketClient> e : this.clients.entrySet()) {
+            result.put(e.getKey(), e.getValue().tryConnectAsync());
+        }
+        return result;
+    }
+
     /**
      * Send data to clients.
      *
      * @param dataOfClients data of clients.
      * @param txId Transaction id.
      * @param timeout Timeout millisecond.
-     * @return Reply data with its client name.
+     * @return Reply data with its client name. The reply is null if the client failed. Clients not registered are omitted.
      */
     public Map<String, byte[]> send(
             final HashMap<String, byte[]> dataOfClients,
             final String txId,
             final int timeout) {
-        // thread pool
-        ExecutorService serv = Executors.newFixedThreadPool(this.nThreads);
-
-        // submit
-        HashMap<String, Future<byte[]>> fs = new HashMap<String, Future<byte[]>>();
-        for (Map.Entry<String, byte[]> e1 : dataOfClients.entrySet()) {
-            String name = e1.getKey();
-
-            final SocketClient client = this.clients.get(name);
-            if (client == null) {   // missing socket client
-                continue;
-            }
-
-            final byte[] data = e1.getValue();
-            Future<byte[]> f = serv.submit(new Callable<byte[]>() {
-
-                @Override
-                public byte[] call() throws Exception {
-                    try {
-                        return client.send(data, txId, timeout);
-                    }
-                    catch (Exception ex) {
-                        return null;
-                    }
-                }
-
-            });
-            fs.put(name, f);
-        }
-
-        // get from Future
-        HashMap<String, byte[]> result = new HashMap<String, byte[]>();
-        for (Map.Entry<String, Future<byte[]>> e2 : fs.entrySet()) {
-            try {
-                result.put(e2.getKey(), e2.getValue().get());
-            }
-            catch (Exception e) {
-                result.put(e2.getKey(), null);
-            }
-        }
-        serv.shutdown();
-
-        return result;
+        return gather(scatter(dataOfClients, txId, timeout, null));
     }
 
     /**
-     * Send same data to all clients.
+     * Send same data to all clients.<br>
+     * Broadcasts run one after another, so broadcasts with the same transaction id don't replace each other.
+     *
      * @param data Data.
      * @param txId Transaction id.
      * @param timeout Timeout millisecond.
-     * @return Reply data with its client name.
+     * @return Reply data with its client name. The reply is null if the client failed.
      */
     public synchronized Map<String, byte[]> send(final byte[] data, final String txId, final int timeout) {
-        // thread pool
-        ExecutorService serv = Executors.newFixedThreadPool(this.nThreads);
-
-        // submit
-        HashMap<String, Future<byte[]>> fs = new HashMap<String, Future<byte[]>>();
-        for (final Map.Entry<String, SocketClient> e1 : this.clients.entrySet()) {
-            Future<byte[]> f = serv.submit(new Callable<byte[]>() {
-
-                @Override
-                public byte[] call() throws Exception {
-                    try {
-                        final SocketClient client = e1.getValue();
-                        final byte[] result = client.send(data, txId, timeout);
-                        return result;
-                    }
-                    catch (Exception ex) {
-                        ex.printStackTrace();
-                        return null;
-                    }
-                }
+        return gather(scatter(data, txId, timeout, null));
+    }
 
-            });
-            fs.put(e1.getKey(), f);
+    /**
+     * Send data to clients without blocking.<br>
+     * Requests use the async path of clients, so no thread waits for a reply. Clients not registered are reported as failures.
+     *
+     * @param dataOfClients data of clients.
+     * @param txId Transaction id. An overlapping request with the same id fails the earlier one.
+     * @param timeout Deadline of all replies in milliseconds.
+     * @param listener Listener notified when each reply arrives. Can be null.
+     * @return Replies collected as they arrive.
+     */
+    public ScatterGather scatter(Map<String, byte[]> dataOfClients, String txId, long timeout, ScatterGather.Listener listener) {
+        ScatterGather sg = new ScatterGather(timeout, listener);
+        for (Map.Entry<String, byte[]> e : dataOfClients.entrySet()) {
+            request(sg, e.getKey(), this.clients.get(e.getKey()), e.getValue(), txId, timeout);
         }
+        sg.scattered();
+        return sg;
+    }
 
-        // get from Future
-        HashMap<String, byte[]> result = new HashMap<String, byte[]>();
-        for (Map.Entry<String, Future<byte[]>> e2 : fs.entrySet()) {
-            try {
-                byte[] v = e2.getValue().get();
-                result.put(e2.getKey(), v);
-            }
-            catch (Exception e) {
-                result.put(e2.getKey(), null);
+    /**
+     * Send same data to all clients without blocking.<br>
+     * Requests use the async path of clients, so no thread waits for a reply.
+     *
+     * @param data Data.
+     * @param txId Transaction id. An overlapping request with the same id fails the earlier one.
+     * @param timeout Deadline of all replies in milliseconds.
+     * @param listener Listener notified when each reply arrives. Can be null.
+     * @return Replies collected as they arrive.
+     */
+    public ScatterGather scatter(byte[] data, String txId, long timeout, ScatterGather.Listener listener) {
+        ScatterGather sg = new ScatterGather(timeout, listener);
+        for (Map.Entry<String, SocketClient> e : this.clients.entrySet()) {
+            request(sg, e.getKey(), e.getValue(), data, txId, timeout);
+        }
+        sg.scattered();
+        return sg;
+    }
+
+    private void request(final ScatterGather sg, final String name, SocketClient client, byte[] data, String txId, long timeout) {
+        if (client == null) {   // missing socket client
+            sg.missing(name, new SocketException(name + "> client is missing"));
+            return;
+        }
+        sg.expect(name);
+
+        CommFuture<byte[]> future;
+        try {
+            future = client.sendAsync(data, txId, timeout);
+        }
+        catch (Exception ex) {
+            future = CommFuture.failed(ex);
+        }
+        future.addListener(new CommFuture.Listener<byte[]>() {
+
+            @Override
+            public void completed(CommFuture<byte[]> f) {
+                if (f.isSuccess()) {
+                    sg.replied(name, f.getNow());
+                }
+                else {
+                    sg.failed(name, f.getCause());
+                }
             }
+        });
+    }
+
+    private Map<String, byte[]> gather(ScatterGather sg) {
+        try {
+            sg.await();
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
         }
-        serv.shutdown();
 
+        // clients failed or not replied before the deadline have null reply.
+        Map<String, byte[]> replies = sg.getReplies();
+        HashMap<String, byte[]> result = new HashMap<String, byte[]>();
+        for (String name : sg.getClientNames()) {
+            result.put(name, replies.get(name));
+        }
         return result;
     }
 }
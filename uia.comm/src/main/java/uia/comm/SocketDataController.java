@@ -19,16 +19,24 @@
 package uia.comm;
 
 import java.io.IOException;
+import java.net.SocketException;
 import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
-import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.log4j.Logger;
 
+import uia.comm.protocol.AbstractProtocolMonitor;
 import uia.comm.protocol.ProtocolMonitor;
 import uia.utils.ByteUtils;
 
@@ -41,6 +49,11 @@ public class SocketDataController implements DataController {
 
     private final static Logger logger = Logger.getLogger(SocketDataController.class);
 
+    /**
+     * Default size of the buffer used to read data from socket channel.
+     */
+    public static final int DEFAULT_READ_BUFFER_SIZE = 16 * 1024;
+
     private final ProtocolMonitor<SocketDataController> monitor;
 
     private final String name;;
@@ -59,6 +72,26 @@ public class SocketDataController implements DataController {
 
     private int maxCache;
 
+    private long writeTimeout;
+
+    private int readBufferSize;
+
+    private ByteBuffer readBuffer;
+
+    private final ConcurrentLinkedQueue<Outbound> outbound;
+
+    private final AtomicBoolean flushing;
+
+    private volatile SelectionKey key;
+
+    private volatile Thread ioThread;
+
+    private volatile Executor dispatcher;
+
+    private final CallOutTable callOutTable;
+
+    private final TxIdAllocator txIdAllocator;
+
     /**
      *
      * @param name Name.
@@ -78,6 +111,18 @@ public class SocketDataController implements DataController {
         this.monitor.setController(this);
         this.lastUpdate = System.currentTimeMillis();
         this.maxCache = 10 * 1000;  // 10K
+        this.writeTimeout = 10000;
+        this.readBufferSize = DEFAULT_READ_BUFFER_SIZE;
+        this.outbound = new ConcurrentLinkedQueue<Outbound>();
+        this.flushing = new AtomicBoolean(false);
+        if (mgr instanceof TxIdMessageManager) {
+            this.callOutTable = new CallOutTable();
+            this.txIdAllocator = new TxIdAllocator(((TxIdMessageManager) mgr).getMaxTxId());
+        }
+        else {
+            this.callOutTable = null;
+            this.txIdAllocator = null;
+        }
     }
 
     public int getMaxCache() {
@@ -88,6 +133,51 @@ public class SocketDataController implements DataController {
         this.maxCache = Math.min(2000000, Math.max(16, maxCache));  // 2M
     }
     
+    /**
+     * Get how long send(data, times) waits for the data to be written.
+     *
+     * @return Timeout in milliseconds.
+     */
+    public long getWriteTimeout() {
+        return this.writeTimeout;
+    }
+
+    /**
+     * Set how long send(data, times) waits for the data to be written.
+     *
+     * @param writeTimeout Timeout in milliseconds.
+     */
+    public void setWriteTimeout(long writeTimeout) {
+        this.writeTimeout = Math.max(1, writeTimeout);
+    }
+
+    /**
+     * Get size of the buffer used by the internal selector to read data.
+     *
+     * @return Size in bytes.
+     */
+    public int getReadBufferSize() {
+        return this.readBufferSize;
+    }
+
+    /**
+     * Set size of the buffer used by the internal selector to read data.
+     *
+     * @param readBufferSize Size in bytes.
+     */
+    public void setReadBufferSize(int readBufferSize) {
+        this.readBufferSize = Math.max(256, readBufferSize);
+    }
+
+    /**
+     * Get number of messages waiting to be written.
+     *
+     * @return Number of messages.
+     */
+    public int getPendingCount() {
+        return this.outbound.size();
+    }
+
     public String getChannelName() {
     	return this.channelName;
     }
@@ -98,25 +188,28 @@ public class SocketDataController implements DataController {
     }
 
     @Override
-    public synchronized boolean send(byte[] data, int times) {
+    public boolean send(byte[] data, int times) {
         this.lastUpdate = System.currentTimeMillis();
         final byte[] encoded = this.mgr.encode(data);
         int _times = Math.max(1, times);
         while (_times > 0) {
+            CommFuture<Boolean> future = write(encoded);
+            if (!future.isDone() && Thread.currentThread() == this.ioThread) {
+                // the selector thread can't wait for itself, the data will be written when the channel is writable.
+                return true;
+            }
             try {
-                this.ch.socket().setSendBufferSize(encoded.length);
-                int cnt = this.ch.write(ByteBuffer.wrap(encoded));
-                if (cnt == encoded.length) {
-                    logger.debug(String.format("%s> send %s", this.name, ByteUtils.toHexString(encoded, 200)));
-                    Thread.sleep(100);
+                if (Boolean.TRUE.equals(future.get(this.writeTimeout, TimeUnit.MILLISECONDS))) {
                     return true;
                 }
-                else {
-                    logger.fatal(String.format("%s> write count error!!", this.name));
-                }
+            }
+            catch (TimeoutException ex) {
+                // the data is still queued, retry would send it twice.
+                logger.fatal(String.format("%s> write timeout!!", this.name));
+                return false;
             }
             catch (Exception ex) {
-
+                logger.debug(String.format("%s> write failed. %s", this.name, ex.getMessage()));
             }
             finally {
                 _times--;
@@ -125,6 +218,18 @@ public class SocketDataController implements DataController {
         return false;
     }
 
+    /**
+     * Send data to remote without waiting.<br>
+     * The data is queued and written by the selector thread when the channel is writable.
+     *
+     * @param data Data.
+     * @return Future completed when all data is written.
+     */
+    public CommFuture<Boolean> sendAsync(byte[] data) {
+        this.lastUpdate = System.currentTimeMillis();
+        return write(this.mgr.encode(data));
+    }
+
     /**
      * Start this controller using internal selector.
      *
@@ -138,7 +243,7 @@ public class SocketDataController implements DataController {
         this.lastUpdate = System.currentTimeMillis();
         try {
             this.selector = Selector.open();
-            this.ch.register(this.selector, SelectionKey.OP_READ);
+            setKey(this.ch.register(this.selector, SelectionKey.OP_READ));
         }
         catch (Exception ex) {
             return false;
@@ -182,47 +287,228 @@ public class SocketDataController implements DataController {
             }
         }
         this.ch = null;
+        this.key = null;
         this.started = false;
+        failPending();
+        failCallOuts();
     }
 
     /**
-     * Receive message from socket channel.
+     * Receive message from socket channel using the buffer of this controller.
      *
+     * @return False if the channel is closed.
      * @throws IOException
      */
     synchronized boolean receive() throws IOException {
+        if (this.readBuffer == null || this.readBuffer.capacity() != this.readBufferSize) {
+            this.readBuffer = ByteBuffer.allocate(this.readBufferSize);
+        }
+        return receive(this.readBuffer);
+    }
+
+    /**
+     * Receive message from socket channel.<br>
+     * The buffer is owned by the reactor thread and reused by all its channels, the monitor reads data from the buffer directly.
+     *
+     * @param buffer Heap buffer to read data.
+     * @return False if the channel is closed.
+     * @throws IOException
+     */
+    synchronized boolean receive(ByteBuffer buffer) throws IOException {
         if (this.ch == null) {
             logger.debug(this.name + "> no channel");
             return false;
         }
 
+        this.ioThread = Thread.currentThread();
         int len = 0;
-        ByteBuffer buffer = ByteBuffer.allocate(1024);
         do {
+            buffer.clear();
             len = this.ch.read(buffer);
             if (len > 0) {
-                logger.debug(this.name + "> is receiving: " + len);
-                byte[] value = (byte[]) buffer.flip().array();
-                value = Arrays.copyOf(value, len);
-                for (byte b : value) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug(this.name + "> is receiving: " + len);
+                }
+                // read no more than maxCache bytes before checking the cache again.
+                int offset = 0;
+                while (offset < len) {
                     if (this.monitor.getDataLength() > this.maxCache) {
                         logger.fatal(this.name + "> out of maxCchte:" + this.maxCache);
                         this.monitor.reset();
                     }
-                    this.monitor.read(b);
+                    int count = (int) Math.min(len - offset, this.maxCache + 1L - this.monitor.getDataLength());
+                    AbstractProtocolMonitor.feed(this.monitor, buffer.array(), buffer.arrayOffset() + offset, count);
+                    offset += count;
                 }
             }
-            buffer.clear();
         }
-        while (len > 0);
+        while (len == buffer.capacity());   // a partly filled buffer means the socket is drained.
         this.monitor.readEnd();
-        return true;
+        return len >= 0;
     }
 
     SocketChannel getChannel() {
         return this.ch;
     }
 
+    /**
+     * Get the executor handling messages of this connection in order.
+     *
+     * @return The executor or null if messages are not ordered.
+     */
+    Executor getDispatcher() {
+        return this.dispatcher;
+    }
+
+    void setDispatcher(Executor dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Get call outs keyed by numeric transaction id.
+     *
+     * @return The table or null if the message manager is not a TxIdMessageManager.
+     */
+    CallOutTable getCallOutTable() {
+        return this.callOutTable;
+    }
+
+    /**
+     * Allocate a numeric transaction id which is not pending on this connection.
+     *
+     * @return Transaction id.
+     * @throws SocketException The message manager is not a TxIdMessageManager.
+     */
+    long nextTxId() throws SocketException {
+        if (this.txIdAllocator == null) {
+            throw new SocketException(this.name + "> message manager has no numeric transaction id");
+        }
+        return this.txIdAllocator.next(this.callOutTable);
+    }
+
+    /**
+     * Set the key used to watch OP_WRITE when the channel is registered to a selector.
+     *
+     * @param key Selection key.
+     */
+    void setKey(SelectionKey key) {
+        this.key = key;
+        if (!this.outbound.isEmpty()) {
+            interestWrite(true);
+        }
+    }
+
+    /**
+     * Write queued data to socket channel until the queue is empty or the socket buffer is full.<br>
+     * The selector calls this method when the channel is writable.
+     *
+     * @return True if the queue is empty.
+     */
+    boolean flush() {
+        while (!this.outbound.isEmpty() && this.flushing.compareAndSet(false, true)) {
+            boolean drained;
+            try {
+                drained = drain();
+                interestWrite(!drained);
+            }
+            finally {
+                this.flushing.set(false);
+            }
+            if (!drained) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private CommFuture<Boolean> write(byte[] encoded) {
+        if (this.ch == null) {
+            return CommFuture.failed(new ClosedChannelException());
+        }
+
+        CommFuture<Boolean> future = new CommFuture<Boolean>();
+        this.outbound.offer(new Outbound(encoded, future));
+        flush();
+        if (this.ch == null) {
+            failPending();
+        }
+        return future;
+    }
+
+    private boolean drain() {
+        SocketChannel ch = this.ch;
+        if (ch == null) {
+            failPending();
+            return true;
+        }
+
+        Outbound out;
+        while ((out = this.outbound.peek()) != null) {
+            try {
+                ch.write(out.buffer);
+            }
+            catch (IOException ex) {
+                logger.fatal(String.format("%s> write failed. %s", this.name, ex.getMessage()));
+                failPending(ex);
+                return true;
+            }
+            if (out.buffer.hasRemaining()) {
+                return false;
+            }
+            this.outbound.poll();
+            if (logger.isDebugEnabled()) {
+                logger.debug(String.format("%s> send %s", this.name, ByteUtils.toHexString(out.buffer.array(), 200)));
+            }
+            out.future.setDone(Boolean.TRUE);
+        }
+        return true;
+    }
+
+    private void interestWrite(boolean write) {
+        SelectionKey key = this.key;
+        if (key == null) {
+            return;
+        }
+
+        try {
+            int ops = write ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+            if (key.interestOps() != ops) {
+                key.interestOps(ops);
+                if (write) {
+                    key.selector().wakeup();
+                }
+            }
+        }
+        catch (CancelledKeyException ex) {
+
+        }
+    }
+
+    private void failPending() {
+        failPending(new ClosedChannelException());
+    }
+
+    private void failPending(Throwable cause) {
+        Outbound out;
+        while ((out = this.outbound.poll()) != null) {
+            out.future.setFailed(cause);
+        }
+    }
+
+    private void failCallOuts() {
+        if (this.callOutTable == null) {
+            return;
+        }
+        for (MessageCallOut callOut : this.callOutTable.clear()) {
+            if (callOut instanceof MessageCallOutFuture) {
+                ((MessageCallOutFuture) callOut).setFailed(new SocketException(this.name + "> disconnected"));
+            }
+            else {
+                callOut.timeout();
+            }
+        }
+    }
+
     private void running() {
         // use internal selector to handle received data.
         while (this.started) {
@@ -241,7 +527,14 @@ public class SocketDataController implements DataController {
                     iterator.remove();
 
                     try {
-                        receive();
+                        if (selectionKey.isValid() && selectionKey.isWritable()) {
+                            flush();
+                        }
+                        if (selectionKey.isValid() && selectionKey.isReadable() && !receive()) {
+                            logger.info(this.name + "> closed by remote");
+                            stop();
+                            break;
+                        }
                     }
                     catch (Exception e) {
                     	logger.fatal(socketChannel, e);
@@ -251,4 +544,16 @@ public class SocketDataController implements DataController {
             }
         }
     }
+
+    private static class Outbound {
+
+        private final ByteBuffer buffer;
+
+        private final CommFuture<Boolean> future;
+
+        private Outbound(byte[] data, CommFuture<Boolean> future) {
+            this.buffer = ByteBuffer.wrap(data);
+            this.future = future;
+        }
+    }
 }
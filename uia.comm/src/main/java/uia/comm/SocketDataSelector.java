@@ -19,61 +19,257 @@
 package uia.comm;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.log4j.Logger;
 
 /**
+ * I/O reactor owns a selector and a thread to read and write data of registered channels.<br>
+ * Monitors of the registered controllers are only used by the reactor thread.
+ * One reactor can be shared by a server and any number of socket and datagram clients.
  *
  * @author Kyle K. Lin
  *
  */
 public class SocketDataSelector {
 
-    private boolean started;
+    private final static Logger logger = Logger.getLogger(SocketDataSelector.class);
+
+    private final String name;
+
+    private volatile boolean started;
+
+    private volatile boolean stopped;
+
+    private Thread thread;
 
     private final Selector selector;
 
+    private final ConcurrentLinkedQueue<Registration> pending;
+
+    private volatile int keyCount;
+
+    private ByteBuffer readBuffer;
+
     /**
      *
      * @throws IOException Raise when open failed.
      */
     public SocketDataSelector() throws IOException {
+        this("selector");
+    }
+
+    /**
+     *
+     * @param name Name of reactor thread.
+     * @throws IOException Raise when open failed.
+     */
+    public SocketDataSelector(String name) throws IOException {
+        this.name = name;
         this.selector = Selector.open();
+        this.pending = new ConcurrentLinkedQueue<Registration>();
+        this.readBuffer = ByteBuffer.allocate(SocketDataController.DEFAULT_READ_BUFFER_SIZE);
+    }
+
+    /**
+     * Get name.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return this.name;
     }
 
     /**
-     * Register controller to specific channel.
+     * Set size of the buffer shared by all channels of this reactor to read data.<br>
+     * It must be called before the reactor is started.
+     *
+     * @param readBufferSize Size in bytes.
+     */
+    public void setReadBufferSize(int readBufferSize) {
+        this.readBuffer = ByteBuffer.allocate(Math.max(256, readBufferSize));
+    }
+
+    /**
+     * Get number of channels registered or waiting to be registered.
+     *
+     * @return Number of channels.
+     */
+    public int getLoad() {
+        return this.keyCount + this.pending.size();
+    }
+
+    /**
+     * Register controller to specific channel.<br>
+     * The channel is registered by the reactor thread, so the caller is never blocked by select().
+     *
      * @param ch Socket channel.
      * @param controller Socket data controller.
      * @throws ClosedChannelException Raise when register channel failed.
      */
     public void register(SocketChannel ch, SocketDataController controller) throws ClosedChannelException {
-        ch.register(this.selector, SelectionKey.OP_READ, controller);
+        if (ch != controller.getChannel()) {
+            throw new IllegalArgumentException(controller.getName() + "> channel is not the one of the controller");
+        }
+        register(controller, null);
+    }
+
+    /**
+     * Register a socket controller.
+     *
+     * @param controller Socket data controller.
+     * @param closed Task to run when the channel is closed by remote. Null means the controller is stopped only.
+     * @throws ClosedChannelException Raise when the channel is closed.
+     */
+    void register(final SocketDataController controller, Runnable closed) throws ClosedChannelException {
+        register(socket(controller, closed));
+    }
+
+    /**
+     * Register a socket controller whose channel is connecting in non-blocking mode.<br>
+     * The reactor finishes the connection when the channel is connectable, then reads data of the channel.
+     *
+     * @param controller Socket data controller.
+     * @param closed Task to run when the channel is closed by remote.
+     * @param connecting Future completed when the connection is finished or failed.
+     * @throws ClosedChannelException Raise when the channel is closed.
+     */
+    void connect(final SocketDataController controller, Runnable closed, CommFuture<Boolean> connecting) throws ClosedChannelException {
+        Registration reg = socket(controller, closed);
+        reg.connecting = connecting;
+        register(reg);
+    }
+
+    private Registration socket(final SocketDataController controller, Runnable closed) {
+        return new Registration(closed) {
+
+            @Override
+            SelectableChannel channel() {
+                return controller.getChannel();
+            }
+
+            @Override
+            String name() {
+                return controller.getName();
+            }
+
+            @Override
+            void setKey(SelectionKey key) {
+                controller.setKey(key);
+            }
+
+            @Override
+            void flush() {
+                controller.flush();
+            }
+
+            @Override
+            boolean receive(ByteBuffer buffer) throws IOException {
+                return controller.receive(buffer);
+            }
+
+            @Override
+            void stop() {
+                controller.stop();
+            }
+        };
+    }
+
+    /**
+     * Register a datagram controller. Replies of connected datagram channel are read by this reactor.
+     *
+     * @param controller Datagram data controller.
+     * @param closed Task to run when the channel is closed.
+     * @throws ClosedChannelException Raise when the channel is closed.
+     */
+    void register(final DatagramDataController controller, Runnable closed) throws ClosedChannelException {
+        register(new Registration(closed) {
+
+            @Override
+            SelectableChannel channel() {
+                return controller.getChannel();
+            }
+
+            @Override
+            String name() {
+                return controller.getName();
+            }
+
+            @Override
+            void setKey(SelectionKey key) {
+            }
+
+            @Override
+            void flush() {
+            }
+
+            @Override
+            boolean receive(ByteBuffer buffer) throws IOException {
+                return controller.receive(buffer);
+            }
+
+            @Override
+            void stop() {
+            }
+        });
+    }
+
+    private void register(Registration reg) throws ClosedChannelException {
+        SelectableChannel ch = reg.channel();
+        if (ch == null || !ch.isOpen() || this.stopped) {
+            throw new ClosedChannelException();
+        }
+
+        // always registered by the reactor thread, register() blocks while the selector is selecting.
+        this.pending.offer(reg);
+        this.selector.wakeup();
+        if (this.stopped) {
+            // stopped meanwhile, the reactor thread may be gone already.
+            failPending();
+        }
     }
 
     /**
      * Start selector.
      */
-    public void start() {
-        new Thread(new Runnable() {
+    public synchronized void start() {
+        if (this.started || this.stopped) {
+            return;
+        }
+
+        this.started = true;
+        this.thread = new Thread(new Runnable() {
 
             @Override
             public void run() {
                 running();
             }
 
-        }).start();
+        }, this.name);
+        this.thread.setDaemon(true);
+        this.thread.start();
     }
 
     /**
-     * Stop selector.
+     * Stop selector. Channels waiting to be registered are closed, and their connections fail.
      */
-    public void stop() {
+    public synchronized void stop() {
+        this.stopped = true;
         this.started = false;
-        this.selector.wakeup();
+        if (this.thread == null) {
+            close();
+        }
+        else {
+            this.selector.wakeup();
+        }
     }
 
     private void running() {
@@ -82,23 +278,167 @@ public class SocketDataSelector {
                 this.selector.select();
             }
             catch (Exception ex) {
+                logger.error(this.name + "> NIO failed", ex);
             }
 
-            Iterator<SelectionKey> iter = this.selector.selectedKeys().iterator();
-            while (iter.hasNext()) {
-                SelectionKey key = iter.next();
-                iter.remove();
+            // the reactor is shared by many channels, one bad channel must not stop the thread.
+            try {
+                registerPending();
+                handleSelected();
+                this.keyCount = this.selector.keys().size();
+            }
+            catch (Exception ex) {
+                logger.error(this.name + "> reactor failed", ex);
+            }
+        }
+        close();
+    }
+
+    private void close() {
+        try {
+            this.selector.close();
+        }
+        catch (IOException ex) {
+
+        }
+        failPending();
+    }
+
+    private void failPending() {
+        Registration reg;
+        while ((reg = this.pending.poll()) != null) {
+            failed(null, reg, new ClosedChannelException());
+        }
+    }
+
+    private void handleSelected() {
+        Iterator<SelectionKey> iter = this.selector.selectedKeys().iterator();
+        while (iter.hasNext()) {
+            SelectionKey key = iter.next();
+            iter.remove();
 
-                if (key.isReadable()) {
-                    SocketDataController controller = (SocketDataController) key.attachment();
-                    try {
-                        controller.receive();
-                    }
-                    catch (IOException e) {
-                        // TODO: raise event to disconnect
-                    }
+            Registration reg = (Registration) key.attachment();
+            try {
+                if (key.isValid() && key.isConnectable()) {
+                    connected(key, reg);
+                    continue;
+                }
+                if (key.isValid() && key.isWritable()) {
+                    reg.flush();
+                }
+                if (key.isValid() && key.isReadable() && !reg.receive(this.readBuffer)) {
+                    closed(key, reg);
                 }
             }
+            catch (Exception ex) {
+                logger.debug(String.format("%s> %s> receive failed. %s", this.name, reg.name(), ex.getMessage()));
+                failed(key, reg, ex);
+            }
         }
     }
+
+    private void registerPending() {
+        Registration reg;
+        while ((reg = this.pending.poll()) != null) {
+            try {
+                SelectableChannel ch = reg.channel();
+                if (ch == null) {
+                    continue;
+                }
+                try {
+                    registered(ch.register(this.selector, reg.connecting == null ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, reg), reg);
+                }
+                catch (CancelledKeyException ex) {
+                    // the old key of the channel is cancelled but not flushed yet.
+                    this.selector.selectNow();
+                    registered(ch.register(this.selector, reg.connecting == null ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, reg), reg);
+                }
+            }
+            catch (Exception ex) {
+                logger.debug(String.format("%s> %s> register failed. %s", this.name, reg.name(), ex.getMessage()));
+                failed(null, reg, ex);
+            }
+        }
+    }
+
+    private void registered(SelectionKey key, Registration reg) {
+        if (reg.connecting == null) {
+            reg.setKey(key);
+        }
+    }
+
+    private void connected(SelectionKey key, Registration reg) {
+        try {
+            if (!((SocketChannel) key.channel()).finishConnect()) {
+                return;
+            }
+        }
+        catch (IOException ex) {
+            key.cancel();
+            reg.connecting.setFailed(ex);
+            return;
+        }
+
+        CommFuture<Boolean> connecting = reg.connecting;
+        reg.connecting = null;
+        key.interestOps(SelectionKey.OP_READ);
+        reg.setKey(key);
+        connecting.setDone(Boolean.TRUE);
+    }
+
+    private void failed(SelectionKey key, Registration reg, Exception cause) {
+        CommFuture<Boolean> connecting = reg.connecting;
+        if (connecting == null) {
+            closed(key, reg);
+            return;
+        }
+
+        if (key != null) {
+            key.cancel();
+        }
+        connecting.setFailed(cause);
+    }
+
+    private void closed(SelectionKey key, Registration reg) {
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            if (reg.closed != null) {
+                reg.closed.run();
+            }
+            else {
+                reg.stop();
+            }
+        }
+        catch (Exception ex) {
+            logger.error(String.format("%s> %s> close failed", this.name, reg.name()), ex);
+        }
+    }
+
+    /**
+     * Channel registered to the reactor.
+     */
+    private static abstract class Registration {
+
+        private final Runnable closed;
+
+        private CommFuture<Boolean> connecting;
+
+        private Registration(Runnable closed) {
+            this.closed = closed;
+        }
+
+        abstract SelectableChannel channel();
+
+        abstract String name();
+
+        abstract void setKey(SelectionKey key);
+
+        abstract void flush();
+
+        abstract boolean receive(ByteBuffer buffer) throws IOException;
+
+        abstract void stop();
+    }
 }
@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Group of I/O reactors shared by socket and datagram clients.<br>
+ * A channel is registered to the least-loaded reactor, so hundreds of clients are handled by a few threads.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class SocketDataSelectorGroup {
+
+    private final static Logger logger = Logger.getLogger(SocketDataSelectorGroup.class);
+
+    private static SocketDataSelectorGroup shared;
+
+    private final String name;
+
+    private final SocketDataSelector[] reactors;
+
+    private int next;
+
+    private boolean started;
+
+    /**
+     * Get the group shared by all clients. The group has one reactor per processor and is started when it is created.
+     *
+     * @return The group.
+     */
+    public static synchronized SocketDataSelectorGroup shared() {
+        if (shared == null) {
+            try {
+                SocketDataSelectorGroup group = new SocketDataSelectorGroup("comm-reactor", Runtime.getRuntime().availableProcessors());
+                group.start();
+                shared = group;
+            }
+            catch (IOException ex) {
+                throw new IllegalStateException("shared reactors can't be opened", ex);
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param name Name prefix of reactor threads.
+     * @param count Number of reactors.
+     * @throws IOException Raise when open selector failed.
+     */
+    public SocketDataSelectorGroup(String name, int count) throws IOException {
+        this.name = name;
+        this.reactors = new SocketDataSelector[Math.max(1, count)];
+        for (int i = 0; i < this.reactors.length; i++) {
+            this.reactors[i] = new SocketDataSelector(name + "-" + i);
+        }
+    }
+
+    /**
+     * Get name.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Get number of reactors.
+     *
+     * @return Number of reactors.
+     */
+    public int size() {
+        return this.reactors.length;
+    }
+
+    /**
+     * Get number of channels of all reactors.
+     *
+     * @return Number of channels.
+     */
+    public int getLoad() {
+        int load = 0;
+        for (SocketDataSelector reactor : this.reactors) {
+            load += reactor.getLoad();
+        }
+        return load;
+    }
+
+    /**
+     * Set size of the buffer of each reactor to read data.<br>
+     * It must be called before the group is started.
+     *
+     * @param readBufferSize Size in bytes.
+     */
+    public void setReadBufferSize(int readBufferSize) {
+        for (SocketDataSelector reactor : this.reactors) {
+            reactor.setReadBufferSize(readBufferSize);
+        }
+    }
+
+    /**
+     * Start all reactors.
+     */
+    public synchronized void start() {
+        if (this.started) {
+            return;
+        }
+        this.started = true;
+        for (SocketDataSelector reactor : this.reactors) {
+            reactor.start();
+        }
+        logger.info(String.format("%s> %s reactors", this.name, this.reactors.length));
+    }
+
+    /**
+     * Stop all reactors. The shared group can't be stopped.
+     */
+    public synchronized void stop() {
+        if (this == shared || !this.started) {
+            return;
+        }
+        this.started = false;
+        for (SocketDataSelector reactor : this.reactors) {
+            reactor.stop();
+        }
+    }
+
+    /**
+     * Find the least-loaded reactor. Reactors with the same load are used round-robin.
+     *
+     * @return The reactor.
+     */
+    public synchronized SocketDataSelector next() {
+        int n = this.reactors.length;
+        SocketDataSelector result = null;
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            SocketDataSelector reactor = this.reactors[(this.next + i) % n];
+            int load = reactor.getLoad();
+            if (load < min) {
+                min = load;
+                result = reactor;
+            }
+        }
+        this.next = (this.next + 1) % n;
+        return result;
+    }
+
+    void register(SocketDataController controller, Runnable closed) throws ClosedChannelException {
+        next().register(controller, closed);
+    }
+
+    void register(DatagramDataController controller, Runnable closed) throws ClosedChannelException {
+        next().register(controller, closed);
+    }
+}
@@ -20,20 +20,19 @@ package uia.comm;
 
 import java.net.InetSocketAddress;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Iterator;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.log4j.Logger;
 
@@ -63,11 +62,11 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
 
     private final MessageManager manager;
 
-    private final TreeMap<String, MessageCallIn<SocketDataController>> callIns;
+    private final ConcurrentHashMap<String, MessageCallIn<SocketDataController>> callIns;
 
     private final ConcurrentHashMap<String, ConcurrentHashMap<String, MessageCallOut>> clientCallouts;
 
-    private final ArrayList<SocketServerListener> listeners;
+    private final CopyOnWriteArrayList<SocketServerListener> listeners;
 
     private final ConcurrentHashMap<String, SocketDataController> controllers;
 
@@ -75,7 +74,7 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
 
     private final ConnectionStyle connectionStyle;
 
-    private boolean started;
+    private volatile boolean started;
 
     private Selector serverSelector;
 
@@ -87,6 +86,20 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
 
     private int maxCache;
 
+    private boolean multiReactor;
+
+    private int reactorCount;
+
+    private volatile SocketDataSelectorGroup reactors;
+
+    private int readBufferSize;
+
+    private Executor executor;
+
+    private HashedWheelTimer timer;
+
+    private boolean orderedDispatch;
+
     public SocketServer(Protocol<SocketDataController> protocol, int port, MessageManager manager, String aliasName) throws Exception {
         this(protocol, port, manager, aliasName, ConnectionStyle.NORMAL);
     }
@@ -102,19 +115,23 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
      */
     public SocketServer(Protocol<SocketDataController> protocol, int port, MessageManager manager, String aliasName, ConnectionStyle connectionStyle) throws Exception {
         this.aliasName = aliasName;
+        this.executor = DispatchExecutor.shared();
+        this.timer = HashedWheelTimer.shared();
         this.protocol = protocol;
         this.protocol.addMessageHandler(this);
         this.manager = manager;
-        this.callIns = new TreeMap<String, MessageCallIn<SocketDataController>>();
+        this.callIns = new ConcurrentHashMap<String, MessageCallIn<SocketDataController>>();
         this.clientCallouts = new ConcurrentHashMap<String, ConcurrentHashMap<String, MessageCallOut>>();
         this.started = false;
         this.connectionStyle = connectionStyle;
         this.controllers = new ConcurrentHashMap<String, SocketDataController>();
-        this.listeners = new ArrayList<SocketServerListener>();
+        this.listeners = new CopyOnWriteArrayList<SocketServerListener>();
 
         this.idleTime = 300000;
         this.port = port;
         this.maxCache = 20 * 1024;  // 20K
+        this.reactorCount = Runtime.getRuntime().availableProcessors();
+        this.readBufferSize = SocketDataController.DEFAULT_READ_BUFFER_SIZE;
     }
 
     public int getMaxCache() {
@@ -125,6 +142,82 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
         this.maxCache = Math.max(16, maxCache);
     }
 
+    /**
+     * Check if accepted channels are handled by worker reactors.
+     *
+     * @return True if one acceptor and N reactors are used.
+     */
+    public boolean isMultiReactor() {
+        return this.multiReactor;
+    }
+
+    /**
+     * Set if accepted channels are handled by worker reactors.<br>
+     * Default is false, the selector accepting connections also reads and parses data of all clients.
+     * It takes effect when the server is started.
+     *
+     * @param multiReactor True if one acceptor and N reactors are used.
+     */
+    public void setMultiReactor(boolean multiReactor) {
+        this.multiReactor = multiReactor;
+    }
+
+    /**
+     * Get number of worker reactors.
+     *
+     * @return Number of reactors.
+     */
+    public int getReactorCount() {
+        return this.reactorCount;
+    }
+
+    /**
+     * Set number of worker reactors. Default is number of processors.
+     *
+     * @param reactorCount Number of reactors.
+     */
+    public void setReactorCount(int reactorCount) {
+        this.reactorCount = Math.max(1, reactorCount);
+    }
+
+    /**
+     * Get size of the buffer each selector thread uses to read data.
+     *
+     * @return Size in bytes.
+     */
+    public int getReadBufferSize() {
+        return this.readBufferSize;
+    }
+
+    /**
+     * Set size of the buffer each selector thread uses to read data. It takes effect when the server is started.
+     *
+     * @param readBufferSize Size in bytes.
+     */
+    public void setReadBufferSize(int readBufferSize) {
+        this.readBufferSize = Math.max(256, readBufferSize);
+    }
+
+    /**
+     * Check if messages of a connection are handled in order.
+     *
+     * @return True if ordered.
+     */
+    public boolean isOrderedDispatch() {
+        return this.orderedDispatch;
+    }
+
+    /**
+     * Set if messages of a connection are handled in order. Default is false.<br>
+     * If true, each connection has a SerialExecutor on top of the executor, so messages and events of a connection are handled one at a time
+     * in the received order, and different connections still run in parallel. It takes effect on new connections.
+     *
+     * @param orderedDispatch True if ordered.
+     */
+    public void setOrderedDispatch(boolean orderedDispatch) {
+        this.orderedDispatch = orderedDispatch;
+    }
+
     public int getClientCount() {
         return this.controllers.size();
     }
@@ -177,6 +270,42 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
         this.listeners.remove(listener);
     }
 
+    /**
+     * Get the executor running call in, call out and event handlers.
+     *
+     * @return The executor.
+     */
+    public Executor getExecutor() {
+        return this.executor;
+    }
+
+    /**
+     * Set the executor running call in, call out and event handlers. Default is DispatchExecutor.shared().
+     *
+     * @param executor The executor.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor == null ? DispatchExecutor.shared() : executor;
+    }
+
+    /**
+     * Get the timer watching call out timeouts.
+     *
+     * @return The timer.
+     */
+    public HashedWheelTimer getTimer() {
+        return this.timer;
+    }
+
+    /**
+     * Set the timer watching call out timeouts. Default is HashedWheelTimer.shared().
+     *
+     * @param timer The timer.
+     */
+    public void setTimer(HashedWheelTimer timer) {
+        this.timer = timer == null ? HashedWheelTimer.shared() : timer;
+    }
+
     /**
      * Register call in worker to handle message send from client actively.
      *
@@ -220,6 +349,27 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
         return controller.send(data, times);
     }
 
+    /**
+     * Send data to specific socket client without waiting.
+     *
+     * @param clientName Client name.
+     * @param data Data.
+     * @return Future completed when the data is written.
+     * @throws SocketException Raise if not started or client missing.
+     */
+    public CommFuture<Boolean> sendAsync(final String clientName, final byte[] data) throws SocketException {
+        if (!this.started) {
+            throw new SocketException(this.aliasName + "> is not started.");
+        }
+
+        final SocketDataController controller = this.controllers.get(clientName);
+        if (controller == null) {
+            throw new SocketException(clientName + "> missing");
+        }
+
+        return controller.sendAsync(data);
+    }
+
     /**
      * send data to socket server and wait result.
      *
@@ -240,43 +390,91 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
             throw new SocketException(clientName + "> missing");
         }
 
-        MessageCallOutConcurrent callout = new MessageCallOutConcurrent(clientName, txId, timeout);
-        ExecutorService threadPool = Executors.newSingleThreadExecutor();
+        MessageCallOutFuture future = register(clientName, txId, timeout);
+        if (!controller.send(data, 1)) {
+            future.cancel(false);
+            logger.error(String.format("%s> %s> send failed, %s", this.aliasName, clientName, ByteUtils.toHexString(data)));
+            disconnect(controller.getName());
+            throw new SocketException(String.format("%s> %s> send failed", this.aliasName, clientName));
+        }
+        return future.await(timeout);
+    }
+
+    /**
+     * Send data to specific socket client and get the reply later.<br>
+     * The future is completed by the thread handling the reply, or failed with TimeoutException when no reply in time.
+     * Listeners run on those threads, so they must be short.
+     *
+     * @param clientName Client name.
+     * @param data Data to be sent.
+     * @param txId Transaction id.
+     * @param timeout Timeout millisecond.
+     * @return Future of the reply.
+     * @throws SocketException Raise if not started or client missing.
+     */
+    public CommFuture<byte[]> sendAsync(final String clientName, final byte[] data, String txId, long timeout) throws SocketException {
+        if (!this.started) {
+            throw new SocketException(this.aliasName + "> is not started.");
+        }
 
-        ConcurrentHashMap<String, MessageCallOut> callOuts = null;
-        synchronized(this.clientCallouts) {
-	        callOuts = this.clientCallouts.get(clientName);
-	        if (callOuts == null) {
-	            callOuts = new ConcurrentHashMap<String, MessageCallOut>();
-	            this.clientCallouts.put(clientName, callOuts);
-	        }
+        final SocketDataController controller = this.controllers.get(clientName);
+        if (controller == null) {
+            throw new SocketException(clientName + "> missing");
         }
-        callOuts.put(txId, callout);
 
-        try {
-            if (controller.send(data, 1)) {
-                try {
-                    Future<byte[]> future = threadPool.submit(callout);
-                    return future.get();
-                }
-                catch (Exception e) {
-                    logger.error(String.format("%s> %s> reply failed", this.aliasName, clientName));
-                    throw new SocketException(String.format("%s> %s> reply failed", this.aliasName, clientName));
+        final MessageCallOutFuture future = register(clientName, txId, timeout);
+        controller.sendAsync(data).addListener(new CommFuture.Listener<Boolean>() {
+
+            @Override
+            public void completed(CommFuture<Boolean> written) {
+                if (!written.isSuccess()) {
+                    future.setFailed(new SocketException(String.format("%s> %s> send failed", SocketServer.this.aliasName, clientName)));
                 }
             }
-            else {
-                logger.error(String.format("%s> %s> send failed, %s", this.aliasName, clientName, ByteUtils.toHexString(data)));
-                throw new SocketException(String.format("%s> %s> send failed", this.aliasName, clientName));
-            }
-        }
-        catch(SocketException ex) {
-            logger.error(String.format("%s> %s> send failed", this.aliasName, clientName), ex);
-           	disconnect(controller.getName());
-        	throw ex;
-        }
-        finally {
-            callOuts.remove(txId);
-        }
+        });
+        return future;
+    }
+
+    /**
+     * Allocate a numeric transaction id which is not pending on the connection of specific socket client.<br>
+     * The message manager must be a TxIdMessageManager.
+     *
+     * @param clientName Client name.
+     * @return Transaction id.
+     * @throws SocketException Raise if not started or client missing.
+     */
+    public long nextTxId(final String clientName) throws SocketException {
+        return controllerOf(clientName).nextTxId();
+    }
+
+    /**
+     * Send data to specific socket client with a numeric transaction id and wait result.<br>
+     * The reply is correlated by TxIdMessageManager.findTxId without creating a String.
+     *
+     * @param clientName Client name.
+     * @param data Data to be sent.
+     * @param txId Transaction id, usually allocated by nextTxId(clientName).
+     * @param timeout Timeout millisecond.
+     * @return Null if timeout or send failure.
+     * @throws SocketException Raise if not started or client missing.
+     */
+    public byte[] send(final String clientName, final byte[] data, long txId, long timeout) throws SocketException {
+        return request(controllerOf(clientName), data, txId, timeout).await(timeout);
+    }
+
+    /**
+     * Send data to specific socket client with a numeric transaction id and get the reply later.<br>
+     * The reply is correlated by TxIdMessageManager.findTxId without creating a String.
+     *
+     * @param clientName Client name.
+     * @param data Data to be sent.
+     * @param txId Transaction id, usually allocated by nextTxId(clientName).
+     * @param timeout Timeout millisecond.
+     * @return Future of the reply.
+     * @throws SocketException Raise if not started or client missing.
+     */
+    public CommFuture<byte[]> sendAsync(final String clientName, final byte[] data, long txId, long timeout) throws SocketException {
+        return request(controllerOf(clientName), data, txId, timeout);
     }
 
     /**
@@ -299,49 +497,44 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
             throw new SocketException(clientName + "> missing");
         }
         
-        ConcurrentHashMap<String, MessageCallOut> callOuts = null;
-        synchronized(this.clientCallouts) {
-	        callOuts = this.clientCallouts.get(clientName);
-	        if (callOuts == null) {
-	            callOuts = new ConcurrentHashMap<String, MessageCallOut>();
-	            this.clientCallouts.put(clientName, callOuts);
-	        }
-        }
+        ConcurrentHashMap<String, MessageCallOut> callOuts = callOutsOf(clientName);
         final String tx = callOut.getTxId();
-        callOuts.put(tx, callOut);
-        
+        final MessageCallOutTimed timed = new MessageCallOutTimed(callOut);
+        callOuts.put(tx, timed);
+
         final ConcurrentHashMap<String, MessageCallOut> callOutsRef = callOuts;
         if (controller.send(data, 1)) {
-            Timer timer = new Timer();
-            timer.schedule(new TimerTask() {
+            timed.watch(this.timer, timeout, new Runnable() {
 
                 @Override
                 public void run() {
-                    logger.debug(String.format("%s> %s> tx:%s callOut timer is running", 
-                    		SocketServer.this.aliasName, 
-                    		tx,
-                    		clientName));
-                	MessageCallOut out = callOutsRef.remove(tx);
-                    if (out != null) {
-                        try {
-	                        logger.info(String.format("%s> %s> tx:%s callOut timeout", 
-	                        		SocketServer.this.aliasName, 
-	                        		clientName, 
-	                        		tx,
-	                        		out.getTxId()));
-	                        out.timeout();
-                        }
-                        catch(Exception ex) {
-                        	
-                        }
+                    // a newer call out with the same tx is not my business.
+                    if (!callOutsRef.remove(tx, timed)) {
+                        return;
                     }
+                    logger.info(String.format("%s> %s> tx:%s callOut timeout",
+                            SocketServer.this.aliasName,
+                            clientName,
+                            tx));
+                    dispatch(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            try {
+                                timed.timeout();
+                            }
+                            catch (Exception ex) {
+
+                            }
+                        }
+                    }, null, controller);
                 }
 
-            }, timeout);
+            });
             return true;
         }
         else {
-            callOuts.remove(tx);
+            callOuts.remove(tx, timed);
             return false;
         }
     }
@@ -377,9 +570,17 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
             this.ch.socket().bind(new InetSocketAddress(this.port));
             this.ch.configureBlocking(false);
             this.ch.register(this.serverSelector, SelectionKey.OP_ACCEPT);
+
+            if (this.multiReactor) {
+                SocketDataSelectorGroup reactors = new SocketDataSelectorGroup(this.aliasName + "-reactor", this.reactorCount);
+                reactors.setReadBufferSize(this.readBufferSize);
+                reactors.start();
+                this.reactors = reactors;
+            }
         }
         catch (Exception ex) {
             logger.error(ex);
+            stopReactors();
             return false;
         }
 
@@ -392,7 +593,7 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
             public void run() {
                 running();
             }
-        }).start();
+        }, this.aliasName + "-acceptor").start();
 
         // polling
         this.polling = new Timer();
@@ -427,13 +628,28 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
             }
             controller.stop();
 
-            new Thread(new Runnable() {
+            dispatch(new Runnable() {
 
 				@Override
 				public void run() {
 		            raiseDisconnected(controller);
 				}
-            }).start();
+            }, null, controller);
+        }
+    }
+
+    /**
+     * Disconnect the client if the controller is still the active one of the client.
+     *
+     * @param controller The controller closed by remote.
+     */
+    private void closed(SocketDataController controller) {
+        if (this.controllers.get(controller.getName()) == controller) {
+            logger.debug(String.format("%s> %s> try to disconnect(reactor)", this.aliasName, controller.getName()));
+            disconnect(controller.getName());
+        }
+        else {
+            controller.stop();
         }
     }
 
@@ -485,6 +701,7 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
 
             }
 
+            stopReactors();
             this.polling = null;
             this.ch = null;
             this.serverSelector = null;
@@ -493,18 +710,23 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
     }
 
     @Override
-    public synchronized void messageReceived(final ProtocolMonitor<SocketDataController> monitor, ProtocolEventArgs args) {
+    public void messageReceived(final ProtocolMonitor<SocketDataController> monitor, final ProtocolEventArgs args) {
         if (args.getData() == null || args.getData().length == 0) {
             return;
         }
 
         if (this.controllers.get(monitor.getController().getName()) == null) {
+            args.release();
             return;
         }
 
         final byte[] received = this.manager.decode(args.getData());
+        if (received != args.getData()) {
+            args.release();
+        }
         if (!this.manager.validate(received)) {
             logger.debug(String.format("%s> data wrong: %s", this.aliasName, ByteUtils.toHexString(received, "-")));
+            args.release();
             return;
         }
 
@@ -516,6 +738,7 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
                     monitor.getName(),
                     monitor.getProtocol().getAliasName(),
                     cmd));
+            args.release();
             return;
         }
 
@@ -529,15 +752,18 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
                         monitor.getName(),
                         monitor.getProtocol().getAliasName(),
                         cmd));
+                args.release();
                 return;
             }
 
-            logger.debug(String.format("%s> %s> %s cmd:%s callIn",
-                    this.aliasName,
-                    monitor.getName(),
-                    monitor.getProtocol().getAliasName(),
-                    cmd));
-            new Thread(new Runnable() {
+            if (logger.isDebugEnabled()) {
+                logger.debug(String.format("%s> %s> %s cmd:%s callIn",
+                        this.aliasName,
+                        monitor.getName(),
+                        monitor.getProtocol().getAliasName(),
+                        cmd));
+            }
+            dispatch(new Runnable() {
 
                 @Override
                 public void run() {
@@ -547,26 +773,57 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
                 	catch(Exception ex) {
                 		
                 	}
+                    finally {
+                        args.release();
+                    }
                 }
 
-            }).start();
+            }, args, monitor.getController());
         }
         else {
+            CallOutTable table = monitor.getController().getCallOutTable();
+            if (table != null) {
+                long txId = ((TxIdMessageManager) this.manager).findTxId(received);
+                MessageCallOut callOut = txId < 0 ? null : table.remove(txId);
+                if (callOut != null) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug(String.format("%s> %s> %s cmd:%s tx:%s callOut",
+                                this.aliasName,
+                                monitor.getController().getName(),
+                                monitor.getProtocol().getAliasName(),
+                                cmd,
+                                txId));
+                    }
+                    // numeric transactions are always waited by futures.
+                    if (callOut instanceof MessageCallOutFuture) {
+                        ((MessageCallOutFuture) callOut).execute(received, args);
+                    }
+                    else {
+                        callOut.execute(received);
+                        args.release();
+                    }
+                    return;
+                }
+            }
+
         	ConcurrentHashMap<String, MessageCallOut> callOuts = this.clientCallouts.get(monitor.getController().getName());
             if (callOuts == null) {
                 logger.error(String.format("%s> %s> callout mapping not found",
                         this.aliasName,
                         monitor.getController().getName()));
+                args.release();
                 return;
             }
 
             String tx = this.manager.findTx(received);
-            logger.debug(String.format("%s> %s> %s cmd:%s tx:%s callOut",
-                    this.aliasName,
-                    monitor.getController().getName(),
-                    monitor.getProtocol().getAliasName(),
-                    cmd,
-                    tx));
+            if (logger.isDebugEnabled()) {
+                logger.debug(String.format("%s> %s> %s cmd:%s tx:%s callOut",
+                        this.aliasName,
+                        monitor.getController().getName(),
+                        monitor.getProtocol().getAliasName(),
+                        cmd,
+                        tx));
+            }
 
             final MessageCallOut callOut = callOuts.remove(tx);
             if (callOut == null) {
@@ -576,10 +833,16 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
                         monitor.getProtocol().getAliasName(),
                         cmd,
                         tx));
+                args.release();
                 return;
             }
 
-            new Thread(new Runnable() {
+            if (callOut instanceof MessageCallOutFuture) {
+                // the caller of sync send is waiting for the reply, just wake it up.
+                ((MessageCallOutFuture) callOut).execute(received, args);
+                return;
+            }
+            dispatch(new Runnable() {
 
                 @Override
                 public void run() {
@@ -589,9 +852,12 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
                 	catch(Exception ex) {
                 		
                 	}
+                    finally {
+                        args.release();
+                    }
                 }
 
-            }).start();
+            }, args, monitor.getController());
         }
     }
 
@@ -610,16 +876,80 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
         logger.debug(ByteUtils.toHexString(args.getData(), "-"));
     }
 
+    private SocketDataController controllerOf(String clientName) throws SocketException {
+        if (!this.started) {
+            throw new SocketException(this.aliasName + "> is not started.");
+        }
+
+        SocketDataController controller = this.controllers.get(clientName);
+        if (controller == null) {
+            throw new SocketException(clientName + "> missing");
+        }
+        return controller;
+    }
+
+    private MessageCallOutFuture request(final SocketDataController controller, byte[] data, final long txId, long timeout) throws SocketException {
+        final CallOutTable table = controller.getCallOutTable();
+        if (table == null) {
+            throw new SocketException(this.aliasName + "> message manager has no numeric transaction id");
+        }
+
+        final MessageCallOutFuture future = new MessageCallOutFuture(controller.getName(), txId);
+        MessageCallOutFuture.replaced(table.put(txId, future));
+        future.addListener(new CommFuture.Listener<byte[]>() {
+
+            @Override
+            public void completed(CommFuture<byte[]> f) {
+                table.remove(txId, future);
+            }
+        });
+        future.watch(this.timer, timeout);
+        controller.sendAsync(data).addListener(new CommFuture.Listener<Boolean>() {
+
+            @Override
+            public void completed(CommFuture<Boolean> written) {
+                if (!written.isSuccess()) {
+                    future.setFailed(new SocketException(String.format("%s> %s> send failed", SocketServer.this.aliasName, controller.getName())));
+                }
+            }
+        });
+        return future;
+    }
+
+    private MessageCallOutFuture register(String clientName, final String txId, long timeout) {
+        final ConcurrentHashMap<String, MessageCallOut> callOuts = callOutsOf(clientName);
+        final MessageCallOutFuture future = new MessageCallOutFuture(clientName, txId);
+        MessageCallOutFuture.replaced(callOuts.put(txId, future));
+        future.addListener(new CommFuture.Listener<byte[]>() {
+
+            @Override
+            public void completed(CommFuture<byte[]> f) {
+                callOuts.remove(txId, future);
+            }
+        });
+        future.watch(this.timer, timeout);
+        return future;
+    }
+
+    private ConcurrentHashMap<String, MessageCallOut> callOutsOf(String clientName) {
+        ConcurrentHashMap<String, MessageCallOut> callOuts = this.clientCallouts.get(clientName);
+        if (callOuts == null) {
+            callOuts = new ConcurrentHashMap<String, MessageCallOut>();
+            ConcurrentHashMap<String, MessageCallOut> existing = this.clientCallouts.putIfAbsent(clientName, callOuts);
+            if (existing != null) {
+                callOuts = existing;
+            }
+        }
+        return callOuts;
+    }
+
     private void polling() {
         if (this.started) {
             logger.info(this.aliasName + "> polling");
             ArrayList<String> keys = new ArrayList<String>();
-            Collection<SocketDataController> controllers = this.controllers.values();
-            synchronized (this.controllers) {
-                for (SocketDataController controller : controllers) {
-                    if (controller.isIdle(this.idleTime)) {
-                        keys.add(controller.getName());
-                    }
+            for (SocketDataController controller : this.controllers.values()) {
+                if (controller.isIdle(this.idleTime)) {
+                    keys.add(controller.getName());
                 }
             }
 
@@ -636,6 +966,7 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
     }
 
     private void running() {
+        ByteBuffer readBuffer = ByteBuffer.allocate(this.readBufferSize);
         while (this.started) {
             try {
                 this.serverSelector.select(); // wait NIO event.
@@ -663,10 +994,15 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
                         SocketChannel ch = client.accept();
                         clientConnected(ch);
                     }
-                    // 2. ready to read data
-                    if (key.isReadable()) {
+                    // 2. ready to write queued data
+                    if (key.isValid() && key.isWritable()) {
                         SocketDataController controller = (SocketDataController) key.attachment();
-                        if (!controller.receive()) {
+                        controller.flush();
+                    }
+                    // 3. ready to read data
+                    if (key.isValid() && key.isReadable()) {
+                        SocketDataController controller = (SocketDataController) key.attachment();
+                        if (!controller.receive(readBuffer)) {
                             logger.debug(String.format("%s> %s> try to disconnect(running)",
                                     this.aliasName,
                                     key));
@@ -704,25 +1040,39 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
                     this.manager,
                     this.protocol.createMonitor(clientId));
             controller.setMaxCache(this.maxCache);
-
-            synchronized (this.controllers) {
-                this.controllers.put(clientId, controller);
+            if (this.orderedDispatch) {
+                controller.setDispatcher(new SerialExecutor(this.executor));
             }
 
+            this.controllers.put(clientId, controller);
+
             // use internal selector
             // controller.start();
-            // use server selector
-            client.register(this.serverSelector, SelectionKey.OP_READ, controller);
+            SocketDataSelectorGroup reactors = this.reactors;
+            if (reactors != null) {
+                // use worker reactor
+                reactors.register(controller, new Runnable() {
+
+                    @Override
+                    public void run() {
+                        closed(controller);
+                    }
+                });
+            }
+            else {
+                // use server selector
+                controller.setKey(client.register(this.serverSelector, SelectionKey.OP_READ, controller));
+            }
 
             logger.info(String.format("%s> %s> connected, count:%s", this.aliasName, clientId, this.controllers.size()));
 
-            new Thread(new Runnable() {
+            dispatch(new Runnable() {
 
 				@Override
 				public void run() {
 			        raiseConnected(controller);
 				}
-            }).start();
+            }, null, controller);
     
         }
         catch (Exception ex) {
@@ -730,6 +1080,14 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
         }
     }
 
+    private void stopReactors() {
+        SocketDataSelectorGroup reactors = this.reactors;
+        this.reactors = null;
+        if (reactors != null) {
+            reactors.stop();
+        }
+    }
+
     private void raiseConnected(SocketDataController controller) {
         for (SocketServerListener listener : this.listeners) {
             listener.connected(controller);
@@ -745,4 +1103,20 @@ public class SocketServer implements ProtocolEventHandler<SocketDataController>
             listener.disconnected(controller);
         }
     }
+
+    private void dispatch(Runnable task, ProtocolEventArgs args, SocketDataController controller) {
+        Executor executor = controller.getDispatcher();
+        if (executor == null) {
+            executor = this.executor;
+        }
+        try {
+            executor.execute(task);
+        }
+        catch (RejectedExecutionException ex) {
+            logger.error(String.format("%s> %s> dispatch rejected, %s", this.aliasName, controller.getName(), this.executor));
+            if (args != null) {
+                args.release();
+            }
+        }
+    }
 }
@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocator of numeric transaction ids of one connection.<br>
+ * Ids increase from 1 to the max id and wrap around. Ids still pending in the call out table are skipped, so a late reply never completes a newer transaction.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+class TxIdAllocator {
+
+    private final long maxTxId;
+
+    private final AtomicLong counter;
+
+    /**
+     * Constructor.
+     *
+     * @param maxTxId Max transaction id.
+     */
+    TxIdAllocator(long maxTxId) {
+        if (maxTxId < 1) {
+            throw new IllegalArgumentException("maxTxId must be positive");
+        }
+        this.maxTxId = maxTxId;
+        this.counter = new AtomicLong();
+    }
+
+    /**
+     * Get next transaction id which is not pending.
+     *
+     * @param pending Pending call outs.
+     * @return Transaction id.
+     * @throws RejectedExecutionException Raise when all ids are pending.
+     */
+    long next(CallOutTable pending) {
+        long tries = Math.min(this.maxTxId, pending.size() + 1L);
+        for (long i = 0; i < tries; i++) {
+            long txId = (this.counter.getAndIncrement() & Long.MAX_VALUE) % this.maxTxId + 1;
+            if (!pending.contains(txId)) {
+                return txId;
+            }
+        }
+        throw new RejectedExecutionException("all transaction ids are pending");
+    }
+}
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+/**
+ * Message manager which can find a numeric transaction id from data.<br>
+ * Replies are correlated by a long key, so no String is created to look up the call out.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public interface TxIdMessageManager extends MessageManager {
+
+    /**
+     * Find numeric transaction id from data.
+     *
+     * @param data Data.
+     * @return Transaction id or -1 if not found.
+     */
+    public long findTxId(byte[] data);
+
+    /**
+     * Get max transaction id the message can carry. Allocated ids are between 1 and this value and wrap around.
+     *
+     * @return Max transaction id.
+     */
+    public long getMaxTxId();
+
+}
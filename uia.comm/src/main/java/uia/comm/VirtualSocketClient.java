@@ -18,13 +18,22 @@
  *******************************************************************************/
 package uia.comm;
 
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
 
 import uia.utils.ByteUtils;
 
 /**
+ * Client sends messages to one of replicated servers.<br>
+ * Every member has a circuit breaker. Members with open circuit are skipped and the active member fails over to the next one.<br>
+ * When the health check is started, disconnected members are connected in background and standby members stay connected,
+ * so sending never waits for a connection. A hedged request is sent to another member if no reply comes before a percentile of recent latencies.
  *
  * @author Kyle K. Lin
  *
@@ -33,52 +42,204 @@ public class VirtualSocketClient {
 
     private final static Logger logger = Logger.getLogger(VirtualSocketClient.class);
 
-    private SocketClient activeClient;
+    private final CopyOnWriteArrayList<Member> members;
 
-    private LinkedBlockingQueue<SocketClient> queues;
+    private final LatencyTracker latency;
+
+    private volatile Member active;
+
+    private int failureThreshold;
+
+    private long openMillis;
+
+    private HashedWheelTimer timer;
+
+    private volatile long healthPeriod;
+
+    private HashedWheelTimer.Timeout healthTask;
+
+    private byte[] probeData;
+
+    private String probeTxId;
+
+    private long probeTimeout;
+
+    private volatile double hedgePercentile;
 
     public VirtualSocketClient() {
-        this.queues = new LinkedBlockingQueue<SocketClient>();
+        this.members = new CopyOnWriteArrayList<Member>();
+        this.latency = new LatencyTracker(256);
+        this.failureThreshold = 3;
+        this.openMillis = 5000;
+        this.timer = HashedWheelTimer.shared();
     }
 
+    /**
+     * Add a member. The first member is active.
+     *
+     * @param client The client.
+     */
     public void add(SocketClient client) {
         if (client == null) {
             return;
         }
 
-        if (this.activeClient == null) {
-            this.activeClient = client;
+        Member member = new Member(client, new CircuitBreaker(this.failureThreshold, this.openMillis));
+        this.members.add(member);
+        if (this.active == null) {
+            this.active = member;
         }
-        this.queues.add(client);
     }
 
-    public boolean tryConnect() {
-        if (this.activeClient == null) {
-            return false;
-        }
+    /**
+     * Get active client.
+     *
+     * @return Active client or null if no member.
+     */
+    public SocketClient getActiveClient() {
+        Member member = this.active;
+        return member == null ? null : member.client;
+    }
 
-        SocketClient current = this.activeClient;
-        do {
-            if (this.activeClient.tryConnect()) {
-                logger.info(this.activeClient.getName() + "> active");
-                return true;
+    /**
+     * Get circuit breaker of a member.
+     *
+     * @param client The client.
+     * @return Circuit breaker or null if the client is not a member.
+     */
+    public CircuitBreaker getCircuitBreaker(SocketClient client) {
+        for (Member member : this.members) {
+            if (member.client == client) {
+                return member.breaker;
             }
         }
-        while (nextClient(current));
+        return null;
+    }
 
-        return false;
+    /**
+     * Set circuit breaker of members added after this call.
+     *
+     * @param failureThreshold Number of continuous failures to open the circuit. Default is 3.
+     * @param openMillis Milliseconds to keep the circuit open. Default is 5000.
+     */
+    public void setCircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Set timer used by health check and hedged requests.
+     *
+     * @param timer The timer.
+     */
+    public void setTimer(HashedWheelTimer timer) {
+        this.timer = timer == null ? HashedWheelTimer.shared() : timer;
+    }
+
+    /**
+     * Set the request used to check connected members. Without probe, a connected member is healthy.<br>
+     * A member is not probed again until its pending probe is done. The transaction id should not be used by other requests,
+     * or they fail each other.
+     *
+     * @param data The request.
+     * @param txId Transaction id of the reply.
+     * @param timeout Timeout in milliseconds. It must be less than the period of the running health check.
+     */
+    public synchronized void setHealthProbe(byte[] data, String txId, long timeout) {
+        if (data != null && this.healthPeriod > 0 && timeout >= this.healthPeriod) {
+            throw new IllegalArgumentException(String.format("probe timeout:%s must be less than health period:%s", timeout, this.healthPeriod));
+        }
+        this.probeData = data;
+        this.probeTxId = txId;
+        this.probeTimeout = timeout;
+    }
+
+    /**
+     * Start health check. Disconnected members are connected in background, so standby members are ready when failover.
+     *
+     * @param periodMillis Period in milliseconds. It must be greater than the timeout of the health probe.
+     */
+    public synchronized void startHealthCheck(long periodMillis) {
+        if (this.probeData != null && this.probeTimeout >= Math.max(1, periodMillis)) {
+            throw new IllegalArgumentException(String.format("health period:%s must be greater than probe timeout:%s", periodMillis, this.probeTimeout));
+        }
+        stopHealthCheck();
+        this.healthPeriod = Math.max(1, periodMillis);
+        check();
+    }
+
+    /**
+     * Stop health check.
+     */
+    public synchronized void stopHealthCheck() {
+        this.healthPeriod = 0;
+        if (this.healthTask != null) {
+            this.healthTask.cancel();
+            this.healthTask = null;
+        }
+    }
+
+    /**
+     * Check if health check is running.
+     *
+     * @return True if running.
+     */
+    public boolean isHealthChecking() {
+        return this.healthPeriod > 0;
     }
 
+    /**
+     * Get percentile of hedged requests.
+     *
+     * @return Percentile. 0 means no hedged request.
+     */
+    public double getHedgePercentile() {
+        return this.hedgePercentile;
+    }
+
+    /**
+     * Set percentile of hedged requests used by send(data, txId, timeout).<br>
+     * If no reply comes before the percentile of recent latencies, the request is sent to another member too and the first reply is used.
+     * The request must be safe to be handled twice.
+     *
+     * @param hedgePercentile Percentile between 0 and 1, e.g. 0.95. 0 means no hedged request.
+     */
+    public void setHedgePercentile(double hedgePercentile) {
+        this.hedgePercentile = Math.max(0, Math.min(1, hedgePercentile));
+    }
+
+    /**
+     * Connect to an available member and make it active.
+     *
+     * @return True if connected.
+     */
+    public boolean tryConnect() {
+        Member member = pick(new ArrayList<Member>(), true);
+        if (member == null) {
+            return false;
+        }
+        this.active = member;
+        logger.info(member.client.getName() + "> active");
+        return true;
+    }
+
+    /**
+     * Disconnect all members and stop health check.
+     */
     public void disconnect() {
-        if (this.activeClient != null) {
-            this.activeClient.disconnect();
+        stopHealthCheck();
+        for (Member member : this.members) {
+            member.client.disconnect();
         }
     }
 
+    /**
+     * Switch active client to next member.
+     */
     public void switchClient() {
-        SocketClient current = this.activeClient;
-        if (current != null) {
-            nextClient(current);
+        Member member = this.active;
+        if (member != null) {
+            this.active = next(member);
         }
     }
 
@@ -87,77 +248,274 @@ public class VirtualSocketClient {
     }
 
     public boolean send(byte[] data, int times) {
-        SocketClient current = this.activeClient;
-        do {
+        List<Member> tried = new ArrayList<Member>();
+        Member member;
+        while ((member = pick(tried, true)) != null) {
             try {
-                if (this.activeClient.tryConnect() && this.activeClient.send(data, times)) {
+                if (member.client.send(data, times)) {
+                    succeeded(member, -1);
                     return true;
                 }
-                else {
-                    this.activeClient.disconnect();
-                }
             }
             catch (Exception ex) {
-                this.activeClient.disconnect();
             }
+            failed(member);
         }
-        while (nextClient(current));
 
         return false;
     }
 
     public byte[] send(byte[] data, String txId, long timeout) {
-        SocketClient current = this.activeClient;
-        do {
+        double percentile = this.hedgePercentile;
+        if (percentile > 0 && this.members.size() > 1) {
+            long delay = this.latency.percentile(percentile);
+            if (delay >= 0 && delay < timeout) {
+                return hedge(data, txId, timeout, delay);
+            }
+        }
+
+        List<Member> tried = new ArrayList<Member>();
+        Member member;
+        while ((member = pick(tried, true)) != null) {
             try {
-                if (this.activeClient.tryConnect()) {
-                    byte[] reply = this.activeClient.send(data, txId, timeout);
-                    if (reply != null) {
-                        return reply;
-                    }
-                    else {
-                        logger.error(this.activeClient.getName() + "> sned failure. tx:" + txId + ", data:" + ByteUtils.toHexString(data));
-                        this.activeClient.disconnect();
-                    }
+                long start = System.currentTimeMillis();
+                byte[] reply = member.client.send(data, txId, timeout);
+                if (reply != null) {
+                    succeeded(member, System.currentTimeMillis() - start);
+                    return reply;
                 }
+                logger.error(member.client.getName() + "> send failure. tx:" + txId + ", data:" + ByteUtils.toHexString(data));
             }
             catch (Exception ex) {
-                this.activeClient.disconnect();
             }
+            failed(member);
         }
-        while (nextClient(current));
 
         return null;
     }
 
     public boolean send(byte[] data, MessageCallOut callOut, long timeout) {
-        SocketClient current = this.activeClient;
-        do {
+        List<Member> tried = new ArrayList<Member>();
+        Member member;
+        while ((member = pick(tried, true)) != null) {
             try {
-                if (this.activeClient.tryConnect() && this.activeClient.send(data, callOut, timeout)) {
+                if (member.client.send(data, callOut, timeout)) {
+                    succeeded(member, -1);
                     return true;
                 }
-                else {
-                    this.activeClient.disconnect();
-                }
             }
             catch (Exception ex) {
-                this.activeClient.disconnect();
             }
+            failed(member);
         }
-        while (nextClient(current));
 
         return false;
     }
 
-    private boolean nextClient(SocketClient checkOne) {
-        if (this.queues.size() < 2) {
-            return false;
+    /**
+     * Send to the active member and to another member if no reply before the delay.
+     */
+    private byte[] hedge(final byte[] data, final String txId, final long timeout, long delay) {
+        final Member first = pick(new ArrayList<Member>(), true);
+        if (first == null) {
+            return null;
+        }
+
+        final long start = System.currentTimeMillis();
+        final CommFuture<byte[]> result = new CommFuture<byte[]>();
+        final AtomicInteger pending = new AtomicInteger(1);
+        final AtomicBoolean hedged = new AtomicBoolean(false);
+        final Runnable second = new Runnable() {
+
+            @Override
+            public void run() {
+                if (result.isDone() || !hedged.compareAndSet(false, true)) {
+                    return;
+                }
+                List<Member> tried = new ArrayList<Member>();
+                tried.add(first);
+                // runs on the timer or a reply thread, never connect here.
+                Member member = pick(tried, false);
+                if (member != null) {
+                    logger.debug(String.format("%s> hedge tx:%s after %sms", member.client.getName(), txId, System.currentTimeMillis() - start));
+                    pending.incrementAndGet();
+                    request(member, data, txId, timeout, start, result, pending, this);
+                }
+            }
+        };
+
+        HashedWheelTimer.Timeout task = this.timer.schedule(second, delay);
+        request(first, data, txId, timeout, start, result, pending, second);
+        try {
+            return result.get(2 * timeout, TimeUnit.MILLISECONDS);
+        }
+        catch (Exception ex) {
+            logger.error(first.client.getName() + "> send failure. tx:" + txId + ", data:" + ByteUtils.toHexString(data));
+            return null;
         }
+        finally {
+            task.cancel();
+        }
+    }
+
+    private void request(final Member member, byte[] data, String txId, long timeout, final long start, final CommFuture<byte[]> result, final AtomicInteger pending, final Runnable failover) {
+        CommFuture<byte[]> future;
+        try {
+            future = member.client.sendAsync(data, txId, timeout);
+        }
+        catch (Exception ex) {
+            future = CommFuture.failed(ex);
+        }
+        future.addListener(new CommFuture.Listener<byte[]>() {
+
+            @Override
+            public void completed(CommFuture<byte[]> f) {
+                if (f.isSuccess() && f.getNow() != null) {
+                    succeeded(member, System.currentTimeMillis() - start);
+                    result.setDone(f.getNow());
+                    return;
+                }
+                // runs on a reply or timer thread, disconnect is left to the caller threads.
+                member.breaker.onFailure();
+                failover.run();
+                if (pending.decrementAndGet() == 0) {
+                    result.setFailed(f.getCause());
+                }
+            }
+        });
+    }
+
+    /**
+     * Pick an available member starting from the active one.<br>
+     * With health check running or without connect, only connected members are picked, otherwise members are connected here.
+     */
+    private Member pick(List<Member> tried, boolean connect) {
+        Member current = this.active;
+        if (current == null) {
+            return null;
+        }
+
+        boolean background = !connect || isHealthChecking();
+        Member member = current;
+        do {
+            if (!tried.contains(member)) {
+                if (member.client.isConnected() && member.breaker.allowRequest()) {
+                    tried.add(member);
+                    return member;
+                }
+                if (!background && member.breaker.allowRequest()) {
+                    tried.add(member);
+                    if (member.client.tryConnect()) {
+                        return member;
+                    }
+                    member.breaker.onFailure();
+                }
+            }
+            member = next(member);
+        }
+        while (member != current);
+
+        return null;
+    }
+
+    private Member next(Member member) {
+        int idx = this.members.indexOf(member);
+        return this.members.get((idx + 1) % this.members.size());
+    }
+
+    private void succeeded(Member member, long millis) {
+        member.breaker.onSuccess();
+        if (millis >= 0) {
+            this.latency.record(millis);
+        }
+        if (this.active != member) {
+            this.active = member;
+            logger.info(member.client.getName() + "> active");
+        }
+    }
+
+    private void failed(Member member) {
+        member.breaker.onFailure();
+        if (!isHealthChecking()) {
+            member.client.disconnect();
+        }
+    }
 
-        SocketClient client = this.queues.poll();
-        this.activeClient = this.queues.peek();
-        this.queues.add(client);
-        return this.activeClient != checkOne;
+    private synchronized void check() {
+        if (this.healthPeriod <= 0) {
+            return;
+        }
+
+        for (final Member member : this.members) {
+            if (!member.client.isConnected()) {
+                member.client.tryConnectAsync().addListener(new CommFuture.Listener<Boolean>() {
+
+                    @Override
+                    public void completed(CommFuture<Boolean> f) {
+                        if (!f.isSuccess()) {
+                            member.breaker.onFailure();
+                        }
+                        else if (VirtualSocketClient.this.probeData == null) {
+                            member.breaker.onSuccess();
+                        }
+                    }
+                });
+            }
+            else if (this.probeData != null) {
+                probe(member);
+            }
+        }
+
+        this.healthTask = this.timer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                check();
+            }
+        }, this.healthPeriod);
+    }
+
+    private void probe(final Member member) {
+        if (!member.probing.compareAndSet(false, true)) {
+            // the last probe is still pending, a new one would replace and fail it.
+            return;
+        }
+
+        CommFuture<byte[]> future;
+        try {
+            future = member.client.sendAsync(this.probeData, this.probeTxId, this.probeTimeout);
+        }
+        catch (Exception ex) {
+            future = CommFuture.failed(ex);
+        }
+        future.addListener(new CommFuture.Listener<byte[]>() {
+
+            @Override
+            public void completed(CommFuture<byte[]> f) {
+                member.probing.set(false);
+                if (f.isSuccess() && f.getNow() != null) {
+                    member.breaker.onSuccess();
+                }
+                else {
+                    logger.debug(String.format("%s> health probe failed", member.client.getName()));
+                    member.breaker.onFailure();
+                }
+            }
+        });
+    }
+
+    static class Member {
+
+        final SocketClient client;
+
+        final CircuitBreaker breaker;
+
+        final AtomicBoolean probing;
+
+        Member(SocketClient client, CircuitBreaker breaker) {
+            this.client = client;
+            this.breaker = breaker;
+            this.probing = new AtomicBoolean(false);
+        }
     }
 }
@@ -18,7 +18,8 @@
  *******************************************************************************/
 package uia.comm.protocol;
 
-import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  *
@@ -28,16 +29,21 @@ import java.util.ArrayList;
  */
 public abstract class AbstractProtocol<C> implements Protocol<C> {
 
-    private final ArrayList<ProtocolEventHandler<C>> handlers;
+    private final CopyOnWriteArrayList<ProtocolEventHandler<C>> handlers;
+
+    private final ConcurrentHashMap<C, ProtocolEventHandler<C>> controllerHandlers;
 
     private String aliasName;
 
+    private FramePool framePool;
+
     /**
      * Constructor.
      *
      */
     public AbstractProtocol() {
-        this.handlers = new ArrayList<ProtocolEventHandler<C>>();
+        this.handlers = new CopyOnWriteArrayList<ProtocolEventHandler<C>>();
+        this.controllerHandlers = new ConcurrentHashMap<C, ProtocolEventHandler<C>>();
         this.aliasName = getClass().getSimpleName();
     }
 
@@ -50,26 +56,79 @@ public abstract class AbstractProtocol<C> implements Protocol<C> {
         this.aliasName = aliasName;
     }
 
+    /**
+     * Get the pool of frames.
+     *
+     * @return The pool or null if frames are not pooled.
+     */
+    public FramePool getFramePool() {
+        return this.framePool;
+    }
+
+    /**
+     * Set the pool of frames.<br>
+     * Received messages are copied to arrays from the pool, and handlers must release them by ProtocolEventArgs.release().
+     * SocketServer, SocketClient and DatagramServer release them after MessageCallIn and MessageCallOut are executed,
+     * so workers must copy data they keep after execution.
+     *
+     * @param framePool The pool or null if frames are not pooled.
+     */
+    public void setFramePool(FramePool framePool) {
+        this.framePool = framePool;
+    }
+
     @Override
-    public synchronized void addMessageHandler(ProtocolEventHandler<C> handler) {
+    public void addMessageHandler(ProtocolEventHandler<C> handler) {
         this.handlers.add(handler);
     }
 
     @Override
-    public synchronized void remmoveMessageHandler(ProtocolEventHandler<C> handler) {
+    public void remmoveMessageHandler(ProtocolEventHandler<C> handler) {
         this.handlers.remove(handler);
     }
 
+    /**
+     * Add a handler which only handles messages of specific controller.<br>
+     * Messages of the controller are routed to the handler directly, so clients sharing this protocol don't receive messages of others.
+     *
+     * @param controller The controller.
+     * @param handler The handler.
+     */
+    public void addMessageHandler(C controller, ProtocolEventHandler<C> handler) {
+        this.controllerHandlers.put(controller, handler);
+    }
+
+    /**
+     * Remove the handler of specific controller.
+     *
+     * @param controller The controller.
+     */
+    public void removeMessageHandler(C controller) {
+        if (controller != null) {
+            this.controllerHandlers.remove(controller);
+        }
+    }
+
     /**
      * Raise if structure of message is correct.
      * @param monitor Monitor.
      * @param args Event arguments.
      */
-    public synchronized void raiseMessageReceived(ProtocolMonitor<C> monitor, ProtocolEventArgs args) {
+    public void raiseMessageReceived(ProtocolMonitor<C> monitor, ProtocolEventArgs args) {
         if (args.getData() == null || args.getData().length == 0) {
             return;
         }
 
+        ProtocolEventHandler<C> handler = findHandler(monitor);
+        if (handler != null) {
+            try {
+                handler.messageReceived(monitor, args);
+            }
+            catch (Exception ex) {
+
+            }
+        }
+
         for (ProtocolEventHandler<C> h : this.handlers) {
             try {
                 h.messageReceived(monitor, args);
@@ -85,11 +144,21 @@ public abstract class AbstractProtocol<C> implements Protocol<C> {
      * @param monitor Monitor.
      * @param args Event arguments.
      */
-    public synchronized void raiseMessageError(ProtocolMonitor<C> monitor, ProtocolEventArgs args) {
+    public void raiseMessageError(ProtocolMonitor<C> monitor, ProtocolEventArgs args) {
         if (args.getData() == null || args.getData().length == 0) {
             return;
         }
 
+        ProtocolEventHandler<C> handler = findHandler(monitor);
+        if (handler != null) {
+            try {
+                handler.messageError(monitor, args);
+            }
+            catch (Exception ex) {
+
+            }
+        }
+
         for (ProtocolEventHandler<C> h : this.handlers) {
             try {
                 h.messageError(monitor, args);
@@ -99,4 +168,12 @@ public abstract class AbstractProtocol<C> implements Protocol<C> {
             }
         }
     }
+
+    private ProtocolEventHandler<C> findHandler(ProtocolMonitor<C> monitor) {
+        if (this.controllerHandlers.isEmpty()) {
+            return null;
+        }
+        C controller = monitor.getController();
+        return controller == null ? null : this.controllerHandlers.get(controller);
+    }
 }
@@ -18,7 +18,7 @@
  *******************************************************************************/
 package uia.comm.protocol;
 
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
 
 /**
  *
@@ -26,9 +26,9 @@ import java.util.ArrayList;
  *
  * @param <C>
  */
-public abstract class AbstractProtocolMonitor<C> implements ProtocolMonitor<C> {
+public abstract class AbstractProtocolMonitor<C> implements BulkProtocolMonitor<C> {
 
-    protected ArrayList<Byte> data;
+    protected DataBuffer data;
 
     private final String name;
 
@@ -38,7 +38,7 @@ public abstract class AbstractProtocolMonitor<C> implements ProtocolMonitor<C> {
 
     public AbstractProtocolMonitor(String name) {
         this.name = name;
-        this.data = new ArrayList<Byte>();
+        this.data = new DataBuffer();
     }
 
     @Override
@@ -60,6 +60,31 @@ public abstract class AbstractProtocolMonitor<C> implements ProtocolMonitor<C> {
         return this.name;
     }
 
+    /**
+     * Read bytes one by one. Monitors override this method to handle a run of bytes at once.
+     */
+    @Override
+    public void read(byte[] data, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            read(data[i]);
+        }
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            int len = buffer.remaining();
+            read(buffer.array(), buffer.arrayOffset() + buffer.position(), len);
+            buffer.position(buffer.limit());
+        }
+        else {
+            while (buffer.hasRemaining()) {
+                read(buffer.get());
+            }
+        }
+    }
+
     @Override
     public void readEnd() {
     }
@@ -67,8 +92,6 @@ public abstract class AbstractProtocolMonitor<C> implements ProtocolMonitor<C> {
     @Override
     public void reset() {
         this.data.clear();
-        this.data.trimToSize();
-        // System.gc();
     }
 
     @Override
@@ -81,16 +104,46 @@ public abstract class AbstractProtocolMonitor<C> implements ProtocolMonitor<C> {
         this.controller = controller;
     }
 
-    public byte[] packing() {
-        byte[] result = new byte[this.data.size()];
-        for (int i = 0; i < result.length; i++) {
-            result[i] = this.data.get(i);
+    /**
+     * Read bytes by the monitor. The bytes are read one by one if the monitor is not a BulkProtocolMonitor.
+     *
+     * @param monitor The monitor.
+     * @param data Data.
+     * @param offset Start offset of data.
+     * @param length Number of bytes.
+     */
+    public static <C> void feed(ProtocolMonitor<C> monitor, byte[] data, int offset, int length) {
+        if (monitor instanceof BulkProtocolMonitor) {
+            ((BulkProtocolMonitor<C>) monitor).read(data, offset, length);
+            return;
         }
-        this.data.clear();
-        this.data.trimToSize();
-        this.data = new ArrayList<Byte>();
-        // System.gc();
 
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            monitor.read(data[i]);
+        }
+    }
+
+    public byte[] packing() {
+        byte[] result = this.data.toArray();
+        this.data.clear();
         return result;
     }
+
+    /**
+     * Pack data of a message into event arguments. Data is copied to a pooled array if the protocol has a frame pool.
+     *
+     * @return Event arguments.
+     */
+    protected ProtocolEventArgs packingArgs() {
+        FramePool pool = this.protocol instanceof AbstractProtocol ? ((AbstractProtocol<C>) this.protocol).getFramePool() : null;
+        if (pool == null) {
+            return new ProtocolEventArgs(packing());
+        }
+
+        byte[] result = pool.acquire(this.data.size());
+        this.data.copyTo(0, result, 0, result.length);
+        this.data.clear();
+        return new ProtocolEventArgs(result, pool);
+    }
 }
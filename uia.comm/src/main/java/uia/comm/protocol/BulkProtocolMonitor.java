@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm.protocol;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Monitor which reads a run of bytes at once.<br>
+ * Controllers check this interface and read byte by byte from other monitors, so monitors only implementing ProtocolMonitor keep working.
+ *
+ * @author Kyle K. Lin
+ *
+ * @param <C>
+ */
+public interface BulkProtocolMonitor<C> extends ProtocolMonitor<C> {
+
+    /**
+     * Read bytes from input source.
+     *
+     * @param data Data.
+     * @param offset Start offset of data.
+     * @param length Number of bytes.
+     */
+    public void read(byte[] data, int offset, int length);
+
+    /**
+     * Read remaining bytes of the buffer from input source.
+     *
+     * @param buffer Buffer. The position is moved to the limit after reading.
+     */
+    public void read(ByteBuffer buffer);
+}
@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm.protocol;
+
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer used by monitors to collect data of a message.<br>
+ * The backing array is reused between messages. When a huge message made it larger than the retained size, it shrinks back only after
+ * a run of small messages, so a stream of huge messages doesn't grow the array again for every message.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class DataBuffer {
+
+    private static final int INIT_CAPACITY = 256;
+
+    private static final int RETAIN_CAPACITY = 64 * 1024;  // 64K
+
+    private static final int SHRINK_AFTER = 16;
+
+    private byte[] data;
+
+    private int size;
+
+    private int retainCapacity;
+
+    private int smallCount;
+
+    /**
+     * Constructor.
+     */
+    public DataBuffer() {
+        this(INIT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param capacity Initial capacity.
+     */
+    public DataBuffer(int capacity) {
+        this.data = new byte[Math.max(16, capacity)];
+        this.size = 0;
+        this.retainCapacity = RETAIN_CAPACITY;
+    }
+
+    /**
+     * Get capacity kept between messages.
+     *
+     * @return Capacity.
+     */
+    public int getRetainCapacity() {
+        return this.retainCapacity;
+    }
+
+    /**
+     * Set capacity kept between messages. Default is 64K.<br>
+     * A larger backing array shrinks back after continuous messages not larger than this size.
+     *
+     * @param retainCapacity Capacity.
+     */
+    public void setRetainCapacity(int retainCapacity) {
+        this.retainCapacity = Math.max(16, retainCapacity);
+    }
+
+    /**
+     * Get data count.
+     *
+     * @return Data count.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Get capacity of backing array.
+     *
+     * @return Capacity.
+     */
+    public int capacity() {
+        return this.data.length;
+    }
+
+    /**
+     * Get a byte.
+     *
+     * @param idx Index.
+     * @return The byte.
+     */
+    public byte get(int idx) {
+        if (idx < 0 || idx >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + idx + ", Size: " + this.size);
+        }
+        return this.data[idx];
+    }
+
+    /**
+     * Append one byte.
+     *
+     * @param one One byte.
+     */
+    public void add(byte one) {
+        if (this.size == this.data.length) {
+            grow(this.size + 1);
+        }
+        this.data[this.size++] = one;
+    }
+
+    /**
+     * Append bytes.
+     *
+     * @param src Source.
+     * @param offset Start offset of source.
+     * @param length Number of bytes.
+     */
+    public void add(byte[] src, int offset, int length) {
+        if (length <= 0) {
+            return;
+        }
+        int required = this.size + length;
+        if (required > this.data.length) {
+            grow(required);
+        }
+        System.arraycopy(src, offset, this.data, this.size, length);
+        this.size = required;
+    }
+
+    /**
+     * Make sure the backing array can hold specific number of bytes without growing again.
+     *
+     * @param capacity Number of bytes.
+     */
+    public void reserve(int capacity) {
+        if (capacity > this.data.length) {
+            this.data = Arrays.copyOf(this.data, capacity);
+        }
+    }
+
+    /**
+     * Copy bytes to specific array.
+     *
+     * @param idx Start index of this buffer.
+     * @param dest Destination.
+     * @param destIdx Start index of destination.
+     * @param length Number of bytes.
+     */
+    public void copyTo(int idx, byte[] dest, int destIdx, int length) {
+        if (idx < 0 || length < 0 || idx + length > this.size) {
+            throw new IndexOutOfBoundsException("Index: " + idx + ", Length: " + length + ", Size: " + this.size);
+        }
+        System.arraycopy(this.data, idx, dest, destIdx, length);
+    }
+
+    /**
+     * Copy data to a new array.
+     *
+     * @return Data.
+     */
+    public byte[] toArray() {
+        return Arrays.copyOf(this.data, this.size);
+    }
+
+    /**
+     * Clear data but keep backing array for next message.
+     */
+    public void clear() {
+        if (this.data.length > this.retainCapacity) {
+            if (this.size > this.retainCapacity) {
+                this.smallCount = 0;
+            }
+            else if (++this.smallCount >= SHRINK_AFTER) {
+                this.smallCount = 0;
+                this.data = new byte[INIT_CAPACITY];
+            }
+        }
+        this.size = 0;
+    }
+
+    private void grow(int required) {
+        int capacity = this.data.length + (this.data.length >> 1);  // 1.5x
+        if (capacity < required) {
+            capacity = required;
+        }
+        this.data = Arrays.copyOf(this.data, capacity);
+    }
+}
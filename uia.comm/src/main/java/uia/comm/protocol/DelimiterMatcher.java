@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm.protocol;
+
+/**
+ * Knuth-Morris-Pratt matcher of a head or tail delimiter.<br>
+ * The matcher is immutable and can be shared by monitors. Each monitor keeps its own matched count.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class DelimiterMatcher {
+
+    private final byte[] pattern;
+
+    private final int[] fallback;
+
+    /**
+     * Constructor.
+     *
+     * @param pattern The delimiter.
+     */
+    public DelimiterMatcher(byte[] pattern) {
+        if (pattern == null || pattern.length == 0) {
+            throw new IllegalArgumentException("delimiter is empty");
+        }
+
+        this.pattern = pattern;
+        this.fallback = new int[pattern.length];
+        int k = 0;
+        for (int i = 1; i < pattern.length; i++) {
+            while (k > 0 && pattern[i] != pattern[k]) {
+                k = this.fallback[k - 1];
+            }
+            if (pattern[i] == pattern[k]) {
+                k++;
+            }
+            this.fallback[i] = k;
+        }
+    }
+
+    /**
+     * Get length of the delimiter.
+     *
+     * @return Length.
+     */
+    public int length() {
+        return this.pattern.length;
+    }
+
+    /**
+     * Get the number of matched bytes after reading one more byte.<br>
+     * If the byte breaks the match, the longest suffix which is still a prefix of the delimiter is kept.
+     *
+     * @param matched Number of matched bytes before this byte.
+     * @param one One byte.
+     * @return Number of matched bytes. Equals to length() if the delimiter is matched completely.
+     */
+    public int next(int matched, byte one) {
+        int k = matched;
+        if (k >= this.pattern.length) {
+            k = this.fallback[this.pattern.length - 1];
+        }
+        while (k > 0 && this.pattern[k] != one) {
+            k = this.fallback[k - 1];
+        }
+        if (this.pattern[k] == one) {
+            k++;
+        }
+        return k;
+    }
+}
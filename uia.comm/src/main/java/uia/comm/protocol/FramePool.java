@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm.protocol;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Pool of frame arrays.<br>
+ * Arrays are pooled by exact length because MessageManager and MessageCallIn use the length of array as the length of message.
+ * Devices usually send messages with a few fixed lengths, so most arrays are recycled instead of becoming garbage.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class FramePool {
+
+    private final int maxFrameSize;
+
+    private final int maxPerSize;
+
+    private final AtomicReferenceArray<ArrayBlockingQueue<byte[]>> pools;
+
+    /**
+     * Constructor. Pool frames up to 16K, 32 arrays for each length.
+     */
+    public FramePool() {
+        this(16 * 1024, 32);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxFrameSize Max length of pooled arrays. Longer arrays are not pooled.
+     * @param maxPerSize Max number of pooled arrays for each length.
+     */
+    public FramePool(int maxFrameSize, int maxPerSize) {
+        this.maxFrameSize = Math.max(1, maxFrameSize);
+        this.maxPerSize = Math.max(1, maxPerSize);
+        this.pools = new AtomicReferenceArray<ArrayBlockingQueue<byte[]>>(this.maxFrameSize + 1);
+    }
+
+    /**
+     * Get an array with specific length.
+     *
+     * @param length Length.
+     * @return An array from pool or a new one if the pool is empty.
+     */
+    public byte[] acquire(int length) {
+        if (length > 0 && length <= this.maxFrameSize) {
+            ArrayBlockingQueue<byte[]> pool = this.pools.get(length);
+            if (pool != null) {
+                byte[] data = pool.poll();
+                if (data != null) {
+                    return data;
+                }
+            }
+        }
+        return new byte[length];
+    }
+
+    /**
+     * Return an array to the pool. The array must not be used after recycled.
+     *
+     * @param data The array.
+     */
+    public void recycle(byte[] data) {
+        if (data == null || data.length == 0 || data.length > this.maxFrameSize) {
+            return;
+        }
+
+        ArrayBlockingQueue<byte[]> pool = this.pools.get(data.length);
+        if (pool == null) {
+            this.pools.compareAndSet(data.length, null, new ArrayBlockingQueue<byte[]>(this.maxPerSize));
+            pool = this.pools.get(data.length);
+        }
+        pool.offer(data);
+    }
+
+    /**
+     * Get number of arrays in the pool with specific length.
+     *
+     * @param length Length.
+     * @return Number of arrays.
+     */
+    public int size(int length) {
+        if (length <= 0 || length > this.maxFrameSize) {
+            return 0;
+        }
+        ArrayBlockingQueue<byte[]> pool = this.pools.get(length);
+        return pool == null ? 0 : pool.size();
+    }
+}
@@ -32,6 +32,25 @@ public class MultiProtocol<T> extends AbstractProtocol<T> {
 
     final List<Protocol<MultiProtocolMonitor<T>>> protocols;
 
+    /**
+     * First head byte of each protocol, -1 if the protocol has no fixed head.
+     */
+    final int[] heads;
+
+    /**
+     * Bytes which may start a message of one of protocols.
+     */
+    final boolean[] headTable;
+
+    /**
+     * One of protocols has no fixed head.
+     */
+    final boolean headless;
+
+    private int lockInFrames;
+
+    private int fallbackErrors;
+
     /**
      * Constructor.
      *
@@ -39,6 +58,23 @@ public class MultiProtocol<T> extends AbstractProtocol<T> {
      */
     public MultiProtocol(final List<Protocol<MultiProtocolMonitor<T>>> protocols) {
         this.protocols = protocols;
+        this.heads = new int[protocols.size()];
+        this.headTable = new boolean[256];
+        boolean headless = false;
+        for (int i = 0; i < this.heads.length; i++) {
+            Protocol<MultiProtocolMonitor<T>> protocol = protocols.get(i);
+            byte[] head = protocol instanceof HeadProtocol ? ((HeadProtocol) protocol).getHead() : null;
+            if (head != null && head.length > 0) {
+                this.heads[i] = head[0] & 0xff;
+                this.headTable[this.heads[i]] = true;
+            }
+            else {
+                this.heads[i] = -1;
+                headless = true;
+            }
+        }
+        this.headless = headless;
+
         for (Protocol<MultiProtocolMonitor<T>> protocol : this.protocols) {
             protocol.addMessageHandler(new ProtocolEventHandler<MultiProtocolMonitor<T>>() {
 
@@ -46,10 +82,12 @@ public class MultiProtocol<T> extends AbstractProtocol<T> {
                 public void messageReceived(ProtocolMonitor<MultiProtocolMonitor<T>> monitor, ProtocolEventArgs args) {
                     raiseMessageReceived(monitor.getController(), args);
                     monitor.getController().reset(monitor);
+                    monitor.getController().received(monitor);
                 }
 
                 @Override
                 public void messageError(ProtocolMonitor<MultiProtocolMonitor<T>> monitor, ProtocolEventArgs args) {
+                    monitor.getController().failed(monitor);
                     if (MultiProtocol.this.protocols.indexOf(monitor.getProtocol()) == 0) {
                         // raiseBorken(monitor.getController(), args);
                     }
@@ -64,6 +102,61 @@ public class MultiProtocol<T> extends AbstractProtocol<T> {
         }
     }
 
+    /**
+     * Get number of continuous messages to lock a monitor in one protocol.
+     *
+     * @return Number of messages. 0 means never lock in.
+     */
+    public int getLockInFrames() {
+        return this.lockInFrames;
+    }
+
+    /**
+     * Set number of continuous messages to lock a monitor in one protocol.<br>
+     * After a monitor receives this number of messages of the same protocol in a row, other protocols are dropped from the monitor.
+     *
+     * @param lockInFrames Number of messages. 0 means never lock in.
+     */
+    public void setLockInFrames(int lockInFrames) {
+        this.lockInFrames = Math.max(0, lockInFrames);
+    }
+
+    /**
+     * Get number of continuous errors to unlock a monitor.
+     *
+     * @return Number of errors. 0 means never unlock.
+     */
+    public int getFallbackErrors() {
+        return this.fallbackErrors;
+    }
+
+    /**
+     * Set number of continuous errors to unlock a monitor.<br>
+     * A locked monitor which gets this number of errors in a row validates data with all protocols again.
+     *
+     * @param fallbackErrors Number of errors. 0 means never unlock.
+     */
+    public void setFallbackErrors(int fallbackErrors) {
+        this.fallbackErrors = Math.max(0, fallbackErrors);
+    }
+
+    /**
+     * Set the pool of frames of all combined protocols.<br>
+     * Messages are packed by the combined protocols, so the pool is set to them too.
+     * Combined protocols which are not AbstractProtocol don't pool frames.
+     *
+     * @param framePool The pool or null if frames are not pooled.
+     */
+    @Override
+    public void setFramePool(FramePool framePool) {
+        super.setFramePool(framePool);
+        for (Protocol<MultiProtocolMonitor<T>> protocol : this.protocols) {
+            if (protocol instanceof AbstractProtocol) {
+                ((AbstractProtocol<MultiProtocolMonitor<T>>) protocol).setFramePool(framePool);
+            }
+        }
+    }
+
     @Override
     public ProtocolMonitor<T> createMonitor(String name) {
         return new MultiProtocolMonitor<T>(name, this);
@@ -18,6 +18,7 @@
  *******************************************************************************/
 package uia.comm.protocol;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 /**
@@ -26,16 +27,24 @@ import java.util.ArrayList;
  *
  * @param <T>
  */
-public class MultiProtocolMonitor<T> implements ProtocolMonitor<T> {
+public class MultiProtocolMonitor<T> implements BulkProtocolMonitor<T> {
 
     private final String name;
 
-    private final ArrayList<ProtocolMonitor<MultiProtocolMonitor<T>>> monitors;
+    private ArrayList<ProtocolMonitor<MultiProtocolMonitor<T>>> monitors;
 
     private final MultiProtocol<T> protocol;
 
     private T controller;
 
+    private int lockedIdx;
+
+    private int lastIdx;
+
+    private int frames;
+
+    private int errors;
+
     /**
      * Constructor.
      *
@@ -51,6 +60,17 @@ public class MultiProtocolMonitor<T> implements ProtocolMonitor<T> {
             monitor.setController(this);
             this.monitors.add(monitor);
         }
+        this.lockedIdx = -1;
+        this.lastIdx = -1;
+    }
+
+    /**
+     * Get the protocol this monitor is locked in.
+     *
+     * @return The protocol or null if all protocols are used.
+     */
+    public synchronized Protocol<MultiProtocolMonitor<T>> getLockedProtocol() {
+        return this.lockedIdx < 0 ? null : this.protocol.protocols.get(this.lockedIdx);
     }
 
     @Override
@@ -63,17 +83,75 @@ public class MultiProtocolMonitor<T> implements ProtocolMonitor<T> {
         return this.name;
     }
 
+    /**
+     * Only monitors which are running or whose head starts with this byte read it.<br>
+     * An idle monitor ignores other bytes anyway, so it doesn't need to see them.
+     */
     @Override
     public synchronized void read(byte data) {
-        int size = this.monitors.size();
+        if (this.lockedIdx >= 0) {
+            this.monitors.get(0).read(data);
+            return;
+        }
+
+        // a message found may lock in one protocol and replace the list.
+        ArrayList<ProtocolMonitor<MultiProtocolMonitor<T>>> monitors = this.monitors;
+        int[] heads = this.protocol.heads;
+        int one = data & 0xff;
+        int size = monitors.size();
         for (int i = (size - 1); i >= 0; i--) {
-            this.monitors.get(i).read(data);
+            ProtocolMonitor<MultiProtocolMonitor<T>> monitor = monitors.get(i);
+            if (heads[i] < 0 || heads[i] == one || monitor.isRunning()) {
+                monitor.read(data);
+            }
+        }
+    }
+
+    /**
+     * Read bytes one by one because a message found by one protocol resets the others.<br>
+     * Bytes which start no message are skipped while all monitors are idle.<br>
+     * If the monitor is locked in one protocol, the rest of data is validated by that protocol even if it falls back to all protocols.
+     */
+    @Override
+    public synchronized void read(byte[] data, int offset, int length) {
+        boolean[] headTable = this.protocol.headTable;
+        boolean headless = this.protocol.headless;
+        int end = offset + length;
+        int idx = offset;
+        while (idx < end) {
+            if (this.lockedIdx >= 0) {
+                AbstractProtocolMonitor.feed(this.monitors.get(0), data, idx, end - idx);
+                return;
+            }
+            if (!headless && !isRunning()) {
+                while (idx < end && !headTable[data[idx] & 0xff]) {
+                    idx++;
+                }
+            }
+            if (idx < end) {
+                read(data[idx++]);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void read(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            int len = buffer.remaining();
+            read(buffer.array(), buffer.arrayOffset() + buffer.position(), len);
+            buffer.position(buffer.limit());
+        }
+        else {
+            while (buffer.hasRemaining()) {
+                read(buffer.get());
+            }
         }
     }
 
     @Override
     public void readEnd() {
-        for (ProtocolMonitor<MultiProtocolMonitor<T>> monitor : this.monitors) {
+        ArrayList<ProtocolMonitor<MultiProtocolMonitor<T>>> monitors = this.monitors;
+        for (ProtocolMonitor<MultiProtocolMonitor<T>> monitor : monitors) {
             monitor.readEnd();
         }
     }
@@ -123,6 +201,77 @@ public class MultiProtocolMonitor<T> implements ProtocolMonitor<T> {
         }
     }
 
+    /**
+     * Count a message found by the protocol monitor.
+     * @param monitor Protocol monitor.
+     */
+    void received(ProtocolMonitor<MultiProtocolMonitor<T>> monitor) {
+        this.errors = 0;
+        int lockInFrames = this.protocol.getLockInFrames();
+        if (this.lockedIdx >= 0 || lockInFrames <= 0) {
+            return;
+        }
+
+        int idx = this.monitors.indexOf(monitor);
+        if (idx < 0) {
+            return;
+        }
+        if (idx == this.lastIdx) {
+            this.frames++;
+        }
+        else {
+            this.lastIdx = idx;
+            this.frames = 1;
+        }
+        if (this.frames >= lockInFrames) {
+            lock(idx);
+        }
+    }
+
+    /**
+     * Count an error found by the protocol monitor.
+     * @param monitor Protocol monitor.
+     */
+    void failed(ProtocolMonitor<MultiProtocolMonitor<T>> monitor) {
+        int fallbackErrors = this.protocol.getFallbackErrors();
+        if (this.lockedIdx < 0 || fallbackErrors <= 0) {
+            return;
+        }
+
+        this.errors++;
+        if (this.errors >= fallbackErrors) {
+            unlock();
+        }
+    }
+
+    private void lock(int idx) {
+        ArrayList<ProtocolMonitor<MultiProtocolMonitor<T>>> monitors = new ArrayList<ProtocolMonitor<MultiProtocolMonitor<T>>>(1);
+        monitors.add(this.monitors.get(idx));
+        this.monitors = monitors;
+        this.lockedIdx = idx;
+        this.errors = 0;
+    }
+
+    private void unlock() {
+        ProtocolMonitor<MultiProtocolMonitor<T>> locked = this.monitors.get(0);
+        ArrayList<ProtocolMonitor<MultiProtocolMonitor<T>>> monitors = new ArrayList<ProtocolMonitor<MultiProtocolMonitor<T>>>();
+        for (int i = 0; i < this.protocol.protocols.size(); i++) {
+            if (i == this.lockedIdx) {
+                monitors.add(locked);
+            }
+            else {
+                ProtocolMonitor<MultiProtocolMonitor<T>> monitor = this.protocol.protocols.get(i).createMonitor(this.name);
+                monitor.setController(this);
+                monitors.add(monitor);
+            }
+        }
+        this.monitors = monitors;
+        this.lockedIdx = -1;
+        this.lastIdx = -1;
+        this.frames = 0;
+        this.errors = 0;
+    }
+
     @Override
     public int getDataLength() {
         int dataLength = 0;
@@ -18,6 +18,9 @@
  *******************************************************************************/
 package uia.comm.protocol;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  *
  * @author Kyle K. Lin
@@ -42,24 +45,103 @@ public class ProtocolEventArgs {
         ERR_OTHER
     }
 
-    private byte[] data;
+    private volatile byte[] data;
 
     private final ErrorCode errorCode;
 
+    private final FramePool pool;
+
+    private final AtomicInteger refCnt;
+
     public ProtocolEventArgs(byte[] data) {
-        this.data = data;
-        this.errorCode = ErrorCode.OK;
+        this(data, ErrorCode.OK);
     }
 
     public ProtocolEventArgs(byte[] data, ErrorCode errorCode) {
         this.data = data;
         this.errorCode = errorCode;
+        this.pool = null;
+        this.refCnt = null;
+    }
+
+    /**
+     * Constructor of a pooled frame. The data is recycled to the pool when the last reference is released.
+     *
+     * @param data Data acquired from the pool.
+     * @param pool The pool.
+     */
+    public ProtocolEventArgs(byte[] data, FramePool pool) {
+        this.data = data;
+        this.errorCode = ErrorCode.OK;
+        this.pool = pool;
+        this.refCnt = new AtomicInteger(1);
     }
 
+    /**
+     * Get data. Data of a pooled frame is null after released.
+     *
+     * @return Data.
+     */
     public byte[] getData() {
         return this.data;
     }
 
+    /**
+     * Get read-only view of data.
+     *
+     * @return The view or null if no data.
+     */
+    public ByteBuffer getBuffer() {
+        byte[] data = this.data;
+        return data == null ? null : ByteBuffer.wrap(data).asReadOnlyBuffer();
+    }
+
+    /**
+     * Check if data is from a frame pool.
+     *
+     * @return Pooled or not.
+     */
+    public boolean isPooled() {
+        return this.pool != null;
+    }
+
+    /**
+     * Keep the data of a pooled frame until release() is called one more time.
+     */
+    public void retain() {
+        if (this.refCnt != null) {
+            this.refCnt.incrementAndGet();
+        }
+    }
+
+    /**
+     * Release the data. Data of a pooled frame is recycled when the last reference is released.<br>
+     * Nothing happens if the frame is not pooled or already recycled.
+     *
+     * @return True if data is recycled.
+     */
+    public boolean release() {
+        if (this.refCnt == null) {
+            return false;
+        }
+
+        while (true) {
+            int cnt = this.refCnt.get();
+            if (cnt <= 0) {
+                return false;
+            }
+            if (this.refCnt.compareAndSet(cnt, cnt - 1)) {
+                if (cnt == 1) {
+                    byte[] data = this.data;
+                    this.data = null;
+                    this.pool.recycle(data);
+                    return true;
+                }
+                return false;
+            }
+        }
+    }
+
     public ErrorCode getErrorCode() {
         return this.errorCode;
     }
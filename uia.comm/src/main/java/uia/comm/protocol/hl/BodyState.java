@@ -30,10 +30,13 @@ public class BodyState<T> implements HLState<T> {
 
     private int len;
 
+    private int total;
+
     private int headIdx;
 
     public BodyState() {
         this.len = -1;
+        this.total = -1;
         this.headIdx = 0;
     }
 
@@ -42,6 +45,36 @@ public class BodyState<T> implements HLState<T> {
         return "BodyState";
     }
 
+    /**
+     * Append a run of body bytes once the length of the message is known.<br>
+     * The last byte of the message is left to accept().
+     *
+     * @param monitor The monitor.
+     * @param data Data.
+     * @param offset Start offset.
+     * @param end End offset (exclusive).
+     * @return Offset of next byte to be accepted.
+     */
+    int scan(HLProtocolMonitor<T> monitor, byte[] data, int offset, int end) {
+        int size = monitor.getDataLength();
+        if (this.len < 0 || this.headIdx > 0 || size < monitor.protocol.getLenFieldEndIdx()) {
+            return offset;
+        }
+
+        int idx = offset + Math.min(end - offset, this.total - size - 1);
+        if (monitor.protocol.strict) {
+            byte head = monitor.protocol.head[0];
+            for (int i = offset; i < idx; i++) {
+                if (data[i] == head) {
+                    idx = i;
+                    break;
+                }
+            }
+        }
+        monitor.addAll(data, offset, idx - offset);
+        return idx;
+    }
+
     @Override
     public void accept(HLProtocolMonitor<T> monitor, byte one) {
         if (monitor.protocol.strict && one == monitor.protocol.head[this.headIdx]) {
@@ -61,17 +94,28 @@ public class BodyState<T> implements HLState<T> {
         }
         else {
             monitor.addOne(one);
-            if (monitor.getDataLength() == monitor.protocol.getLenFieldEndIdx()) {
+            int size = monitor.getDataLength();
+            if (size == monitor.protocol.getLenFieldEndIdx()) {
                 this.len = monitor.readLenFromLeField();
+                if (this.len >= 0) {
+                    this.total = monitor.protocol.getTotalLength(this.len, size);
+                    if (this.total < 0) {
+                        monitor.cancelPacking(ProtocolEventArgs.ErrorCode.ERR_BODY_LENGTH);
+                        monitor.setState(new IdleState<T>());
+                        return;
+                    }
+                    // the length comes from the wire, don't trust it for a huge allocation.
+                    monitor.reserve(Math.min(this.total, HLProtocol.RESERVE_LIMIT));
+                }
             }
 
-            if (monitor.getDataLength() > monitor.protocol.getLenFieldEndIdx() && this.len < 0) {
+            if (size > monitor.protocol.getLenFieldEndIdx() && this.len < 0) {
                 monitor.cancelPacking(ProtocolEventArgs.ErrorCode.ERR_BODY_LENGTH);
                 monitor.setState(new IdleState<T>());
                 return;
             }
 
-            if (this.len >= 0 && (monitor.protocol.lenStartOffset + this.len + monitor.protocol.lenEndOffset) == monitor.getDataLength()) {
+            if (this.len >= 0 && this.total == size) {
                 monitor.finishPacking();
                 monitor.setState(new IdleState<T>());
             }
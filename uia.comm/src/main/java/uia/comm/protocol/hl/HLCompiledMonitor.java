@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm.protocol.hl;
+
+import uia.comm.protocol.AbstractProtocolMonitor;
+import uia.comm.protocol.ProtocolEventArgs;
+
+/**
+ * Switch-based monitor of HLProtocol.<br>
+ * It frames data the same as HLProtocolMonitor but keeps the state in an int, so no state object is created between messages.
+ *
+ * @author Kyle K. Lin
+ *
+ * @param <T> Reference.
+ */
+public class HLCompiledMonitor<T> extends AbstractProtocolMonitor<T> {
+
+    private static final int IDLE = 0;
+
+    private static final int HEAD = 1;
+
+    private static final int BODY = 2;
+
+    private static final String[] STATE_INFO = { "IdleState", "HeadState", "BodyState" };
+
+    private final HLProtocol<T> protocol;
+
+    private final byte[] head;
+
+    private final byte head0;
+
+    private final boolean strict;
+
+    private final int lenFieldEndIdx;
+
+    private final byte[] lenField;
+
+    private int state;
+
+    private int headIdx;
+
+    private int bodyHeadIdx;
+
+    private int len;
+
+    private int total;
+
+    public HLCompiledMonitor(String name, HLProtocol<T> protocol) {
+        super(name);
+        this.protocol = protocol;
+        this.head = protocol.head;
+        this.head0 = protocol.head[0];
+        this.strict = protocol.strict;
+        this.lenFieldEndIdx = protocol.getLenFieldEndIdx();
+        this.lenField = new byte[protocol.lenFieldByteCount];
+        this.state = IDLE;
+    }
+
+    @Override
+    public void read(byte one) {
+        while (!accept(one)) {
+        }
+    }
+
+    @Override
+    public void read(byte[] data, int offset, int length) {
+        int end = offset + length;
+        int idx = offset;
+        while (idx < end) {
+            if (this.state == IDLE) {
+                while (idx < end && data[idx] != this.head0) {
+                    idx++;
+                }
+            }
+            else if (this.state == BODY && this.len >= 0 && this.bodyHeadIdx == 0 && this.data.size() >= this.lenFieldEndIdx) {
+                // copy the body but leave the last byte to accept().
+                int start = idx;
+                int stop = idx + Math.min(end - idx, this.total - this.data.size() - 1);
+                if (this.strict) {
+                    while (idx < stop && data[idx] != this.head0) {
+                        idx++;
+                    }
+                }
+                else {
+                    idx = stop;
+                }
+                this.data.add(data, start, idx - start);
+            }
+            if (idx < end) {
+                read(data[idx++]);
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        this.headIdx = 0;
+        this.state = IDLE;
+        this.data.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return this.state != IDLE;
+    }
+
+    @Override
+    public String getStateInfo() {
+        return STATE_INFO[this.state];
+    }
+
+    /**
+     * Handle one byte.
+     *
+     * @param one One byte.
+     * @return False if the byte must be handled again by the new state.
+     */
+    private boolean accept(byte one) {
+        switch (this.state) {
+            case IDLE:
+                if (one == this.head0) {
+                    this.state = HEAD;
+                    return false;
+                }
+                return true;
+
+            case HEAD:
+                this.data.add(one);
+                if (this.headIdx < this.head.length && one == this.head[this.headIdx]) {
+                    this.headIdx++;
+                    if (this.headIdx >= this.head.length) {
+                        this.headIdx = 0;
+                        this.bodyHeadIdx = 0;
+                        this.len = -1;
+                        this.total = -1;
+                        this.state = BODY;
+                    }
+                    return true;
+                }
+                int idx = this.headIdx;
+                cancelPacking(ProtocolEventArgs.ErrorCode.ERR_HEAD);
+                reset();
+                if (idx > 0) {
+                    this.state = HEAD;
+                    return false;
+                }
+                return true;
+
+            default:
+                if (this.strict && one == this.head[this.bodyHeadIdx]) {
+                    this.bodyHeadIdx++;
+                }
+                else {
+                    this.bodyHeadIdx = 0;
+                }
+
+                if (this.bodyHeadIdx > 0 && this.bodyHeadIdx == this.head.length) {
+                    this.bodyHeadIdx = 0;
+                    this.data.add(one);
+                    cancelPacking(ProtocolEventArgs.ErrorCode.ERR_HEAD_REPEAT);
+                    this.data.add(this.head, 0, this.head.length);
+                    return true;
+                }
+
+                this.data.add(one);
+                int size = this.data.size();
+                if (size == this.lenFieldEndIdx) {
+                    this.len = readLenFromLeField();
+                    if (this.len >= 0) {
+                        this.total = this.protocol.getTotalLength(this.len, size);
+                        if (this.total < 0) {
+                            cancelPacking(ProtocolEventArgs.ErrorCode.ERR_BODY_LENGTH);
+                            this.state = IDLE;
+                            return true;
+                        }
+                        // the length comes from the wire, don't trust it for a huge allocation.
+                        this.data.reserve(Math.min(this.total, HLProtocol.RESERVE_LIMIT));
+                    }
+                }
+                if (size > this.lenFieldEndIdx && this.len < 0) {
+                    cancelPacking(ProtocolEventArgs.ErrorCode.ERR_BODY_LENGTH);
+                    this.state = IDLE;
+                    return true;
+                }
+                if (this.len >= 0 && this.total == size) {
+                    finishPacking();
+                    this.state = IDLE;
+                }
+                return true;
+        }
+    }
+
+    private int readLenFromLeField() {
+        this.data.copyTo(this.protocol.lenFieldStartIdx, this.lenField, 0, this.lenField.length);
+        return this.protocol.reader.read(this.lenField);
+    }
+
+    private void cancelPacking(ProtocolEventArgs.ErrorCode errorCode) {
+        ProtocolEventArgs args = new ProtocolEventArgs(packing(), errorCode);
+        this.protocol.raiseMessageError(this, args);
+    }
+
+    private void finishPacking() {
+        ProtocolEventArgs args = packingArgs();
+        this.protocol.raiseMessageReceived(this, args);
+    }
+}
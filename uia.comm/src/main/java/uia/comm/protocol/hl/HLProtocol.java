@@ -19,6 +19,7 @@
 package uia.comm.protocol.hl;
 
 import uia.comm.protocol.AbstractProtocol;
+import uia.comm.protocol.HeadProtocol;
 import uia.comm.protocol.LenReader;
 import uia.comm.protocol.ProtocolMonitor;
 
@@ -28,7 +29,12 @@ import uia.comm.protocol.ProtocolMonitor;
  *
  * @param <T> Reference.
  */
-public class HLProtocol<T> extends AbstractProtocol<T> {
+public class HLProtocol<T> extends AbstractProtocol<T> implements HeadProtocol {
+
+    /**
+     * Max bytes reserved when the length field is read. Longer messages grow as data arrives.
+     */
+    static final int RESERVE_LIMIT = 64 * 1024;
 
     final int lenStartOffset;
 
@@ -44,6 +50,10 @@ public class HLProtocol<T> extends AbstractProtocol<T> {
 
     final boolean strict;
 
+    private boolean compiled;
+
+    private int maxLength;
+
     public HLProtocol(
             int lenStartOffset,
             int lenEndOffset,
@@ -79,8 +89,71 @@ public class HLProtocol<T> extends AbstractProtocol<T> {
         return this.lenFieldStartIdx + this.lenFieldByteCount;
     }
 
+    /**
+     * Get max length of a message.
+     *
+     * @return Max length. 0 means no limit.
+     */
+    public int getMaxLength() {
+        return this.maxLength;
+    }
+
+    /**
+     * Set max length of a message.<br>
+     * A message longer than this length is rejected as soon as the length field is read.
+     *
+     * @param maxLength Max length. 0 means no limit.
+     */
+    public void setMaxLength(int maxLength) {
+        this.maxLength = Math.max(0, maxLength);
+    }
+
+    /**
+     * Get total length of a message from its length field.
+     *
+     * @param len Value of the length field.
+     * @param size Number of bytes received.
+     * @return Total length or -1 if the length is invalid, overflows or is longer than max length.
+     */
+    int getTotalLength(int len, int size) {
+        long total = (long) this.lenStartOffset + len + this.lenEndOffset;
+        if (len < 0 || total < size || total > Integer.MAX_VALUE || (this.maxLength > 0 && total > this.maxLength)) {
+            return -1;
+        }
+        return (int) total;
+    }
+
+    /**
+     * Check if monitors run as a switch-based state machine.
+     *
+     * @return Compiled or not.
+     */
+    public boolean isCompiled() {
+        return this.compiled;
+    }
+
+    /**
+     * Set if monitors run as a switch-based state machine which creates no state object between messages.
+     *
+     * @param compiled Compiled or not.
+     */
+    public void setCompiled(boolean compiled) {
+        this.compiled = compiled;
+    }
+
+    @Override
+    public byte[] getHead() {
+        return this.head;
+    }
+
     @Override
     public ProtocolMonitor<T> createMonitor(String name) {
+        if (this.compiled) {
+            HLCompiledMonitor<T> monitor = new HLCompiledMonitor<T>(name, this);
+            monitor.setProtocol(this);
+            return monitor;
+        }
+
         HLProtocolMonitor<T> monitor = new HLProtocolMonitor<T>(name, this);
         monitor.setProtocol(this);
         return monitor;
@@ -35,11 +35,14 @@ public class HLProtocolMonitor<T> extends AbstractProtocolMonitor<T> {
 
     private HLState<T> state;
 
+    private final byte[] lenField;
+
     public HLProtocolMonitor(String name, HLProtocol<T> protocol) {
         super(name);
 
         this.protocol = protocol;
         this.state = new IdleState<T>();
+        this.lenField = new byte[protocol.lenFieldByteCount];
     }
 
     @Override
@@ -61,6 +64,23 @@ public class HLProtocolMonitor<T> extends AbstractProtocolMonitor<T> {
         this.state.accept(this, one);
     }
 
+    @Override
+    public void read(byte[] data, int offset, int length) {
+        int end = offset + length;
+        int idx = offset;
+        while (idx < end) {
+            if (this.state instanceof IdleState) {
+                idx = ((IdleState<T>) this.state).scan(this, data, idx, end);
+            }
+            else if (this.state instanceof BodyState) {
+                idx = ((BodyState<T>) this.state).scan(this, data, idx, end);
+            }
+            if (idx < end) {
+                this.state.accept(this, data[idx++]);
+            }
+        }
+    }
+
     @Override
     public void reset() {
         this.headIdx = 0;
@@ -74,19 +94,22 @@ public class HLProtocolMonitor<T> extends AbstractProtocolMonitor<T> {
     }
 
     int readLenFromLeField() {
-        byte[] data = new byte[this.protocol.lenFieldByteCount];
-        for (int i = 0; i < data.length; i++)
-        {
-            data[i] = this.data.get(this.protocol.lenFieldStartIdx + i);
-        }
+        this.data.copyTo(this.protocol.lenFieldStartIdx, this.lenField, 0, this.lenField.length);
+        return this.protocol.reader.read(this.lenField);
+    }
 
-        return this.protocol.reader.read(data);
+    void reserve(int capacity) {
+        this.data.reserve(capacity);
     }
 
     void addOne(byte one) {
         this.data.add(one);
     }
 
+    void addAll(byte[] data, int offset, int length) {
+        this.data.add(data, offset, length);
+    }
+
     void cancelPacking(ProtocolEventArgs.ErrorCode errorCode)
     {
         ProtocolEventArgs args = new ProtocolEventArgs(packing(), errorCode);
@@ -96,7 +119,7 @@ public class HLProtocolMonitor<T> extends AbstractProtocolMonitor<T> {
 
     void finishPacking()
     {
-        ProtocolEventArgs args = new ProtocolEventArgs(packing());
+        ProtocolEventArgs args = packingArgs();
         this.data.clear();
         this.protocol.raiseMessageReceived(this, args);
     }
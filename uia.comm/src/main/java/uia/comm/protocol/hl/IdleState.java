@@ -31,6 +31,24 @@ public class IdleState<T> implements HLState<T> {
         return "IdleState";
     }
 
+    /**
+     * Skip bytes which can't be a head.
+     *
+     * @param monitor The monitor.
+     * @param data Data.
+     * @param offset Start offset.
+     * @param end End offset (exclusive).
+     * @return Offset of next byte to be accepted.
+     */
+    int scan(HLProtocolMonitor<T> monitor, byte[] data, int offset, int end) {
+        byte head = monitor.protocol.head[0];
+        int idx = offset;
+        while (idx < end && data[idx] != head) {
+            idx++;
+        }
+        return idx;
+    }
+
     @Override
     public void accept(HLProtocolMonitor<T> monitor, byte one) {
         if (one == monitor.protocol.head[0]) {
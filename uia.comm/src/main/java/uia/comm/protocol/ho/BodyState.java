@@ -39,6 +39,38 @@ public class BodyState<T> implements HOState<T> {
         return "BodyState";
     }
 
+    /**
+     * Append a run of body bytes which can't start a head.<br>
+     * The last byte of a fixed length message is left to accept().
+     *
+     * @param monitor The monitor.
+     * @param data Data.
+     * @param offset Start offset.
+     * @param end End offset (exclusive).
+     * @return Offset of next byte to be accepted.
+     */
+    int scan(HOProtocolMonitor<T> monitor, byte[] data, int offset, int end) {
+        if (this.headIdx > 0) {
+            return offset;
+        }
+
+        int limit = end;
+        if (monitor.protocol.maxLength > 0) {
+            limit = Math.min(end, offset + monitor.protocol.maxLength - monitor.getDataLength() - 1);
+        }
+
+        byte head = monitor.protocol.head[0];
+        int idx = offset;
+        while (idx < limit && data[idx] != head) {
+            idx++;
+        }
+        if (idx > offset) {
+            monitor.addAll(data, offset, idx - offset);
+            return idx;
+        }
+        return offset;
+    }
+
     @Override
     public void accept(HOProtocolMonitor<T> monitor, byte one) {
         if (one == monitor.protocol.head[0] && monitor.protocol.maxLength == 0) {
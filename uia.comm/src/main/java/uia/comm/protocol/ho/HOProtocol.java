@@ -19,6 +19,7 @@
 package uia.comm.protocol.ho;
 
 import uia.comm.protocol.AbstractProtocol;
+import uia.comm.protocol.HeadProtocol;
 import uia.comm.protocol.ProtocolMonitor;
 
 /**
@@ -27,7 +28,7 @@ import uia.comm.protocol.ProtocolMonitor;
  *
  * @param <C> Reference.
  */
-public class HOProtocol<C> extends AbstractProtocol<C> {
+public class HOProtocol<C> extends AbstractProtocol<C> implements HeadProtocol {
 
     final byte[] head;
 
@@ -42,6 +43,11 @@ public class HOProtocol<C> extends AbstractProtocol<C> {
         this.maxLength = maxLength;
     }
 
+    @Override
+    public byte[] getHead() {
+        return this.head;
+    }
+
     @Override
     public ProtocolMonitor<C> createMonitor(String name) {
         HOProtocolMonitor<C> monitor = new HOProtocolMonitor<C>(name, this);
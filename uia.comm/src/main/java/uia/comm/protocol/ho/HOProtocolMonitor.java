@@ -46,6 +46,23 @@ public class HOProtocolMonitor<C> extends AbstractProtocolMonitor<C> {
         this.state.accept(this, one);
     }
 
+    @Override
+    public void read(byte[] data, int offset, int length) {
+        int end = offset + length;
+        int idx = offset;
+        while (idx < end) {
+            if (this.state instanceof IdleState) {
+                idx = ((IdleState<C>) this.state).scan(this, data, idx, end);
+            }
+            else if (this.state instanceof BodyState) {
+                idx = ((BodyState<C>) this.state).scan(this, data, idx, end);
+            }
+            if (idx < end) {
+                this.state.accept(this, data[idx++]);
+            }
+        }
+    }
+
     @Override
     public void readEnd() {
         this.state.end(this);
@@ -80,8 +97,12 @@ public class HOProtocolMonitor<C> extends AbstractProtocolMonitor<C> {
         this.data.add(one);
     }
 
+    void addAll(byte[] data, int offset, int length) {
+        this.data.add(data, offset, length);
+    }
+
     void finsihPacking() {
-        ProtocolEventArgs args = new ProtocolEventArgs(packing());
+        ProtocolEventArgs args = packingArgs();
         reset();
         this.protocol.raiseMessageReceived(this, args);
     }
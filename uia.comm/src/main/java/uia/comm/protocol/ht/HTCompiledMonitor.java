@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm.protocol.ht;
+
+import uia.comm.protocol.AbstractProtocolMonitor;
+import uia.comm.protocol.DelimiterMatcher;
+import uia.comm.protocol.ProtocolEventArgs;
+
+/**
+ * Switch-based monitor of HTProtocol.<br>
+ * It frames data the same as HTProtocolMonitor but keeps the state in an int, so no state object is created between messages.
+ *
+ * @author Kyle K. Lin
+ *
+ * @param <C> Reference.
+ */
+public class HTCompiledMonitor<C> extends AbstractProtocolMonitor<C> {
+
+    private static final int IDLE = 0;
+
+    private static final int HEAD = 1;
+
+    private static final int BODY = 2;
+
+    private static final int TAIL = 3;
+
+    private static final String[] STATE_INFO = { "IdleState", "HeadState", "BodyState", "TailState" };
+
+    private final HTProtocol<C> protocol;
+
+    private final byte[] head;
+
+    private final byte[] tail;
+
+    private final DelimiterMatcher headMatcher;
+
+    private final DelimiterMatcher tailMatcher;
+
+    private final byte head0;
+
+    private final byte tail0;
+
+    private int state;
+
+    private int headIdx;
+
+    private int tailIdx;
+
+    private int bodyHeadIdx;
+
+    public HTCompiledMonitor(String name, HTProtocol<C> protocol) {
+        super(name);
+        this.protocol = protocol;
+        this.head = protocol.head;
+        this.tail = protocol.tail;
+        this.headMatcher = protocol.headMatcher;
+        this.tailMatcher = protocol.tailMatcher;
+        this.head0 = protocol.head[0];
+        this.tail0 = protocol.tail[0];
+        this.state = IDLE;
+    }
+
+    @Override
+    public void read(byte one) {
+        while (!accept(one)) {
+        }
+    }
+
+    @Override
+    public void read(byte[] data, int offset, int length) {
+        int end = offset + length;
+        int idx = offset;
+        while (idx < end) {
+            if (this.state == IDLE) {
+                while (idx < end && data[idx] != this.head0) {
+                    idx++;
+                }
+            }
+            else if (this.state == BODY && this.bodyHeadIdx == 0) {
+                int start = idx;
+                while (idx < end && data[idx] != this.head0 && data[idx] != this.tail0) {
+                    idx++;
+                }
+                this.data.add(data, start, idx - start);
+            }
+            if (idx < end) {
+                read(data[idx++]);
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        this.headIdx = 0;
+        this.tailIdx = 0;
+        this.data.clear();
+        this.state = IDLE;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return this.state != IDLE;
+    }
+
+    @Override
+    public String getStateInfo() {
+        return STATE_INFO[this.state];
+    }
+
+    /**
+     * Handle one byte.
+     *
+     * @param one One byte.
+     * @return False if the byte must be handled again by the new state.
+     */
+    private boolean accept(byte one) {
+        switch (this.state) {
+            case IDLE:
+                if (one == this.head0) {
+                    reset();
+                    this.state = HEAD;
+                    return false;
+                }
+                return true;
+
+            case HEAD:
+                int matched = this.headMatcher.next(this.headIdx, one);
+                if (matched > this.headIdx) {
+                    this.data.add(one);
+                    this.headIdx = matched;
+                    if (this.headIdx >= this.head.length) {
+                        this.bodyHeadIdx = 0;
+                        this.state = BODY;
+                    }
+                    return true;
+                }
+                if (this.headIdx == 0) {
+                    this.state = IDLE;
+                    return true;
+                }
+                reset();
+                if (matched > 0) {
+                    this.data.add(this.head, 0, matched);
+                    this.headIdx = matched;
+                    this.state = HEAD;
+                }
+                return true;
+
+            case BODY:
+                this.bodyHeadIdx = this.headMatcher.next(this.bodyHeadIdx, one);
+
+                if (this.bodyHeadIdx > 0 && this.bodyHeadIdx == this.head.length) {
+                    this.bodyHeadIdx = 0;
+                    this.data.add(one);
+                    cancelPacking(ProtocolEventArgs.ErrorCode.ERR_HEAD_REPEAT);
+                    this.data.add(this.head, 0, this.head.length);
+                    return true;
+                }
+                if (one == this.tail0) {
+                    this.state = TAIL;
+                    return false;
+                }
+                this.data.add(one);
+                return true;
+
+            default:
+                int tailMatched = this.tailMatcher.next(this.tailIdx, one);
+                if (tailMatched > 0) {
+                    this.data.add(one);
+                    this.tailIdx = tailMatched;
+                    if (this.tailIdx >= this.tail.length) {
+                        finishPacking();
+                        reset();
+                    }
+                    return true;
+                }
+                cancelPacking(ProtocolEventArgs.ErrorCode.ERR_TAIL);
+                reset();
+                if (one == this.head0) {
+                    this.state = HEAD;
+                    return false;
+                }
+                return true;
+        }
+    }
+
+    private void finishPacking() {
+        ProtocolEventArgs args = packingArgs();
+        this.protocol.raiseMessageReceived(this, args);
+    }
+
+    private void cancelPacking(ProtocolEventArgs.ErrorCode errorCode) {
+        ProtocolEventArgs args = new ProtocolEventArgs(packing(), errorCode);
+        this.protocol.raiseMessageError(this, args);
+    }
+}
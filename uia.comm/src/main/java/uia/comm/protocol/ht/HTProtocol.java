@@ -19,6 +19,8 @@
 package uia.comm.protocol.ht;
 
 import uia.comm.protocol.AbstractProtocol;
+import uia.comm.protocol.DelimiterMatcher;
+import uia.comm.protocol.HeadProtocol;
 import uia.comm.protocol.ProtocolMonitor;
 
 /**
@@ -27,19 +29,56 @@ import uia.comm.protocol.ProtocolMonitor;
  *
  * @param <C> Reference.
  */
-public class HTProtocol<C> extends AbstractProtocol<C> {
+public class HTProtocol<C> extends AbstractProtocol<C> implements HeadProtocol {
 
     final byte[] head;
 
     final byte[] tail;
 
+    final DelimiterMatcher headMatcher;
+
+    final DelimiterMatcher tailMatcher;
+
+    private boolean compiled;
+
     public HTProtocol(byte[] head, byte[] tail) {
         this.head = head;
         this.tail = tail;
+        this.headMatcher = new DelimiterMatcher(this.head);
+        this.tailMatcher = new DelimiterMatcher(this.tail);
+    }
+
+    /**
+     * Check if monitors run as a switch-based state machine.
+     *
+     * @return Compiled or not.
+     */
+    public boolean isCompiled() {
+        return this.compiled;
+    }
+
+    /**
+     * Set if monitors run as a switch-based state machine which creates no state object between messages.
+     *
+     * @param compiled Compiled or not.
+     */
+    public void setCompiled(boolean compiled) {
+        this.compiled = compiled;
+    }
+
+    @Override
+    public byte[] getHead() {
+        return this.head;
     }
 
     @Override
     public ProtocolMonitor<C> createMonitor(String name) {
+        if (this.compiled) {
+            HTCompiledMonitor<C> monitor = new HTCompiledMonitor<C>(name, this);
+            monitor.setProtocol(this);
+            return monitor;
+        }
+
         HTProtocolMonitor<C> monitor = new HTProtocolMonitor<C>(name, this);
         monitor.setProtocol(this);
         return monitor;
@@ -33,9 +33,10 @@ public class HeadState<C> implements HTState<C> {
 
     @Override
     public void accept(HTProtocolMonitor<C> monitor, byte one) {
-        if (one == monitor.protocol.head[monitor.headIdx]) {
+        int matched = monitor.protocol.headMatcher.next(monitor.headIdx, one);
+        if (matched > monitor.headIdx) {
             monitor.addOne(one);
-            monitor.headIdx++;
+            monitor.headIdx = matched;
             if (monitor.headIdx >= monitor.protocol.head.length) {
                 monitor.setState(new BodyState<C>());
             }
@@ -45,8 +46,13 @@ public class HeadState<C> implements HTState<C> {
                 monitor.setState(new IdleState<C>());
             }
             else {
+                // keep the longest suffix which is still a prefix of the head.
                 monitor.reset();
-                monitor.read(one);
+                if (matched > 0) {
+                    monitor.addAll(monitor.protocol.head, 0, matched);
+                    monitor.headIdx = matched;
+                    monitor.setState(this);
+                }
             }
         }
     }
@@ -31,6 +31,24 @@ public class IdleState<C> implements HTState<C> {
         return "IdleState";
     }
 
+    /**
+     * Skip bytes which can't be a head.
+     *
+     * @param monitor The monitor.
+     * @param data Data.
+     * @param offset Start offset.
+     * @param end End offset (exclusive).
+     * @return Offset of next byte to be accepted.
+     */
+    int scan(HTProtocolMonitor<C> monitor, byte[] data, int offset, int end) {
+        byte head = monitor.protocol.head[0];
+        int idx = offset;
+        while (idx < end && data[idx] != head) {
+            idx++;
+        }
+        return idx;
+    }
+
     @Override
     public void accept(HTProtocolMonitor<C> monitor, byte one) {
         if (one == monitor.protocol.head[0]) {
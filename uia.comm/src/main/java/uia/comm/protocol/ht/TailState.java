@@ -35,9 +35,11 @@ public class TailState<C> implements HTState<C> {
 
     @Override
     public void accept(HTProtocolMonitor<C> monitor, byte one) {
-        if (one == monitor.protocol.tail[monitor.tailIdx]) {
+        // a partial tail broken by this byte may still end with a shorter partial tail.
+        int matched = monitor.protocol.tailMatcher.next(monitor.tailIdx, one);
+        if (matched > 0) {
             monitor.addOne(one);
-            monitor.tailIdx++;
+            monitor.tailIdx = matched;
             if (monitor.tailIdx >= monitor.protocol.tail.length) {
                 monitor.finsihPacking();
                 monitor.reset();
@@ -39,6 +39,29 @@ public class BodyState<C> implements HTxState<C> {
         return "BodyState";
     }
 
+    /**
+     * Append a run of body bytes which are neither head nor tail.
+     *
+     * @param monitor The monitor.
+     * @param data Data.
+     * @param offset Start offset.
+     * @param end End offset (exclusive).
+     * @return Offset of next byte to be accepted.
+     */
+    int scan(HTxProtocolMonitor<C> monitor, byte[] data, int offset, int end) {
+        byte head = monitor.protocol.head;
+        byte tail = monitor.protocol.tail;
+        int idx = offset;
+        while (idx < end && data[idx] != head && data[idx] != tail) {
+            idx++;
+        }
+        if (idx > offset) {
+            this.headIdx = 0;
+            monitor.addAll(data, offset, idx - offset);
+        }
+        return idx;
+    }
+
     @Override
     public void accept(HTxProtocolMonitor<C> monitor, byte one) {
         if (one == monitor.protocol.head)
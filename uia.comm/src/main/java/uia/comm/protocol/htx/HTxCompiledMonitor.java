@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm.protocol.htx;
+
+import uia.comm.protocol.AbstractProtocolMonitor;
+import uia.comm.protocol.ProtocolEventArgs;
+
+/**
+ * Switch-based monitor of HTxProtocol.<br>
+ * It frames data the same as HTxProtocolMonitor but keeps the state in an int, so no state object is created between messages.
+ *
+ * @author Kyle K. Lin
+ *
+ * @param <C> Reference.
+ */
+public class HTxCompiledMonitor<C> extends AbstractProtocolMonitor<C> {
+
+    private static final int IDLE = 0;
+
+    private static final int HEAD = 1;
+
+    private static final int BODY = 2;
+
+    private static final int TAIL = 3;
+
+    private static final String[] STATE_INFO = { "IdleState", "HeadState", "BodyState", "TailState" };
+
+    private final HTxProtocol<C> protocol;
+
+    private final byte head;
+
+    private final int hc;
+
+    private final byte tail;
+
+    private int state;
+
+    private int headIdx;
+
+    private int bodyHeadIdx;
+
+    public HTxCompiledMonitor(String name, HTxProtocol<C> protocol) {
+        super(name);
+        this.protocol = protocol;
+        this.head = protocol.head;
+        this.hc = protocol.hc;
+        this.tail = protocol.tail;
+        this.state = IDLE;
+    }
+
+    @Override
+    public void read(byte one) {
+        while (!accept(one)) {
+        }
+    }
+
+    @Override
+    public void read(byte[] data, int offset, int length) {
+        int end = offset + length;
+        int idx = offset;
+        while (idx < end) {
+            if (this.state == IDLE) {
+                while (idx < end && data[idx] != this.head) {
+                    idx++;
+                }
+            }
+            else if (this.state == BODY) {
+                int start = idx;
+                while (idx < end && data[idx] != this.head && data[idx] != this.tail) {
+                    idx++;
+                }
+                if (idx > start) {
+                    this.bodyHeadIdx = 0;
+                    this.data.add(data, start, idx - start);
+                }
+            }
+            if (idx < end) {
+                read(data[idx++]);
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        this.headIdx = 0;
+        this.data.clear();
+        this.state = IDLE;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return this.state != IDLE;
+    }
+
+    @Override
+    public String getStateInfo() {
+        return STATE_INFO[this.state];
+    }
+
+    /**
+     * Handle one byte.
+     *
+     * @param one One byte.
+     * @return False if the byte must be handled again by the new state.
+     */
+    private boolean accept(byte one) {
+        switch (this.state) {
+            case IDLE:
+                if (one == this.head) {
+                    reset();
+                    this.state = HEAD;
+                    return false;
+                }
+                return true;
+
+            case HEAD:
+                if (one == this.head) {
+                    this.data.add(one);
+                    this.headIdx++;
+                    if (this.headIdx >= this.hc) {
+                        this.bodyHeadIdx = 0;
+                        this.state = BODY;
+                    }
+                    return true;
+                }
+                if (this.headIdx > 0) {
+                    this.bodyHeadIdx = 0;
+                    this.state = BODY;
+                    return false;
+                }
+                this.state = IDLE;
+                return true;
+
+            case BODY:
+                if (one == this.head) {
+                    this.bodyHeadIdx++;
+                }
+                else {
+                    this.bodyHeadIdx = 0;
+                }
+
+                if (this.bodyHeadIdx > 0 && this.bodyHeadIdx == this.hc) {
+                    this.bodyHeadIdx = 0;
+                    this.data.add(one);
+                    cancelPacking(ProtocolEventArgs.ErrorCode.ERR_HEAD_REPEAT);
+                    for (int i = 0; i < this.hc; i++) {
+                        this.data.add(one);
+                    }
+                    return true;
+                }
+                if (one == this.tail) {
+                    this.state = TAIL;
+                    return false;
+                }
+                this.data.add(one);
+                return true;
+
+            default:
+                if (one == this.tail) {
+                    this.data.add(one);
+                    finishPacking();
+                    reset();
+                    return true;
+                }
+                cancelPacking(ProtocolEventArgs.ErrorCode.ERR_TAIL);
+                reset();
+                if (one == this.head) {
+                    this.state = HEAD;
+                    return false;
+                }
+                return true;
+        }
+    }
+
+    private void finishPacking() {
+        ProtocolEventArgs args = packingArgs();
+        this.protocol.raiseMessageReceived(this, args);
+    }
+
+    private void cancelPacking(ProtocolEventArgs.ErrorCode errorCode) {
+        ProtocolEventArgs args = new ProtocolEventArgs(packing(), errorCode);
+        this.protocol.raiseMessageError(this, args);
+    }
+}
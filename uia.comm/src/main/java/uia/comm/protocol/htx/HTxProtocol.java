@@ -19,6 +19,7 @@
 package uia.comm.protocol.htx;
 
 import uia.comm.protocol.AbstractProtocol;
+import uia.comm.protocol.HeadProtocol;
 import uia.comm.protocol.ProtocolMonitor;
 
 /**
@@ -27,7 +28,7 @@ import uia.comm.protocol.ProtocolMonitor;
  *
  * @param <C> Reference.
  */
-public class HTxProtocol<C> extends AbstractProtocol<C> {
+public class HTxProtocol<C> extends AbstractProtocol<C> implements HeadProtocol {
 
     final byte head;
 
@@ -35,14 +36,49 @@ public class HTxProtocol<C> extends AbstractProtocol<C> {
 
     final byte tail;
 
+    private boolean compiled;
+
     public HTxProtocol(byte head, int hc, byte tail) {
         this.head = head;
         this.hc = hc;
         this.tail = tail;
     }
 
+    /**
+     * Check if monitors run as a switch-based state machine.
+     *
+     * @return Compiled or not.
+     */
+    public boolean isCompiled() {
+        return this.compiled;
+    }
+
+    /**
+     * Set if monitors run as a switch-based state machine which creates no state object between messages.
+     *
+     * @param compiled Compiled or not.
+     */
+    public void setCompiled(boolean compiled) {
+        this.compiled = compiled;
+    }
+
+    @Override
+    public byte[] getHead() {
+        byte[] head = new byte[this.hc];
+        for (int i = 0; i < this.hc; i++) {
+            head[i] = this.head;
+        }
+        return head;
+    }
+
     @Override
     public ProtocolMonitor<C> createMonitor(String name) {
+        if (this.compiled) {
+            HTxCompiledMonitor<C> monitor = new HTxCompiledMonitor<C>(name, this);
+            monitor.setProtocol(this);
+            return monitor;
+        }
+
         HTxProtocolMonitor<C> monitor = new HTxProtocolMonitor<C>(name, this);
         monitor.setProtocol(this);
         return monitor;
@@ -40,6 +40,23 @@ public class HTxProtocolMonitor<C> extends AbstractProtocolMonitor<C> {
         this.state.accept(this, one);
     }
 
+    @Override
+    public void read(byte[] data, int offset, int length) {
+        int end = offset + length;
+        int idx = offset;
+        while (idx < end) {
+            if (this.state instanceof IdleState) {
+                idx = ((IdleState<C>) this.state).scan(this, data, idx, end);
+            }
+            else if (this.state instanceof BodyState) {
+                idx = ((BodyState<C>) this.state).scan(this, data, idx, end);
+            }
+            if (idx < end) {
+                this.state.accept(this, data[idx++]);
+            }
+        }
+    }
+
     @Override
     public void reset() {
         this.headIdx = 0;
@@ -69,8 +86,12 @@ public class HTxProtocolMonitor<C> extends AbstractProtocolMonitor<C> {
         this.data.add(one);
     }
 
+    void addAll(byte[] data, int offset, int length) {
+        this.data.add(data, offset, length);
+    }
+
     void finsihPacking() {
-        ProtocolEventArgs args = new ProtocolEventArgs(packing());
+        ProtocolEventArgs args = packingArgs();
         this.protocol.raiseMessageReceived(this, args);
     }
 
@@ -41,6 +41,11 @@ public class NGProtocolMonitor<C> extends AbstractProtocolMonitor<C> {
         this.data.add(one);
     }
 
+    @Override
+    public void read(byte[] data, int offset, int length) {
+        this.data.add(data, offset, length);
+    }
+
     @Override
     public void readEnd() {
         finsihPacking();
@@ -58,7 +63,7 @@ public class NGProtocolMonitor<C> extends AbstractProtocolMonitor<C> {
     }
 
     private void finsihPacking() {
-        ProtocolEventArgs args = new ProtocolEventArgs(packing());
+        ProtocolEventArgs args = packingArgs();
         this.protocol.raiseMessageReceived(this, args);
     }
 }
@@ -22,20 +22,34 @@ public class BodyState<C> implements XMLState<C> {
         return "BodyState";
     }
 
-    @Override
-    public void accept(XMLProtocolMonitor<C> monitor, byte one) {
-        if (one == monitor.protocol.head[this.headIdx]) {
-            this.headIdx++;
-        }
-        else {
-            this.headIdx = 0;
-        }
-        if (one == monitor.protocol.tail[this.tailIdx]) {
-            this.tailIdx++;
+    /**
+     * Append a run of body bytes which neither start a head nor a tail.
+     *
+     * @param monitor The monitor.
+     * @param data Data.
+     * @param offset Start offset.
+     * @param end End offset (exclusive).
+     * @return Offset of next byte to be accepted.
+     */
+    int scan(XMLProtocolMonitor<C> monitor, byte[] data, int offset, int end) {
+        if (this.headIdx > 0 || this.tailIdx > 0) {
+            return offset;
         }
-        else {
-            this.tailIdx = 0;
+
+        byte head = monitor.protocol.head[0];
+        byte tail = monitor.protocol.tail[0];
+        int idx = offset;
+        while (idx < end && data[idx] != head && data[idx] != tail) {
+            idx++;
         }
+        monitor.addAll(data, offset, idx - offset);
+        return idx;
+    }
+
+    @Override
+    public void accept(XMLProtocolMonitor<C> monitor, byte one) {
+        this.headIdx = monitor.protocol.headMatcher.next(this.headIdx, one);
+        this.tailIdx = monitor.protocol.tailMatcher.next(this.tailIdx, one);
 
         if (this.headIdx > 0 && this.headIdx == monitor.protocol.head.length) {
             this.headIdx = 0;
@@ -15,9 +15,10 @@ public class HeadState<C> implements XMLState<C> {
 
     @Override
     public void accept(XMLProtocolMonitor<C> monitor, byte one) {
-        if (one == monitor.protocol.head[monitor.headIdx]) {
+        int matched = monitor.protocol.headMatcher.next(monitor.headIdx, one);
+        if (matched > monitor.headIdx) {
             monitor.addOne(one);
-            monitor.headIdx++;
+            monitor.headIdx = matched;
             if (monitor.headIdx >= monitor.protocol.head.length) {
                 monitor.setState(new BodyState<C>());
             }
@@ -27,8 +28,13 @@ public class HeadState<C> implements XMLState<C> {
                 monitor.setState(new IdleState<C>());
             }
             else {
+                // keep the longest suffix which is still a prefix of the head.
                 monitor.reset();
-                monitor.read(one);
+                if (matched > 0) {
+                    monitor.addAll(monitor.protocol.head, 0, matched);
+                    monitor.headIdx = matched;
+                    monitor.setState(this);
+                }
             }
         }
     }
@@ -0,0 +1,176 @@
+package uia.comm.protocol.xml;
+
+import uia.comm.protocol.AbstractProtocolMonitor;
+import uia.comm.protocol.DelimiterMatcher;
+import uia.comm.protocol.ProtocolEventArgs;
+
+/**
+ * Switch-based monitor of XMLProtocol.<br>
+ * It frames data the same as XMLProtocolMonitor but keeps the state in an int, so no state object is created between messages.
+ *
+ * @author Kyle K. Lin
+ *
+ * @param <C>
+ */
+public class XMLCompiledMonitor<C> extends AbstractProtocolMonitor<C> {
+
+    private static final int IDLE = 0;
+
+    private static final int HEAD = 1;
+
+    private static final int BODY = 2;
+
+    private static final String[] STATE_INFO = { "IdleState", "HeadState", "BodyState" };
+
+    private final XMLProtocol<C> protocol;
+
+    private final byte[] head;
+
+    private final byte[] tail;
+
+    private final DelimiterMatcher headMatcher;
+
+    private final DelimiterMatcher tailMatcher;
+
+    private final byte head0;
+
+    private final byte tail0;
+
+    private int state;
+
+    private int headIdx;
+
+    private int bodyHeadIdx;
+
+    private int bodyTailIdx;
+
+    public XMLCompiledMonitor(String name, XMLProtocol<C> protocol) {
+        super(name);
+        this.protocol = protocol;
+        this.head = protocol.head;
+        this.tail = protocol.tail;
+        this.headMatcher = protocol.headMatcher;
+        this.tailMatcher = protocol.tailMatcher;
+        this.head0 = protocol.head[0];
+        this.tail0 = protocol.tail[0];
+        this.state = IDLE;
+    }
+
+    @Override
+    public void read(byte one) {
+        while (!accept(one)) {
+        }
+    }
+
+    @Override
+    public void read(byte[] data, int offset, int length) {
+        int end = offset + length;
+        int idx = offset;
+        while (idx < end) {
+            if (this.state == IDLE) {
+                while (idx < end && data[idx] != this.head0) {
+                    idx++;
+                }
+            }
+            else if (this.state == BODY && this.bodyHeadIdx == 0 && this.bodyTailIdx == 0) {
+                int start = idx;
+                while (idx < end && data[idx] != this.head0 && data[idx] != this.tail0) {
+                    idx++;
+                }
+                this.data.add(data, start, idx - start);
+            }
+            if (idx < end) {
+                read(data[idx++]);
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        this.headIdx = 0;
+        this.data.clear();
+        this.state = IDLE;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return this.state != IDLE;
+    }
+
+    @Override
+    public String getStateInfo() {
+        return STATE_INFO[this.state];
+    }
+
+    /**
+     * Handle one byte.
+     *
+     * @param one One byte.
+     * @return False if the byte must be handled again by the new state.
+     */
+    private boolean accept(byte one) {
+        switch (this.state) {
+            case IDLE:
+                if (one == this.head0) {
+                    reset();
+                    this.state = HEAD;
+                    return false;
+                }
+                return true;
+
+            case HEAD:
+                int matched = this.headMatcher.next(this.headIdx, one);
+                if (matched > this.headIdx) {
+                    this.data.add(one);
+                    this.headIdx = matched;
+                    if (this.headIdx >= this.head.length) {
+                        this.bodyHeadIdx = 0;
+                        this.bodyTailIdx = 0;
+                        this.state = BODY;
+                    }
+                    return true;
+                }
+                if (this.headIdx == 0) {
+                    this.state = IDLE;
+                    return true;
+                }
+                reset();
+                if (matched > 0) {
+                    this.data.add(this.head, 0, matched);
+                    this.headIdx = matched;
+                    this.state = HEAD;
+                }
+                return true;
+
+            default:
+                this.bodyHeadIdx = this.headMatcher.next(this.bodyHeadIdx, one);
+                this.bodyTailIdx = this.tailMatcher.next(this.bodyTailIdx, one);
+
+                if (this.bodyHeadIdx > 0 && this.bodyHeadIdx == this.head.length) {
+                    this.bodyHeadIdx = 0;
+                    this.data.add(one);
+                    cancelPacking(ProtocolEventArgs.ErrorCode.ERR_HEAD_REPEAT);
+                    this.data.add(this.head, 0, this.head.length);
+                }
+                else if (this.bodyTailIdx > 0 && this.bodyTailIdx == this.tail.length) {
+                    this.data.add(one);
+                    finishPacking();
+                    this.state = IDLE;
+                }
+                else {
+                    this.data.add(one);
+                }
+                return true;
+        }
+    }
+
+    private void finishPacking() {
+        ProtocolEventArgs args = packingArgs();
+        this.protocol.raiseMessageReceived(this, args);
+    }
+
+    private void cancelPacking(ProtocolEventArgs.ErrorCode errorCode) {
+        ProtocolEventArgs args = new ProtocolEventArgs(packing(), errorCode);
+        this.protocol.raiseMessageError(this, args);
+    }
+}
@@ -1,6 +1,8 @@
 package uia.comm.protocol.xml;
 
 import uia.comm.protocol.AbstractProtocol;
+import uia.comm.protocol.DelimiterMatcher;
+import uia.comm.protocol.HeadProtocol;
 import uia.comm.protocol.ProtocolMonitor;
 
 /**
@@ -9,19 +11,56 @@ import uia.comm.protocol.ProtocolMonitor;
  *
  * @param <C>
  */
-public class XMLProtocol<C> extends AbstractProtocol<C> {
+public class XMLProtocol<C> extends AbstractProtocol<C> implements HeadProtocol {
 
     final byte[] head;
 
     final byte[] tail;
 
+    final DelimiterMatcher headMatcher;
+
+    final DelimiterMatcher tailMatcher;
+
+    private boolean compiled;
+
     public XMLProtocol(String rootTag) {
         this.head = ("<" + rootTag + ">").getBytes();
         this.tail = ("</" + rootTag + ">").getBytes();
+        this.headMatcher = new DelimiterMatcher(this.head);
+        this.tailMatcher = new DelimiterMatcher(this.tail);
+    }
+
+    /**
+     * Check if monitors run as a switch-based state machine.
+     *
+     * @return Compiled or not.
+     */
+    public boolean isCompiled() {
+        return this.compiled;
+    }
+
+    /**
+     * Set if monitors run as a switch-based state machine which creates no state object between messages.
+     *
+     * @param compiled Compiled or not.
+     */
+    public void setCompiled(boolean compiled) {
+        this.compiled = compiled;
+    }
+
+    @Override
+    public byte[] getHead() {
+        return this.head;
     }
 
     @Override
     public ProtocolMonitor<C> createMonitor(String name) {
+        if (this.compiled) {
+            XMLCompiledMonitor<C> monitor = new XMLCompiledMonitor<C>(name, this);
+            monitor.setProtocol(this);
+            return monitor;
+        }
+
         XMLProtocolMonitor<C> monitor = new XMLProtocolMonitor<C>(name, this);
         monitor.setProtocol(this);
         return monitor;
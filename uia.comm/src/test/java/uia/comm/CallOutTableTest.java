@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class CallOutTableTest {
+
+    @Test
+    public void testPutGetRemove() {
+        CallOutTable table = new CallOutTable(4);
+        CallOut a = new CallOut(1);
+        CallOut b = new CallOut(2);
+        Assert.assertNull(table.put(1, a));
+        Assert.assertNull(table.put(2, b));
+        Assert.assertEquals(2, table.size());
+        Assert.assertTrue(table.contains(1));
+        Assert.assertFalse(table.contains(3));
+        Assert.assertSame(a, table.get(1));
+        Assert.assertNull(table.get(3));
+
+        CallOut c = new CallOut(1);
+        Assert.assertSame(a, table.put(1, c));
+        Assert.assertEquals(2, table.size());
+
+        Assert.assertFalse(table.remove(1, a));
+        Assert.assertTrue(table.remove(1, c));
+        Assert.assertFalse(table.remove(1, c));
+        Assert.assertSame(b, table.remove(2));
+        Assert.assertNull(table.remove(2));
+        Assert.assertEquals(0, table.size());
+    }
+
+    @Test
+    public void testResize() {
+        CallOutTable table = new CallOutTable(4);
+        for (long i = 1; i <= 1000; i++) {
+            table.put(i, new CallOut(i));
+        }
+        Assert.assertEquals(1000, table.size());
+        for (long i = 1; i <= 1000; i++) {
+            Assert.assertEquals(Long.toString(i), table.get(i).getTxId());
+        }
+    }
+
+    @Test
+    public void testBackwardShiftDelete() {
+        // a small table keeps long clusters, every removal shifts the rest of its cluster back.
+        CallOutTable table = new CallOutTable(8);
+        HashMap<Long, CallOut> expected = new HashMap<Long, CallOut>();
+        Random random = new Random(20170101);
+        for (int i = 0; i < 100000; i++) {
+            long txId = random.nextInt(24);
+            if (random.nextBoolean()) {
+                CallOut callOut = new CallOut(txId);
+                Assert.assertSame(expected.put(txId, callOut), table.put(txId, callOut));
+            }
+            else {
+                Assert.assertSame(expected.remove(txId), table.remove(txId));
+            }
+            Assert.assertEquals(expected.size(), table.size());
+        }
+        for (long txId = 0; txId < 24; txId++) {
+            Assert.assertSame(expected.get(txId), table.get(txId));
+            Assert.assertEquals(expected.containsKey(txId), table.contains(txId));
+        }
+    }
+
+    @Test
+    public void testClear() {
+        CallOutTable table = new CallOutTable();
+        for (long i = 1; i <= 10; i++) {
+            table.put(i, new CallOut(i));
+        }
+        List<MessageCallOut> callOuts = table.clear();
+        Assert.assertEquals(10, callOuts.size());
+        Assert.assertEquals(0, table.size());
+        Assert.assertFalse(table.contains(1));
+        Assert.assertEquals(0, table.clear().size());
+
+        table.put(1, new CallOut(1));
+        Assert.assertEquals(1, table.size());
+    }
+
+    static class CallOut implements MessageCallOut {
+
+        private final long txId;
+
+        CallOut(long txId) {
+            this.txId = txId;
+        }
+
+        @Override
+        public String getTxId() {
+            return Long.toString(this.txId);
+        }
+
+        @Override
+        public void execute(byte[] reply) {
+        }
+
+        @Override
+        public void timeout() {
+        }
+    }
+
+    static Map<Long, CallOut> fill(CallOutTable table, long from, long to) {
+        HashMap<Long, CallOut> result = new HashMap<Long, CallOut>();
+        for (long i = from; i <= to; i++) {
+            CallOut callOut = new CallOut(i);
+            table.put(i, callOut);
+            result.put(i, callOut);
+        }
+        return result;
+    }
+}
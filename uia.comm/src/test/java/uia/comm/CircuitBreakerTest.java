@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class CircuitBreakerTest {
+
+    @Test
+    public void testOpen() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 60000);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onFailure();
+        breaker.onFailure();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertTrue(breaker.allowRequest());
+
+        // success resets continuous failures.
+        breaker.onSuccess();
+        Assert.assertEquals(0, breaker.getFailures());
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertEquals(3, breaker.getFailures());
+        Assert.assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void testHalfOpen() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 50);
+        breaker.onFailure();
+        Assert.assertFalse(breaker.allowRequest());
+
+        Thread.sleep(80);
+        // only one trial request after the circuit is open long enough.
+        Assert.assertTrue(breaker.allowRequest());
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        Assert.assertFalse(breaker.allowRequest());
+
+        breaker.onSuccess();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertTrue(breaker.allowRequest());
+        Assert.assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void testHalfOpenFailed() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(3, 50);
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onFailure();
+
+        Thread.sleep(80);
+        Assert.assertTrue(breaker.allowRequest());
+        breaker.onFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertFalse(breaker.allowRequest());
+    }
+}
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class CommFutureTest {
+
+    @Test
+    public void testDone() throws Exception {
+        CommFuture<String> future = new CommFuture<String>();
+        Assert.assertFalse(future.isDone());
+        Assert.assertTrue(future.setDone("abc"));
+        Assert.assertFalse(future.setDone("def"));
+        Assert.assertFalse(future.setFailed(new Exception()));
+        Assert.assertFalse(future.cancel(false));
+
+        Assert.assertTrue(future.isDone());
+        Assert.assertTrue(future.isSuccess());
+        Assert.assertFalse(future.isCancelled());
+        Assert.assertEquals("abc", future.getNow());
+        Assert.assertEquals("abc", future.get());
+        Assert.assertEquals("abc", future.get(1, TimeUnit.MILLISECONDS));
+        Assert.assertNull(future.getCause());
+    }
+
+    @Test
+    public void testFailed() throws Exception {
+        Exception cause = new Exception("failed");
+        CommFuture<String> future = CommFuture.failed(cause);
+        Assert.assertTrue(future.isDone());
+        Assert.assertFalse(future.isSuccess());
+        Assert.assertSame(cause, future.getCause());
+        Assert.assertNull(future.getNow());
+        try {
+            future.get();
+            Assert.fail("failed future");
+        }
+        catch (ExecutionException ex) {
+            Assert.assertSame(cause, ex.getCause());
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        CommFuture<String> future = new CommFuture<String>();
+        Assert.assertTrue(future.cancel(false));
+        Assert.assertTrue(future.isCancelled());
+        Assert.assertFalse(future.isSuccess());
+        Assert.assertFalse(future.setDone("abc"));
+        try {
+            future.get();
+            Assert.fail("cancelled future");
+        }
+        catch (CancellationException ex) {
+        }
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        CommFuture<String> future = new CommFuture<String>();
+        long start = System.currentTimeMillis();
+        try {
+            future.get(50, TimeUnit.MILLISECONDS);
+            Assert.fail("timeout");
+        }
+        catch (TimeoutException ex) {
+            Assert.assertTrue(System.currentTimeMillis() - start >= 40);
+        }
+        Assert.assertFalse(future.isDone());
+    }
+
+    @Test
+    public void testGetFromOtherThread() throws Exception {
+        final CommFuture<String> future = new CommFuture<String>();
+        new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(20);
+                }
+                catch (InterruptedException ex) {
+                }
+                future.setDone("abc");
+            }
+        }).start();
+        Assert.assertEquals("abc", future.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testListener() {
+        final AtomicInteger count = new AtomicInteger();
+        CommFuture.Listener<String> listener = new CommFuture.Listener<String>() {
+
+            @Override
+            public void completed(CommFuture<String> f) {
+                Assert.assertTrue(f.isDone());
+                count.incrementAndGet();
+            }
+        };
+        CommFuture.Listener<String> broken = new CommFuture.Listener<String>() {
+
+            @Override
+            public void completed(CommFuture<String> f) {
+                throw new IllegalStateException("broken listener");
+            }
+        };
+
+        CommFuture<String> future = new CommFuture<String>();
+        future.addListener(broken);
+        future.addListener(listener);
+        future.addListener(listener);
+        Assert.assertEquals(0, count.get());
+
+        future.setDone("abc");
+        Assert.assertEquals(2, count.get());
+        future.setDone("def");
+        Assert.assertEquals(2, count.get());
+
+        // added after done, notified at once.
+        future.addListener(listener);
+        Assert.assertEquals(3, count.get());
+    }
+}
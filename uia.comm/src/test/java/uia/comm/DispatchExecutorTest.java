@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class DispatchExecutorTest {
+
+    @Test
+    public void testBounded() throws Exception {
+        DispatchExecutor executor = DispatchExecutor.bounded("test", 2, 10);
+        final CountDownLatch done = new CountDownLatch(5);
+        final AtomicReference<String> thread = new AtomicReference<String>();
+        for (int i = 0; i < 5; i++) {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    thread.set(Thread.currentThread().getName());
+                    done.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(thread.get().startsWith("test-"));
+        Assert.assertEquals(5, executor.getSubmittedCount());
+        waitCompleted(executor, 5);
+        Assert.assertEquals(0, executor.getRejectedCount());
+        Assert.assertEquals(0, executor.getActiveCount());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testCallerRuns() throws Exception {
+        DispatchExecutor executor = DispatchExecutor.bounded("test", 1, 1, new ThreadPoolExecutor.CallerRunsPolicy());
+        final CountDownLatch block = new CountDownLatch(1);
+        executor.execute(blocker(block));   // running
+        executor.execute(blocker(block));   // queued
+
+        final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                thread.set(Thread.currentThread());
+            }
+        });
+        Assert.assertSame(Thread.currentThread(), thread.get());
+        Assert.assertEquals(1, executor.getRejectedCount());
+
+        block.countDown();
+        waitCompleted(executor, 3);
+        executor.shutdown();
+    }
+
+    @Test
+    public void testAbort() throws Exception {
+        DispatchExecutor executor = DispatchExecutor.bounded("test", 1, 1);
+        CountDownLatch block = new CountDownLatch(1);
+        executor.execute(blocker(block));
+        executor.execute(blocker(block));
+        try {
+            executor.execute(blocker(block));
+            Assert.fail("queue is full");
+        }
+        catch (RejectedExecutionException ex) {
+        }
+        Assert.assertEquals(1, executor.getRejectedCount());
+        Assert.assertEquals(1, executor.getQueueSize());
+
+        block.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testThreadPerTask() throws Exception {
+        DispatchExecutor executor = DispatchExecutor.threadPerTask("tpt");
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<String> thread = new AtomicReference<String>();
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                thread.set(Thread.currentThread().getName());
+                done.countDown();
+            }
+        });
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals("tpt-1", thread.get());
+        Assert.assertEquals(0, executor.getQueueSize());
+        waitCompleted(executor, 1);
+    }
+
+    @Test
+    public void testShared() {
+        Assert.assertSame(DispatchExecutor.shared(), DispatchExecutor.shared());
+        Assert.assertEquals("comm-dispatch", DispatchExecutor.shared().getName());
+    }
+
+    private static Runnable blocker(final CountDownLatch block) {
+        return new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    block.await(5, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException ex) {
+                }
+            }
+        };
+    }
+
+    private static void waitCompleted(DispatchExecutor executor, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getCompletedCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(count, executor.getCompletedCount());
+    }
+}
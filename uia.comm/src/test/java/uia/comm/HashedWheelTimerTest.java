@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class HashedWheelTimerTest {
+
+    @Test
+    public void testExpire() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer("test-timer", 5, 8);
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicLong at = new AtomicLong();
+        long start = System.currentTimeMillis();
+        HashedWheelTimer.Timeout timeout = timer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                at.set(System.currentTimeMillis());
+                done.countDown();
+            }
+        }, 50);
+        Assert.assertFalse(timeout.isExpired());
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(at.get() - start >= 50);
+        Assert.assertTrue(timeout.isExpired());
+        Assert.assertFalse(timeout.cancel());
+        timer.stop();
+    }
+
+    @Test
+    public void testRounds() throws Exception {
+        // wheel of 4 ticks covers 20ms, the delay needs several rounds.
+        HashedWheelTimer timer = new HashedWheelTimer("test-timer", 5, 4);
+        final CountDownLatch done = new CountDownLatch(2);
+        final AtomicLong at = new AtomicLong();
+        long start = System.currentTimeMillis();
+        timer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                at.set(System.currentTimeMillis());
+                done.countDown();
+            }
+        }, 100);
+        timer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        }, 0);
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(at.get() - start >= 100);
+        timer.stop();
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer("test-timer", 5, 8);
+        final AtomicInteger count = new AtomicInteger();
+        Runnable task = new Runnable() {
+
+            @Override
+            public void run() {
+                count.incrementAndGet();
+            }
+        };
+        HashedWheelTimer.Timeout cancelled = timer.schedule(task, 20);
+        timer.schedule(task, 20);
+        Assert.assertTrue(cancelled.cancel());
+        Assert.assertFalse(cancelled.cancel());
+        Assert.assertTrue(cancelled.isCancelled());
+
+        Thread.sleep(200);
+        Assert.assertEquals(1, count.get());
+        Assert.assertFalse(cancelled.isExpired());
+        timer.stop();
+    }
+
+    @Test
+    public void testTaskFailed() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer("test-timer", 5, 8);
+        final CountDownLatch done = new CountDownLatch(1);
+        timer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                throw new IllegalStateException("task failed");
+            }
+        }, 10);
+        timer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        }, 30);
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        timer.stop();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStopped() {
+        HashedWheelTimer timer = new HashedWheelTimer("test-timer", 5, 8);
+        timer.stop();
+        timer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+            }
+        }, 10);
+    }
+
+    @Test
+    public void testShared() {
+        Assert.assertSame(HashedWheelTimer.shared(), HashedWheelTimer.shared());
+        Assert.assertEquals(10, HashedWheelTimer.shared().getTickMillis());
+    }
+}
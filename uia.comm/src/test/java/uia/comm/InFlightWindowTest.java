@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class InFlightWindowTest {
+
+    @Test
+    public void testWindow() {
+        InFlightWindow window = new InFlightWindow(2, 2);
+        List<String> written = new ArrayList<String>();
+        CommFuture<byte[]> f1 = submit(window, written, "1");
+        CommFuture<byte[]> f2 = submit(window, written, "2");
+        CommFuture<byte[]> f3 = submit(window, written, "3");
+        submit(window, written, "4");
+        Assert.assertEquals("[1, 2]", written.toString());
+        Assert.assertEquals(2, window.getInFlight());
+        Assert.assertEquals(2, window.getQueued());
+
+        try {
+            submit(window, written, "5");
+            Assert.fail("window is full");
+        }
+        catch (RejectedExecutionException ex) {
+        }
+
+        f2.setDone(new byte[0]);
+        Assert.assertEquals("[1, 2, 3]", written.toString());
+        Assert.assertEquals(2, window.getInFlight());
+        Assert.assertEquals(1, window.getQueued());
+
+        f1.setFailed(new Exception("timeout"));
+        f3.setDone(new byte[0]);
+        Assert.assertEquals("[1, 2, 3, 4]", written.toString());
+        Assert.assertEquals(1, window.getInFlight());
+        Assert.assertEquals(0, window.getQueued());
+    }
+
+    @Test
+    public void testCancelQueued() {
+        InFlightWindow window = new InFlightWindow(1, 10);
+        List<String> written = new ArrayList<String>();
+        CommFuture<byte[]> f1 = submit(window, written, "1");
+        CommFuture<byte[]> f2 = submit(window, written, "2");
+        submit(window, written, "3");
+        Assert.assertEquals(2, window.getQueued());
+
+        // cancelled before written, never written.
+        f2.cancel(false);
+        Assert.assertEquals(1, window.getQueued());
+        Assert.assertEquals(1, window.getInFlight());
+
+        f1.setDone(new byte[0]);
+        Assert.assertEquals("[1, 3]", written.toString());
+        Assert.assertEquals(1, window.getInFlight());
+        Assert.assertEquals(0, window.getQueued());
+    }
+
+    @Test
+    public void testClear() {
+        InFlightWindow window = new InFlightWindow(1, 10);
+        List<String> written = new ArrayList<String>();
+        CommFuture<byte[]> f1 = submit(window, written, "1");
+        CommFuture<byte[]> f2 = submit(window, written, "2");
+        CommFuture<byte[]> f3 = submit(window, written, "3");
+
+        Exception cause = new Exception("disconnected");
+        window.clear(cause);
+        Assert.assertFalse(f1.isDone());
+        Assert.assertSame(cause, f2.getCause());
+        Assert.assertSame(cause, f3.getCause());
+        Assert.assertEquals(0, window.getQueued());
+
+        f1.setDone(new byte[0]);
+        Assert.assertEquals("[1]", written.toString());
+        Assert.assertEquals(0, window.getInFlight());
+    }
+
+    private static CommFuture<byte[]> submit(InFlightWindow window, final List<String> written, final String name) {
+        CommFuture<byte[]> future = new CommFuture<byte[]>();
+        window.submit(future, new Runnable() {
+
+            @Override
+            public void run() {
+                written.add(name);
+            }
+        });
+        return future;
+    }
+}
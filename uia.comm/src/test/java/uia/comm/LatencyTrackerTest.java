@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class LatencyTrackerTest {
+
+    @Test
+    public void testPercentile() {
+        LatencyTracker tracker = new LatencyTracker(100);
+        for (int i = 1; i <= 15; i++) {
+            tracker.record(i);
+        }
+        // not enough samples
+        Assert.assertEquals(-1, tracker.percentile(0.5));
+
+        for (int i = 16; i <= 100; i++) {
+            tracker.record(i);
+        }
+        Assert.assertEquals(50, tracker.percentile(0.5));
+        Assert.assertEquals(95, tracker.percentile(0.95));
+        Assert.assertEquals(100, tracker.percentile(1));
+        Assert.assertEquals(1, tracker.percentile(0));
+    }
+
+    @Test
+    public void testWindow() {
+        LatencyTracker tracker = new LatencyTracker(16);
+        for (int i = 0; i < 16; i++) {
+            tracker.record(1000);
+        }
+        Assert.assertEquals(1000, tracker.percentile(0.5));
+
+        // old samples are replaced, the cached value is refreshed after enough new samples.
+        for (int i = 0; i < 32; i++) {
+            tracker.record(10);
+        }
+        Assert.assertEquals(10, tracker.percentile(0.5));
+    }
+
+    @Test
+    public void testCached() {
+        LatencyTracker tracker = new LatencyTracker(16);
+        for (int i = 0; i < 16; i++) {
+            tracker.record(100);
+        }
+        Assert.assertEquals(100, tracker.percentile(0.9));
+        tracker.record(1);
+        Assert.assertEquals(100, tracker.percentile(0.9));
+        // another percentile is calculated at once.
+        Assert.assertEquals(1, tracker.percentile(0.05));
+    }
+}
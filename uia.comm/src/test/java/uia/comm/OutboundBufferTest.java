@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import uia.comm.my.ClientManager;
+import uia.comm.protocol.ht.HTProtocol;
+
+/**
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class OutboundBufferTest {
+
+    @Test
+    public void testOffer() {
+        OutboundBuffer buffer = new OutboundBuffer(2);
+        CommFuture<Boolean> f1 = buffer.offer(new byte[] { 1 });
+        CommFuture<Boolean> f2 = buffer.offer(new byte[] { 2 });
+        Assert.assertFalse(f1.isDone());
+        Assert.assertFalse(f2.isDone());
+        Assert.assertEquals(2, buffer.size());
+
+        CommFuture<Boolean> f3 = buffer.offer(new byte[] { 3 });
+        Assert.assertTrue(f3.isDone());
+        Assert.assertTrue(f3.getCause() instanceof RejectedExecutionException);
+        Assert.assertEquals(2, buffer.size());
+    }
+
+    @Test
+    public void testClear() {
+        OutboundBuffer buffer = new OutboundBuffer(10);
+        CommFuture<Boolean> f1 = buffer.offer(new byte[] { 1 });
+        CommFuture<Boolean> f2 = buffer.offer(new byte[] { 2 });
+
+        Exception cause = new Exception("disconnected");
+        buffer.clear(cause);
+        Assert.assertSame(cause, f1.getCause());
+        Assert.assertSame(cause, f2.getCause());
+        Assert.assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testFlush() throws Exception {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.socket().bind(new InetSocketAddress("localhost", 0));
+        SocketChannel ch = SocketChannel.open(new InetSocketAddress("localhost", server.socket().getLocalPort()));
+        SocketChannel peer = server.accept();
+        try {
+            SocketDataController controller = new SocketDataController(
+                    "test",
+                    ch,
+                    new ClientManager(),
+                    new HTProtocol<SocketDataController>(new byte[] { 0x0a }, new byte[] { 0x0d }).createMonitor("test"));
+
+            OutboundBuffer buffer = new OutboundBuffer(10);
+            CommFuture<Boolean> f1 = buffer.offer(new byte[] { 1, 2 });
+            CommFuture<Boolean> f2 = buffer.offer(new byte[] { 3 });
+            CommFuture<Boolean> f3 = buffer.offer(new byte[] { 4 });
+            f2.cancel(false);   // given up before reconnected, not written.
+
+            buffer.flushTo(controller);
+            Assert.assertEquals(0, buffer.size());
+            Assert.assertTrue(f1.get(5, TimeUnit.SECONDS));
+            Assert.assertTrue(f3.get(5, TimeUnit.SECONDS));
+
+            ByteBuffer received = ByteBuffer.allocate(16);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (received.position() < 3 && System.currentTimeMillis() < deadline) {
+                peer.read(received);
+            }
+            Assert.assertArrayEquals(new byte[] { 1, 2, 4 }, Arrays.copyOf(received.array(), received.position()));
+            controller.stop();
+        }
+        finally {
+            ch.close();
+            peer.close();
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class ReconnectPolicyTest {
+
+    @Test
+    public void testBackoff() {
+        ReconnectPolicy policy = new ReconnectPolicy(100, 1000);
+        policy.setJitter(0);
+        Assert.assertEquals(100, policy.getDelay(0));
+        Assert.assertEquals(200, policy.getDelay(1));
+        Assert.assertEquals(400, policy.getDelay(2));
+        Assert.assertEquals(800, policy.getDelay(3));
+        Assert.assertEquals(1000, policy.getDelay(4));
+        Assert.assertEquals(1000, policy.getDelay(1000));
+        Assert.assertEquals(1000, policy.getDelay(Integer.MAX_VALUE));
+
+        policy.setMultiplier(3);
+        Assert.assertEquals(900, policy.getDelay(2));
+    }
+
+    @Test
+    public void testJitter() {
+        ReconnectPolicy policy = new ReconnectPolicy(1000, 1000);
+        policy.setJitter(0.5);
+        for (int i = 0; i < 1000; i++) {
+            long delay = policy.getDelay(i);
+            Assert.assertTrue(delay >= 500 && delay <= 1000);
+        }
+    }
+
+    @Test
+    public void testLimits() {
+        ReconnectPolicy policy = new ReconnectPolicy(0, -1);
+        Assert.assertEquals(1, policy.getInitialDelay());
+        Assert.assertEquals(1, policy.getMaxDelay());
+
+        policy.setMultiplier(0.5);
+        Assert.assertEquals(1, policy.getMultiplier(), 0);
+        policy.setJitter(2);
+        Assert.assertEquals(1, policy.getJitter(), 0);
+        policy.setJitter(-1);
+        Assert.assertEquals(0, policy.getJitter(), 0);
+        policy.setMaxBuffered(-1);
+        Assert.assertEquals(0, policy.getMaxBuffered());
+    }
+}
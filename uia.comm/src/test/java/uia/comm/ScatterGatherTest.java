@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class ScatterGatherTest {
+
+    @Test
+    public void testGather() throws Exception {
+        final List<String> events = new ArrayList<String>();
+        ScatterGather sg = new ScatterGather(5000, new ScatterGather.Listener() {
+
+            @Override
+            public void replied(String clientName, byte[] reply) {
+                events.add("replied:" + clientName);
+            }
+
+            @Override
+            public void failed(String clientName, Throwable cause) {
+                events.add("failed:" + clientName);
+            }
+        });
+        sg.expect("a");
+        sg.expect("b");
+        sg.expect("c");
+        sg.replied("a", new byte[] { 1 });
+        Assert.assertFalse(sg.isDone());
+
+        sg.scattered();
+        Assert.assertEquals(2, sg.getPending());
+        sg.failed("b", new Exception("timeout"));
+        // only the first result of a client counts.
+        sg.replied("b", new byte[] { 2 });
+        sg.replied("a", new byte[] { 3 });
+        Assert.assertEquals(1, sg.getPending());
+
+        sg.replied("c", new byte[] { 4 });
+        Assert.assertTrue(sg.isDone());
+        Map<String, byte[]> replies = sg.await();
+        Assert.assertEquals(2, replies.size());
+        Assert.assertArrayEquals(new byte[] { 1 }, replies.get("a"));
+        Assert.assertArrayEquals(new byte[] { 4 }, replies.get("c"));
+        Assert.assertEquals(1, sg.getFailures().size());
+        Assert.assertEquals("[replied:a, failed:b, replied:c]", events.toString());
+    }
+
+    @Test
+    public void testDeadline() throws Exception {
+        ScatterGather sg = new ScatterGather(50, null);
+        sg.expect("a");
+        sg.expect("b");
+        sg.scattered();
+        sg.replied("a", new byte[] { 1 });
+
+        long start = System.currentTimeMillis();
+        Map<String, byte[]> replies = sg.await();
+        Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+        Assert.assertTrue(sg.isDone());
+        Assert.assertEquals(1, sg.getPending());
+        Assert.assertEquals(1, replies.size());
+    }
+
+    @Test
+    public void testMissing() throws Exception {
+        ScatterGather sg = new ScatterGather(5000, null);
+        sg.missing("a", new SocketException("a> client is missing"));
+        sg.scattered();
+        Assert.assertTrue(sg.isDone());
+        Assert.assertEquals(0, sg.getClientNames().size());
+        Assert.assertEquals(1, sg.getFailures().size());
+    }
+
+    @Test
+    public void testUnregistered() {
+        SocketClientGroup group = new SocketClientGroup();
+        HashMap<String, byte[]> dataOfClients = new HashMap<String, byte[]>();
+        dataOfClients.put("nope", new byte[] { 1 });
+        Assert.assertEquals(0, group.send(dataOfClients, "1", 1000).size());
+
+        ScatterGather sg = group.scatter(dataOfClients, "1", 1000, null);
+        Assert.assertTrue(sg.isDone());
+        Assert.assertTrue(sg.getFailures().get("nope") instanceof SocketException);
+    }
+
+    @Test
+    public void testBroadcastSameTxId() throws Exception {
+        int port = SocketClientReconnectTest.freePort();
+        SocketServer server = new SocketServer(SocketClientReconnectTest.protocol(), port, new SocketClientReconnectTest.Manager(true), "group-server");
+        server.registerCallin(new MessageCallIn<SocketDataController>() {
+
+            @Override
+            public String getCmdName() {
+                return "X";
+            }
+
+            @Override
+            public void execute(byte[] request, SocketDataController controller) {
+                try {
+                    Thread.sleep(100);
+                }
+                catch (InterruptedException ex) {
+                }
+                controller.send(request, 1);
+            }
+        });
+        server.start();
+
+        final SocketClientGroup group = new SocketClientGroup();
+        List<SocketClient> clients = new ArrayList<SocketClient>();
+        try {
+            for (int i = 0; i < 3; i++) {
+                SocketClient client = new SocketClient(SocketClientReconnectTest.protocol(), new SocketClientReconnectTest.Manager(false), "group" + i);
+                clients.add(client);
+                Assert.assertTrue(client.connect("localhost", port));
+                group.register(client);
+            }
+
+            // overlapping broadcasts with the same txId run one after another.
+            final List<Map<String, byte[]>> results = new ArrayList<Map<String, byte[]>>();
+            Thread[] threads = new Thread[2];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        Map<String, byte[]> replies = group.send("B0001E".getBytes(), "0001", 2000);
+                        synchronized (results) {
+                            results.add(replies);
+                        }
+                    }
+                });
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            Assert.assertEquals(2, results.size());
+            for (Map<String, byte[]> replies : results) {
+                Assert.assertEquals(3, replies.size());
+                for (byte[] reply : replies.values()) {
+                    Assert.assertArrayEquals("B0001E".getBytes(), reply);
+                }
+            }
+        }
+        finally {
+            for (SocketClient client : clients) {
+                client.disconnect();
+            }
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testReplaced() {
+        MessageCallOutFuture earlier = new MessageCallOutFuture("test", "1");
+        MessageCallOutFuture.replaced(earlier);
+        Assert.assertTrue(earlier.getCause() instanceof SocketException);
+
+        // null means no request was replaced.
+        MessageCallOutFuture.replaced(null);
+    }
+}
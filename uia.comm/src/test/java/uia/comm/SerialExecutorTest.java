@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class SerialExecutorTest {
+
+    @Test
+    public void testOrder() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        SerialExecutor executor = new SerialExecutor(pool);
+        final List<Integer> result = new ArrayList<Integer>();
+        final CountDownLatch done = new CountDownLatch(1000);
+        for (int i = 0; i < 1000; i++) {
+            final int seq = i;
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    synchronized (result) {
+                        result.add(seq);
+                    }
+                    done.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(i, result.get(i).intValue());
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void testTaskFailed() {
+        ManualExecutor manual = new ManualExecutor();
+        SerialExecutor executor = new SerialExecutor(manual);
+        final List<String> result = new ArrayList<String>();
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                throw new IllegalStateException("task failed");
+            }
+        });
+        executor.execute(add(result, "a"));
+        Assert.assertEquals(1, manual.tasks.size());
+
+        manual.runAll();
+        Assert.assertEquals("[a]", result.toString());
+        Assert.assertEquals(0, executor.size());
+
+        // drain is started again.
+        executor.execute(add(result, "b"));
+        Assert.assertEquals(1, manual.tasks.size());
+        manual.runAll();
+        Assert.assertEquals("[a, b]", result.toString());
+    }
+
+    @Test
+    public void testTaskError() {
+        ManualExecutor manual = new ManualExecutor();
+        SerialExecutor executor = new SerialExecutor(manual);
+        final List<String> result = new ArrayList<String>();
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                throw new AssertionError("task error");
+            }
+        });
+        executor.execute(add(result, "a"));
+        executor.execute(add(result, "b"));
+
+        manual.runAll();
+        Assert.assertEquals(1, manual.errors);
+        Assert.assertEquals("[a, b]", result.toString());
+        Assert.assertEquals(0, executor.size());
+
+        executor.execute(add(result, "c"));
+        manual.runAll();
+        Assert.assertEquals("[a, b, c]", result.toString());
+    }
+
+    @Test
+    public void testMaxQueued() {
+        ManualExecutor manual = new ManualExecutor();
+        SerialExecutor executor = new SerialExecutor(manual, 2);
+        final List<String> result = new ArrayList<String>();
+        executor.execute(add(result, "a"));
+        executor.execute(add(result, "b"));
+        try {
+            executor.execute(add(result, "c"));
+            Assert.fail("queue is full");
+        }
+        catch (RejectedExecutionException ex) {
+        }
+        Assert.assertEquals(2, executor.size());
+
+        manual.runAll();
+        Assert.assertEquals("[a, b]", result.toString());
+        executor.execute(add(result, "c"));
+        manual.runAll();
+        Assert.assertEquals("[a, b, c]", result.toString());
+    }
+
+    @Test
+    public void testRejected() {
+        final ManualExecutor manual = new ManualExecutor();
+        final boolean[] reject = new boolean[] { true };
+        SerialExecutor executor = new SerialExecutor(new Executor() {
+
+            @Override
+            public void execute(Runnable command) {
+                if (reject[0]) {
+                    throw new RejectedExecutionException("rejected");
+                }
+                manual.execute(command);
+            }
+        });
+        final List<String> result = new ArrayList<String>();
+        try {
+            executor.execute(add(result, "a"));
+            Assert.fail("rejected");
+        }
+        catch (RejectedExecutionException ex) {
+        }
+        Assert.assertEquals(0, executor.size());
+
+        reject[0] = false;
+        executor.execute(add(result, "b"));
+        manual.runAll();
+        Assert.assertEquals("[b]", result.toString());
+    }
+
+    private static Runnable add(final List<String> result, final String value) {
+        return new Runnable() {
+
+            @Override
+            public void run() {
+                result.add(value);
+            }
+        };
+    }
+
+    /**
+     * Executor runs tasks when the test asks.
+     */
+    static class ManualExecutor implements Executor {
+
+        final LinkedList<Runnable> tasks = new LinkedList<Runnable>();
+
+        int errors;
+
+        @Override
+        public void execute(Runnable command) {
+            this.tasks.add(command);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = this.tasks.poll()) != null) {
+                try {
+                    task.run();
+                }
+                catch (Error err) {
+                    this.errors++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Connect of SocketClient through the reactor and the blocking path.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class SocketClientConnectTest {
+
+    private ServerSocket hanging;
+
+    private List<SocketChannel> backlog;
+
+    /**
+     * The accept queue of this server is full, so a new connect neither succeeds nor is refused until it times out.
+     */
+    @Before
+    public void setUp() throws Exception {
+        this.hanging = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+        this.backlog = new ArrayList<SocketChannel>();
+        for (int i = 0; i < 8; i++) {
+            SocketChannel ch = SocketChannel.open();
+            ch.configureBlocking(false);
+            ch.connect(new InetSocketAddress("127.0.0.1", this.hanging.getLocalPort()));
+            this.backlog.add(ch);
+        }
+        Thread.sleep(200);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (SocketChannel ch : this.backlog) {
+            ch.close();
+        }
+        this.hanging.close();
+    }
+
+    @Test
+    public void testConnect() throws Exception {
+        for (boolean reactor : new boolean[] { true, false }) {
+            int port = SocketClientReconnectTest.freePort();
+            SocketServer server = new SocketServer(SocketClientReconnectTest.protocol(), port, new SocketClientReconnectTest.Manager(true), "connect-server");
+            server.start();
+            SocketClient client = client(reactor, port);
+            try {
+                CommFuture<Boolean> future = client.tryConnectAsync();
+                Assert.assertTrue(future.get(5, TimeUnit.SECONDS));
+                Assert.assertTrue(client.isConnected());
+                Assert.assertTrue(client.sendAsync("B0000E".getBytes()).get(5, TimeUnit.SECONDS));
+                waitClients(server, 1);
+
+                // connected already
+                Assert.assertTrue(client.tryConnectAsync().get(1, TimeUnit.SECONDS));
+                Assert.assertTrue(client.tryConnect());
+                waitClients(server, 1);
+            }
+            finally {
+                client.disconnect();
+                server.stop();
+            }
+        }
+    }
+
+    @Test
+    public void testConnectTimeout() throws Exception {
+        for (boolean reactor : new boolean[] { true, false }) {
+            SocketClient client = client(reactor, this.hanging.getLocalPort());
+            client.setConnectTimeout(300);
+            long start = System.currentTimeMillis();
+            CommFuture<Boolean> future = client.tryConnectAsync();
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                Assert.fail("connect timeout");
+            }
+            catch (ExecutionException ex) {
+                Assert.assertTrue(ex.getCause() instanceof SocketTimeoutException);
+            }
+            long took = System.currentTimeMillis() - start;
+            Assert.assertTrue(took >= 250 && took < 3000);
+            Assert.assertFalse(client.isConnected());
+
+            start = System.currentTimeMillis();
+            Assert.assertFalse(client.tryConnect());
+            took = System.currentTimeMillis() - start;
+            Assert.assertTrue(took >= 250 && took < 3000);
+            client.disconnect();
+        }
+    }
+
+    @Test
+    public void testJoinPendingConnect() throws Exception {
+        for (boolean reactor : new boolean[] { true, false }) {
+            SocketClient client = client(reactor, this.hanging.getLocalPort());
+            client.setConnectTimeout(500);
+            CommFuture<Boolean> pending = client.tryConnectAsync();
+            Thread.sleep(100);
+
+            // waits for the pending connect instead of opening another one.
+            long start = System.currentTimeMillis();
+            Assert.assertSame(pending, client.tryConnectAsync());
+            Assert.assertFalse(client.tryConnect());
+            Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+            Assert.assertTrue(pending.isDone());
+            Assert.assertTrue(pending.getCause() instanceof SocketTimeoutException);
+            client.disconnect();
+        }
+    }
+
+    @Test
+    public void testDisconnectWhileConnecting() throws Exception {
+        for (boolean reactor : new boolean[] { true, false }) {
+            SocketClient client = client(reactor, this.hanging.getLocalPort());
+            client.setConnectTimeout(3000);
+            CommFuture<Boolean> pending = client.tryConnectAsync();
+            Thread.sleep(100);
+            Assert.assertFalse(pending.isDone());
+
+            client.disconnect();
+            Assert.assertTrue(pending.isDone());
+            Assert.assertFalse(pending.isSuccess());
+            Assert.assertTrue(pending.getCause().getMessage().endsWith("connect cancelled"));
+            Assert.assertFalse(client.isConnected());
+        }
+    }
+
+    private static SocketClient client(boolean reactor, int port) {
+        SocketClient client = new SocketClient(
+                SocketClientReconnectTest.protocol(),
+                new SocketClientReconnectTest.Manager(false),
+                "connect-" + (reactor ? "reactor" : "blocking"));
+        if (!reactor) {
+            client.setReactorGroup(null);
+        }
+        client.setAddr("127.0.0.1");
+        client.setPort(port);
+        return client;
+    }
+
+    private static void waitClients(SocketServer server, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.getClientCount() != count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        Assert.assertEquals(count, server.getClientCount());
+    }
+}
@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import uia.comm.protocol.ht.HTProtocol;
+
+/**
+ * Reconnect of SocketClient through a loopback link.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class SocketClientReconnectTest {
+
+    private final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+
+    @Test
+    public void testReconnect() throws Exception {
+        reconnect(null);
+    }
+
+    @Test
+    public void testReconnectExecutorRejected() throws Exception {
+        // link lost is handled even if the executor rejects all tasks.
+        reconnect(new Executor() {
+
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException("rejected");
+            }
+        });
+    }
+
+    private void reconnect(Executor executor) throws Exception {
+        int port = freePort();
+        SocketServer server = server(port);
+
+        SocketClient client = new SocketClient(protocol(), new Manager(false), "reconnect");
+        if (executor != null) {
+            client.setExecutor(executor);
+        }
+        ReconnectPolicy policy = new ReconnectPolicy(50, 200);
+        policy.setMaxBuffered(100);
+        client.setReconnectPolicy(policy);
+        try {
+            Assert.assertTrue(client.connect("localhost", port));
+            Assert.assertTrue(client.sendAsync("B0000E".getBytes()).get(5, TimeUnit.SECONDS));
+            waitReceived(1);
+
+            server.stop();
+            waitConnected(client, false);
+
+            // buffered while the link is down.
+            List<CommFuture<Boolean>> futures = new ArrayList<CommFuture<Boolean>>();
+            for (int i = 1; i <= 20; i++) {
+                futures.add(client.sendAsync(String.format("B%04dE", i).getBytes()));
+            }
+            Assert.assertEquals(20, client.getBuffered());
+
+            server = server(port);
+            for (CommFuture<Boolean> future : futures) {
+                Assert.assertTrue(future.get(5, TimeUnit.SECONDS));
+            }
+            waitConnected(client, true);
+            Assert.assertEquals(0, client.getBuffered());
+
+            waitReceived(21);
+            for (int i = 0; i <= 20; i++) {
+                Assert.assertEquals(String.format("%04d", i), this.received.get(i));
+            }
+        }
+        finally {
+            client.disconnect();
+            server.stop();
+        }
+    }
+
+    private SocketServer server(int port) throws Exception {
+        SocketServer server = new SocketServer(protocol(), port, new Manager(true), "reconnect-server");
+        server.setOrderedDispatch(true);
+        server.registerCallin(new MessageCallIn<SocketDataController>() {
+
+            @Override
+            public String getCmdName() {
+                return "X";
+            }
+
+            @Override
+            public void execute(byte[] request, SocketDataController controller) {
+                SocketClientReconnectTest.this.received.add(new String(request, 1, 4));
+            }
+        });
+        Assert.assertTrue(server.start());
+        return server;
+    }
+
+    static void waitConnected(SocketClient client, boolean connected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (client.isConnected() != connected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(connected, client.isConnected());
+    }
+
+    private void waitReceived(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (this.received.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(count, this.received.size());
+    }
+
+    static HTProtocol<SocketDataController> protocol() {
+        return new HTProtocol<SocketDataController>("B".getBytes(), "E".getBytes());
+    }
+
+    static int freePort() throws Exception {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        }
+        finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Message "B" + 4 bytes transaction id + "E".
+     */
+    static class Manager implements MessageManager {
+
+        private final boolean callIn;
+
+        Manager(boolean callIn) {
+            this.callIn = callIn;
+        }
+
+        @Override
+        public boolean isCallIn(String cmd) {
+            return this.callIn;
+        }
+
+        @Override
+        public String findCmd(byte[] data) {
+            return "X";
+        }
+
+        @Override
+        public String findTx(byte[] data) {
+            return new String(data, 1, 4);
+        }
+
+        @Override
+        public byte[] decode(byte[] data) {
+            return data;
+        }
+
+        @Override
+        public byte[] encode(byte[] data) {
+            return data;
+        }
+
+        @Override
+        public boolean validate(byte[] data) {
+            return true;
+        }
+    }
+}
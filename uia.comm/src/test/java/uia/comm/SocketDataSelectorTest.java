@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class SocketDataSelectorTest {
+
+    private ServerSocketChannel server;
+
+    @Before
+    public void setUp() throws Exception {
+        this.server = ServerSocketChannel.open();
+        this.server.socket().bind(new InetSocketAddress("127.0.0.1", 0));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.server.close();
+    }
+
+    @Test
+    public void testConnect() throws Exception {
+        SocketDataSelector selector = new SocketDataSelector("test-reactor");
+        selector.start();
+        Thread.sleep(50);   // the reactor is selecting.
+        try {
+            SocketDataController controller = controller();
+            CommFuture<Boolean> connecting = new CommFuture<Boolean>();
+            selector.connect(controller, null, connecting);
+            Assert.assertTrue(connecting.get(5, TimeUnit.SECONDS));
+
+            SocketChannel peer = this.server.accept();
+            Assert.assertTrue(controller.sendAsync("B0001E".getBytes()).get(5, TimeUnit.SECONDS));
+            ByteBuffer received = ByteBuffer.allocate(16);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (received.position() < 6 && System.currentTimeMillis() < deadline) {
+                peer.read(received);
+            }
+            Assert.assertEquals("B0001E", new String(received.array(), 0, received.position()));
+            peer.close();
+            controller.stop();
+        }
+        finally {
+            selector.stop();
+        }
+    }
+
+    @Test
+    public void testRegisterBeforeStart() throws Exception {
+        SocketDataSelector selector = new SocketDataSelector("test-reactor");
+        try {
+            CommFuture<Boolean> connecting = new CommFuture<Boolean>();
+            selector.connect(controller(), null, connecting);
+            Assert.assertEquals(1, selector.getLoad());
+            Assert.assertFalse(connecting.isDone());
+
+            selector.start();
+            Assert.assertTrue(connecting.get(5, TimeUnit.SECONDS));
+        }
+        finally {
+            selector.stop();
+        }
+    }
+
+    @Test
+    public void testStopFailsPending() throws Exception {
+        SocketDataSelector selector = new SocketDataSelector("test-reactor");
+        CommFuture<Boolean> connecting = new CommFuture<Boolean>();
+        selector.connect(controller(), null, connecting);
+
+        final AtomicInteger closed = new AtomicInteger();
+        SocketDataController controller = controller();
+        controller.getChannel().finishConnect();
+        selector.register(controller, new Runnable() {
+
+            @Override
+            public void run() {
+                closed.incrementAndGet();
+            }
+        });
+
+        selector.stop();
+        try {
+            connecting.get(1, TimeUnit.SECONDS);
+            Assert.fail("stopped");
+        }
+        catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof ClosedChannelException);
+        }
+        Assert.assertEquals(1, closed.get());
+        Assert.assertEquals(0, selector.getLoad());
+    }
+
+    @Test
+    public void testRegisterAfterStop() throws Exception {
+        SocketDataSelector selector = new SocketDataSelector("test-reactor");
+        selector.start();
+        selector.stop();
+        Thread.sleep(50);
+        try {
+            selector.connect(controller(), null, new CommFuture<Boolean>());
+            Assert.fail("stopped");
+        }
+        catch (ClosedChannelException ex) {
+        }
+    }
+
+    private SocketDataController controller() throws Exception {
+        SocketChannel ch = SocketChannel.open();
+        ch.configureBlocking(false);
+        ch.connect(this.server.socket().getLocalSocketAddress());
+        return new SocketDataController(
+                "test",
+                ch,
+                new SocketClientReconnectTest.Manager(false),
+                SocketClientReconnectTest.protocol().createMonitor("test"));
+    }
+}
@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.net.SocketException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import uia.comm.protocol.FramePool;
+import uia.comm.protocol.ht.HTProtocol;
+
+/**
+ * Numeric transaction id requests sent by SocketServer.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class SocketServerTxIdTest {
+
+    @Test
+    public void testReplyReleased() throws Exception {
+        FramePool pool = new FramePool();
+        HTProtocol<SocketDataController> protocol = SocketClientReconnectTest.protocol();
+        protocol.setFramePool(pool);
+
+        int port = SocketClientReconnectTest.freePort();
+        SocketServer server = new SocketServer(protocol, port, new Manager(false), "txid-server");
+        final AtomicReference<String> clientName = listen(server);
+        server.start();
+
+        SocketClient client = client(true);
+        try {
+            Assert.assertTrue(client.connect("localhost", port));
+            String name = waitClient(clientName);
+            for (int i = 0; i < 10; i++) {
+                long txId = server.nextTxId(name);
+                byte[] reply = server.sendAsync(name, String.format("B%04dE", txId).getBytes(), txId, 3000).get(5, TimeUnit.SECONDS);
+                Assert.assertEquals(String.format("B%04dE", txId), new String(reply));
+            }
+            // reply frames go back to the pool.
+            Assert.assertEquals(1, pool.size(6));
+        }
+        finally {
+            client.disconnect();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testReplaced() throws Exception {
+        int port = SocketClientReconnectTest.freePort();
+        SocketServer server = new SocketServer(SocketClientReconnectTest.protocol(), port, new Manager(false), "txid-server");
+        final AtomicReference<String> clientName = listen(server);
+        server.start();
+
+        SocketClient client = client(false);
+        try {
+            Assert.assertTrue(client.connect("localhost", port));
+            String name = waitClient(clientName);
+            CommFuture<byte[]> earlier = server.sendAsync(name, "B0001E".getBytes(), 1, 3000);
+            CommFuture<byte[]> later = server.sendAsync(name, "B0001E".getBytes(), 1, 3000);
+            try {
+                earlier.get(1, TimeUnit.SECONDS);
+                Assert.fail("replaced");
+            }
+            catch (ExecutionException ex) {
+                Assert.assertTrue(ex.getCause() instanceof SocketException);
+            }
+            Assert.assertFalse(later.isDone());
+
+            // pending numeric requests fail when the client is gone.
+            client.disconnect();
+            try {
+                later.get(2, TimeUnit.SECONDS);
+                Assert.fail("disconnected");
+            }
+            catch (ExecutionException ex) {
+                Assert.assertTrue(ex.getCause() instanceof SocketException);
+            }
+        }
+        finally {
+            client.disconnect();
+            server.stop();
+        }
+    }
+
+    private static AtomicReference<String> listen(SocketServer server) {
+        final AtomicReference<String> clientName = new AtomicReference<String>();
+        server.addServerListener(new SocketServerListener() {
+
+            @Override
+            public void connected(SocketDataController controller) {
+                clientName.set(controller.getName());
+            }
+
+            @Override
+            public void disconnected(SocketDataController controller) {
+            }
+        });
+        return clientName;
+    }
+
+    private static SocketClient client(boolean echo) {
+        SocketClient client = new SocketClient(SocketClientReconnectTest.protocol(), new Manager(true), "txid-client");
+        if (echo) {
+            client.registerCallin(new MessageCallIn<SocketDataController>() {
+
+                @Override
+                public String getCmdName() {
+                    return "X";
+                }
+
+                @Override
+                public void execute(byte[] request, SocketDataController controller) {
+                    controller.send(request, 1);
+                }
+            });
+        }
+        return client;
+    }
+
+    private static String waitClient(AtomicReference<String> clientName) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (clientName.get() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertNotNull(clientName.get());
+        return clientName.get();
+    }
+
+    /**
+     * Message "B" + 4 digits transaction id + "E".
+     */
+    static class Manager extends SocketClientReconnectTest.Manager implements TxIdMessageManager {
+
+        Manager(boolean callIn) {
+            super(callIn);
+        }
+
+        @Override
+        public long findTxId(byte[] data) {
+            return Long.parseLong(new String(data, 1, 4));
+        }
+
+        @Override
+        public long getMaxTxId() {
+            return 9999;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import java.util.HashSet;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class TxIdAllocatorTest {
+
+    @Test
+    public void testNext() {
+        TxIdAllocator allocator = new TxIdAllocator(3);
+        CallOutTable pending = new CallOutTable();
+        Assert.assertEquals(1, allocator.next(pending));
+        Assert.assertEquals(2, allocator.next(pending));
+        Assert.assertEquals(3, allocator.next(pending));
+        // wrap around
+        Assert.assertEquals(1, allocator.next(pending));
+    }
+
+    @Test
+    public void testSkipPending() {
+        TxIdAllocator allocator = new TxIdAllocator(100);
+        CallOutTable pending = new CallOutTable();
+        CallOutTableTest.fill(pending, 1, 50);
+        HashSet<Long> ids = new HashSet<Long>();
+        for (int i = 0; i < 50; i++) {
+            long txId = allocator.next(pending);
+            Assert.assertTrue(txId > 50 && txId <= 100);
+            Assert.assertTrue(ids.add(txId));
+            pending.put(txId, new CallOutTableTest.CallOut(txId));
+        }
+    }
+
+    @Test
+    public void testAllPending() {
+        TxIdAllocator allocator = new TxIdAllocator(10);
+        CallOutTable pending = new CallOutTable();
+        CallOutTableTest.fill(pending, 1, 10);
+        try {
+            allocator.next(pending);
+            Assert.fail("all ids are pending");
+        }
+        catch (RejectedExecutionException ex) {
+        }
+
+        pending.remove(7);
+        Assert.assertEquals(7, allocator.next(pending));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMax() {
+        new TxIdAllocator(0);
+    }
+}
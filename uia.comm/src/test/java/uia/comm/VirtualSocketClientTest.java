@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class VirtualSocketClientTest {
+
+    @Test
+    public void testProbeTimeout() {
+        VirtualSocketClient client = new VirtualSocketClient();
+        client.setHealthProbe("B0000E".getBytes(), "0000", 500);
+        try {
+            client.startHealthCheck(500);
+            Assert.fail("probe timeout >= period");
+        }
+        catch (IllegalArgumentException ex) {
+        }
+        Assert.assertFalse(client.isHealthChecking());
+
+        client.startHealthCheck(1000);
+        try {
+            client.setHealthProbe("B0000E".getBytes(), "0000", 1000);
+            Assert.fail("probe timeout >= period");
+        }
+        catch (IllegalArgumentException ex) {
+        }
+        client.setHealthProbe("B0000E".getBytes(), "0000", 200);
+        client.stopHealthCheck();
+    }
+
+    @Test
+    public void testHealthCheck() throws Exception {
+        int port = SocketClientReconnectTest.freePort();
+        SocketServer server = new SocketServer(SocketClientReconnectTest.protocol(), port, new SocketClientReconnectTest.Manager(true), "health-server");
+        server.registerCallin(new MessageCallIn<SocketDataController>() {
+
+            @Override
+            public String getCmdName() {
+                return "X";
+            }
+
+            @Override
+            public void execute(byte[] request, SocketDataController controller) {
+                // replies the probe only.
+                if (request[1] == 'P') {
+                    controller.send(request, 1);
+                }
+            }
+        });
+        server.start();
+
+        SocketClient member = new SocketClient(SocketClientReconnectTest.protocol(), new SocketClientReconnectTest.Manager(false), "health-member");
+        member.setAddr("localhost");
+        member.setPort(port);
+        VirtualSocketClient client = new VirtualSocketClient();
+        client.setCircuitBreaker(1, 60000);
+        client.add(member);
+        try {
+            client.setHealthProbe("BPPPPE".getBytes(), "PPPP", 100);
+            client.startHealthCheck(150);
+            Thread.sleep(1000);
+            Assert.assertTrue(member.isConnected());
+            Assert.assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitBreaker(member).getState());
+
+            // no reply, one failure opens the circuit.
+            client.setHealthProbe("BXXXXE".getBytes(), "XXXX", 100);
+            Thread.sleep(1000);
+            Assert.assertEquals(CircuitBreaker.State.OPEN, client.getCircuitBreaker(member).getState());
+        }
+        finally {
+            client.disconnect();
+            server.stop();
+        }
+    }
+}
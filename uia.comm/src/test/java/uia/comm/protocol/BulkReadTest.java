@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm.protocol;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import uia.comm.protocol.hl.HLProtocol;
+import uia.comm.protocol.ho.HOProtocol;
+import uia.comm.protocol.ht.HTProtocol;
+import uia.comm.protocol.htx.HTxProtocol;
+import uia.comm.protocol.ng.NGProtocol;
+import uia.comm.protocol.xml.XMLProtocol;
+
+/**
+ * Bulk read must raise the same events as reading byte by byte.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class BulkReadTest {
+
+    private static final byte[] ALPHABET = new byte[] {
+            (byte) 0x8a, (byte) 0xa8, 0x10, 0x01, 0x02, 0x41, 0x42, 0x43, 0x7e, 0x7f,
+            '<', '/', 'r', 'o', 't', '>', 0x00 };
+
+    @Test
+    public void testHT() {
+        compare(new Factory() {
+
+            @Override
+            public AbstractProtocol<Object> create() {
+                return new HTProtocol<Object>(
+                        new byte[] { (byte) 0x8a, (byte) 0x8a },
+                        new byte[] { (byte) 0xa8, (byte) 0xa8 });
+            }
+        });
+    }
+
+    @Test
+    public void testHTx() {
+        compare(new Factory() {
+
+            @Override
+            public AbstractProtocol<Object> create() {
+                return new HTxProtocol<Object>((byte) 0x7e, 2, (byte) 0x7f);
+            }
+        });
+    }
+
+    @Test
+    public void testHL() {
+        compare(new Factory() {
+
+            @Override
+            public AbstractProtocol<Object> create() {
+                return new HLProtocol<Object>(3, 0, 2, 1, new LenReader() {
+
+                    @Override
+                    public int read(byte[] data) {
+                        return data[0] & 0x07;
+                    }
+                }, new byte[] { 0x10, 0x01 }, true);
+            }
+        });
+    }
+
+    @Test
+    public void testHO() {
+        compare(new Factory() {
+
+            @Override
+            public AbstractProtocol<Object> create() {
+                return new HOProtocol<Object>(new byte[] { 0x41, 0x42 });
+            }
+        });
+        compare(new Factory() {
+
+            @Override
+            public AbstractProtocol<Object> create() {
+                return new HOProtocol<Object>(new byte[] { 0x41, 0x42 }, 7);
+            }
+        });
+    }
+
+    @Test
+    public void testXML() {
+        compare(new Factory() {
+
+            @Override
+            public AbstractProtocol<Object> create() {
+                return new XMLProtocol<Object>("root");
+            }
+        });
+    }
+
+    @Test
+    public void testNG() {
+        compare(new Factory() {
+
+            @Override
+            public AbstractProtocol<Object> create() {
+                return new NGProtocol<Object>();
+            }
+        });
+    }
+
+    @Test
+    public void testFeedByteMonitor() {
+        final StringBuilder read = new StringBuilder();
+        ProtocolMonitor<Object> monitor = new ProtocolMonitor<Object>() {
+
+            @Override
+            public int getDataLength() {
+                return read.length();
+            }
+
+            @Override
+            public Protocol<Object> getProtocol() {
+                return null;
+            }
+
+            @Override
+            public String getName() {
+                return "byte";
+            }
+
+            @Override
+            public void read(byte one) {
+                read.append((char) one);
+            }
+
+            @Override
+            public void readEnd() {
+            }
+
+            @Override
+            public void reset() {
+                read.setLength(0);
+            }
+
+            @Override
+            public Object getController() {
+                return null;
+            }
+
+            @Override
+            public void setController(Object controller) {
+            }
+
+            @Override
+            public boolean isRunning() {
+                return false;
+            }
+
+            @Override
+            public String getStateInfo() {
+                return "";
+            }
+        };
+
+        AbstractProtocolMonitor.feed(monitor, "ABCDEF".getBytes(), 1, 4);
+        Assert.assertEquals("BCDE", read.toString());
+    }
+
+    private void compare(Factory factory) {
+        Random random = new Random(1234);
+        for (int r = 0; r < 200; r++) {
+            byte[] stream = new byte[random.nextInt(400)];
+            for (int i = 0; i < stream.length; i++) {
+                stream[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+            }
+
+            Recorder expected = new Recorder(factory.create());
+            for (byte b : stream) {
+                expected.monitor.read(b);
+            }
+            expected.monitor.readEnd();
+
+            Recorder actual = new Recorder(factory.create());
+            int offset = 0;
+            while (offset < stream.length) {
+                int len = Math.min(stream.length - offset, 1 + random.nextInt(40));
+                if (random.nextBoolean()) {
+                    actual.monitor.read(stream, offset, len);
+                }
+                else {
+                    actual.monitor.read(ByteBuffer.wrap(stream, offset, len));
+                }
+                offset += len;
+            }
+            actual.monitor.readEnd();
+
+            Assert.assertEquals(expected.events, actual.events);
+            Assert.assertEquals(expected.monitor.getStateInfo(), actual.monitor.getStateInfo());
+        }
+    }
+
+    interface Factory {
+
+        public AbstractProtocol<Object> create();
+    }
+
+    static class Recorder implements ProtocolEventHandler<Object> {
+
+        final List<String> events;
+
+        final BulkProtocolMonitor<Object> monitor;
+
+        Recorder(AbstractProtocol<Object> protocol) {
+            this.events = new ArrayList<String>();
+            protocol.addMessageHandler(this);
+            this.monitor = (BulkProtocolMonitor<Object>) protocol.createMonitor("test");
+        }
+
+        @Override
+        public void messageReceived(ProtocolMonitor<Object> monitor, ProtocolEventArgs args) {
+            this.events.add("OK:" + Arrays.toString(args.getData()));
+        }
+
+        @Override
+        public void messageError(ProtocolMonitor<Object> monitor, ProtocolEventArgs args) {
+            this.events.add(args.getErrorCode() + ":" + Arrays.toString(args.getData()));
+        }
+    }
+}
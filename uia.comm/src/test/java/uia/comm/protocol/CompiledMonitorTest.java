@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm.protocol;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import uia.comm.protocol.BulkReadTest.Recorder;
+import uia.comm.protocol.hl.HLCompiledMonitor;
+import uia.comm.protocol.hl.HLProtocol;
+import uia.comm.protocol.ht.HTCompiledMonitor;
+import uia.comm.protocol.ht.HTProtocol;
+import uia.comm.protocol.htx.HTxCompiledMonitor;
+import uia.comm.protocol.htx.HTxProtocol;
+import uia.comm.protocol.xml.XMLCompiledMonitor;
+import uia.comm.protocol.xml.XMLProtocol;
+
+/**
+ * Compiled monitors must frame data the same as state machine monitors.
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class CompiledMonitorTest {
+
+    private static final byte[] ALPHABET = new byte[] {
+            (byte) 0x8a, (byte) 0xa8, 0x10, 0x01, 0x02, 0x41, 0x7e, 0x7f,
+            '<', '/', 'r', 'o', 't', '>', 0x00 };
+
+    @Test
+    public void testHT() {
+        HTProtocol<Object> p1 = new HTProtocol<Object>(new byte[] { (byte) 0x8a, (byte) 0x8a }, new byte[] { (byte) 0xa8, (byte) 0xa8 });
+        HTProtocol<Object> p2 = new HTProtocol<Object>(new byte[] { (byte) 0x8a, (byte) 0x8a }, new byte[] { (byte) 0xa8, (byte) 0xa8 });
+        p2.setCompiled(true);
+        HTProtocol<Object> p3 = new HTProtocol<Object>(new byte[] { (byte) 0x8a, (byte) 0x8a }, new byte[] { (byte) 0xa8, (byte) 0xa8 });
+        p3.setCompiled(true);
+        Assert.assertTrue(p2.createMonitor("test") instanceof HTCompiledMonitor);
+        compare(p1, p2, p3);
+    }
+
+    @Test
+    public void testHTx() {
+        HTxProtocol<Object> p1 = new HTxProtocol<Object>((byte) 0x7e, 2, (byte) 0x7f);
+        HTxProtocol<Object> p2 = new HTxProtocol<Object>((byte) 0x7e, 2, (byte) 0x7f);
+        p2.setCompiled(true);
+        HTxProtocol<Object> p3 = new HTxProtocol<Object>((byte) 0x7e, 2, (byte) 0x7f);
+        p3.setCompiled(true);
+        Assert.assertTrue(p2.createMonitor("test") instanceof HTxCompiledMonitor);
+        compare(p1, p2, p3);
+    }
+
+    @Test
+    public void testHL() {
+        LenReader reader = new LenReader() {
+
+            @Override
+            public int read(byte[] data) {
+                return data[0] & 0x07;
+            }
+        };
+        for (boolean strict : new boolean[] { false, true }) {
+            HLProtocol<Object> p1 = new HLProtocol<Object>(3, 0, 2, 1, reader, new byte[] { 0x10, 0x01 }, strict);
+            HLProtocol<Object> p2 = new HLProtocol<Object>(3, 0, 2, 1, reader, new byte[] { 0x10, 0x01 }, strict);
+            p2.setCompiled(true);
+            HLProtocol<Object> p3 = new HLProtocol<Object>(3, 0, 2, 1, reader, new byte[] { 0x10, 0x01 }, strict);
+            p3.setCompiled(true);
+            if (strict) {
+                p1.setMaxLength(6);
+                p2.setMaxLength(6);
+                p3.setMaxLength(6);
+            }
+            Assert.assertTrue(p2.createMonitor("test") instanceof HLCompiledMonitor);
+            compare(p1, p2, p3);
+        }
+    }
+
+    @Test
+    public void testXML() {
+        XMLProtocol<Object> p1 = new XMLProtocol<Object>("root");
+        XMLProtocol<Object> p2 = new XMLProtocol<Object>("root");
+        p2.setCompiled(true);
+        XMLProtocol<Object> p3 = new XMLProtocol<Object>("root");
+        p3.setCompiled(true);
+        Assert.assertTrue(p2.createMonitor("test") instanceof XMLCompiledMonitor);
+        compare(p1, p2, p3);
+    }
+
+    private void compare(AbstractProtocol<Object> p1, AbstractProtocol<Object> p2, AbstractProtocol<Object> p3) {
+        Recorder expected = new Recorder(p1);
+        Recorder actual = new Recorder(p2);
+        Recorder bulk = new Recorder(p3);
+
+        Random random = new Random(5678);
+        for (int r = 0; r < 200; r++) {
+            byte[] stream = new byte[random.nextInt(400)];
+            for (int i = 0; i < stream.length; i++) {
+                stream[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+            }
+
+            for (byte b : stream) {
+                expected.monitor.read(b);
+                actual.monitor.read(b);
+                Assert.assertEquals(expected.monitor.getStateInfo(), actual.monitor.getStateInfo());
+                Assert.assertEquals(expected.monitor.isRunning(), actual.monitor.isRunning());
+                Assert.assertEquals(expected.monitor.getDataLength(), actual.monitor.getDataLength());
+            }
+            Assert.assertEquals(expected.events, actual.events);
+
+            int offset = 0;
+            while (offset < stream.length) {
+                int len = Math.min(stream.length - offset, 1 + random.nextInt(40));
+                bulk.monitor.read(stream, offset, len);
+                offset += len;
+            }
+            Assert.assertEquals(expected.events, bulk.events);
+            Assert.assertEquals(expected.monitor.getStateInfo(), bulk.monitor.getStateInfo());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm.protocol;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class DataBufferTest {
+
+    @Test
+    public void testAdd() {
+        DataBuffer buffer = new DataBuffer(16);
+        for (int i = 0; i < 100; i++) {
+            buffer.add((byte) i);
+        }
+        buffer.add(new byte[] { 0x41, 0x42, 0x43, 0x44 }, 1, 2);
+
+        Assert.assertEquals(102, buffer.size());
+        Assert.assertEquals(99, buffer.get(99));
+        Assert.assertEquals(0x42, buffer.get(100));
+        Assert.assertEquals(0x43, buffer.get(101));
+
+        byte[] data = buffer.toArray();
+        Assert.assertEquals(102, data.length);
+        Assert.assertEquals(0x43, data[101]);
+
+        byte[] part = new byte[2];
+        buffer.copyTo(100, part, 0, 2);
+        Assert.assertArrayEquals(new byte[] { 0x42, 0x43 }, part);
+    }
+
+    @Test
+    public void testReuse() {
+        DataBuffer buffer = new DataBuffer();
+        int capacity = buffer.capacity();
+        buffer.add(new byte[200], 0, 200);
+        buffer.clear();
+        Assert.assertEquals(0, buffer.size());
+        Assert.assertEquals(capacity, buffer.capacity());
+
+        // huge messages reuse the backing array
+        buffer.add(new byte[1000000], 0, 1000000);
+        Assert.assertEquals(1000000, buffer.size());
+        buffer.clear();
+        int huge = buffer.capacity();
+        Assert.assertTrue(huge >= 1000000);
+        buffer.add(new byte[1000000], 0, 1000000);
+        buffer.clear();
+        Assert.assertEquals(huge, buffer.capacity());
+
+        // shrink after a run of small messages
+        for (int i = 0; i < 15; i++) {
+            buffer.add(new byte[100], 0, 100);
+            buffer.clear();
+        }
+        Assert.assertEquals(huge, buffer.capacity());
+        buffer.add(new byte[100], 0, 100);
+        buffer.clear();
+        Assert.assertEquals(capacity, buffer.capacity());
+    }
+
+    @Test
+    public void testRetainCapacity() {
+        DataBuffer buffer = new DataBuffer();
+        buffer.setRetainCapacity(4 * 1024 * 1024);
+        buffer.add(new byte[2000000], 0, 2000000);
+        int huge = buffer.capacity();
+        for (int i = 0; i < 100; i++) {
+            buffer.clear();
+        }
+        Assert.assertEquals(huge, buffer.capacity());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBounds() {
+        DataBuffer buffer = new DataBuffer();
+        buffer.add((byte) 0x01);
+        buffer.get(1);
+    }
+}
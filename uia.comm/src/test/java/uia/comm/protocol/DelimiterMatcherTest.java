@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm.protocol;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class DelimiterMatcherTest {
+
+    @Test
+    public void testMatch() {
+        DelimiterMatcher matcher = new DelimiterMatcher("</root>".getBytes());
+        Assert.assertEquals(7, matcher.length());
+        Assert.assertEquals(7, match(matcher, "</root>"));
+        Assert.assertEquals(7, match(matcher, "<</root>"));
+        Assert.assertEquals(7, match(matcher, "</ro</root>"));
+        Assert.assertEquals(2, match(matcher, "</root></"));
+        Assert.assertEquals(0, match(matcher, "</rooo"));
+    }
+
+    @Test
+    public void testOverlap() {
+        DelimiterMatcher matcher = new DelimiterMatcher(new byte[] { 0x01, 0x01, 0x02 });
+        Assert.assertEquals(3, match(matcher, new byte[] { 0x01, 0x01, 0x01, 0x01, 0x02 }));
+        Assert.assertEquals(2, match(matcher, new byte[] { 0x01, 0x02, 0x01, 0x01 }));
+
+        matcher = new DelimiterMatcher("abab".getBytes());
+        Assert.assertEquals(4, match(matcher, "aabab"));
+        Assert.assertEquals(3, match(matcher, "ababa"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmpty() {
+        new DelimiterMatcher(new byte[0]);
+    }
+
+    private int match(DelimiterMatcher matcher, String data) {
+        return match(matcher, data.getBytes());
+    }
+
+    private int match(DelimiterMatcher matcher, byte[] data) {
+        int matched = 0;
+        for (byte b : data) {
+            matched = matcher.next(matched, b);
+        }
+        return matched;
+    }
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm.protocol;
+
+import java.util.ArrayList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import uia.comm.protocol.ht.HTProtocol;
+
+/**
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class FramePoolTest extends AbstractProtocolTest {
+
+    @Test
+    public void testRecycle() {
+        FramePool pool = new FramePool(100, 2);
+        byte[] data = pool.acquire(10);
+        Assert.assertEquals(10, data.length);
+        Assert.assertEquals(0, pool.size(10));
+
+        pool.recycle(data);
+        pool.recycle(new byte[10]);
+        pool.recycle(new byte[10]);
+        pool.recycle(new byte[101]);
+        Assert.assertEquals(2, pool.size(10));
+        Assert.assertEquals(0, pool.size(101));
+        Assert.assertSame(data, pool.acquire(10));
+        Assert.assertEquals(1, pool.size(10));
+    }
+
+    @Test
+    public void testRelease() {
+        FramePool pool = new FramePool();
+        ProtocolEventArgs args = new ProtocolEventArgs(pool.acquire(4), pool);
+        Assert.assertTrue(args.isPooled());
+        Assert.assertTrue(args.getBuffer().isReadOnly());
+        Assert.assertEquals(4, args.getBuffer().remaining());
+
+        args.retain();
+        Assert.assertFalse(args.release());
+        Assert.assertNotNull(args.getData());
+        Assert.assertTrue(args.release());
+        Assert.assertNull(args.getData());
+        Assert.assertFalse(args.release());
+        Assert.assertEquals(1, pool.size(4));
+
+        ProtocolEventArgs plain = new ProtocolEventArgs(new byte[4]);
+        Assert.assertFalse(plain.isPooled());
+        Assert.assertFalse(plain.release());
+        Assert.assertNotNull(plain.getData());
+    }
+
+    @Test
+    public void testMonitor() {
+        FramePool pool = new FramePool();
+        HTProtocol<Object> protocol = new HTProtocol<Object>(new byte[] { (byte) 0x8a }, new byte[] { (byte) 0xa8 });
+        protocol.setFramePool(pool);
+        protocol.addMessageHandler(this);
+        ProtocolMonitor<Object> monitor = protocol.createMonitor("abc");
+
+        byte[] frame = new byte[] { (byte) 0x8a, 0x01, 0x02, (byte) 0xa8 };
+        AbstractProtocolMonitor.feed(monitor, frame, 0, frame.length);
+        Assert.assertTrue(this.recvArgs.isPooled());
+        byte[] first = this.recvArgs.getData();
+        Assert.assertArrayEquals(frame, first);
+        this.recvArgs.release();
+
+        AbstractProtocolMonitor.feed(monitor, frame, 0, frame.length);
+        Assert.assertSame(first, this.recvArgs.getData());
+        Assert.assertArrayEquals(frame, this.recvArgs.getData());
+    }
+
+    @Test
+    public void testMultiProtocol() {
+        HTProtocol<MultiProtocolMonitor<Object>> child = new HTProtocol<MultiProtocolMonitor<Object>>(new byte[] { (byte) 0x8a }, new byte[] { (byte) 0xa8 });
+        ArrayList<Protocol<MultiProtocolMonitor<Object>>> ps = new ArrayList<Protocol<MultiProtocolMonitor<Object>>>();
+        ps.add(child);
+
+        FramePool pool = new FramePool();
+        MultiProtocol<Object> protocol = new MultiProtocol<Object>(ps);
+        protocol.setFramePool(pool);
+        protocol.addMessageHandler(this);
+        Assert.assertSame(pool, child.getFramePool());
+
+        ProtocolMonitor<Object> monitor = protocol.createMonitor("abc");
+        byte[] frame = new byte[] { (byte) 0x8a, 0x01, 0x02, (byte) 0xa8 };
+        AbstractProtocolMonitor.feed(monitor, frame, 0, frame.length);
+        Assert.assertTrue(this.recvArgs.isPooled());
+        Assert.assertArrayEquals(frame, this.recvArgs.getData());
+        this.recvArgs.release();
+        Assert.assertEquals(1, pool.size(4));
+    }
+}
@@ -167,4 +167,97 @@ public class HLProtocolTest extends AbstractProtocolTest {
 
         protocol.remmoveMessageHandler(this);
     }
+
+    @Test
+    public void testMaxLength() {
+        HLProtocol<Object> protocol = new HLProtocol<Object>(
+                5,  // lenStartOffset
+                1,  // lenEndOffset
+                3,  // lenFieldIndex
+                2,  // lenFiedlCount
+                new LenReader() {
+
+                    @Override
+                    public int read(byte[] data) {
+                        return ((data[0] & 0xff) << 8) + (data[1] & 0xff);
+                    }
+                },
+                new byte[] { 0x10, 0x01 });
+        protocol.setMaxLength(1000);
+        protocol.addMessageHandler(this);
+
+        ProtocolMonitor<Object> monitor = protocol.createMonitor("abc");
+
+        // 0x1000 bytes body is rejected when the length field is read.
+        AbstractProtocolMonitor.feed(monitor, new byte[] { 0x10, 0x01, 0x01, 0x10, 0x00 }, 0, 5);
+        Assert.assertEquals("IdleState", monitor.getStateInfo());
+        Assert.assertNotNull(this.errArgs);
+        Assert.assertEquals(ProtocolEventArgs.ErrorCode.ERR_BODY_LENGTH, this.errArgs.getErrorCode());
+
+        // bulk copy of body
+        byte[] data = new byte[5 + 900 + 1];
+        data[0] = 0x10;
+        data[1] = 0x01;
+        data[3] = 0x03;
+        data[4] = (byte) 0x84;
+        for (int i = 5; i < data.length; i++) {
+            data[i] = 0x10;
+        }
+        AbstractProtocolMonitor.feed(monitor, data, 0, 100);
+        Assert.assertEquals("BodyState", monitor.getStateInfo());
+        Assert.assertEquals(100, monitor.getDataLength());
+        AbstractProtocolMonitor.feed(monitor, data, 100, data.length - 100);
+        Assert.assertEquals("IdleState", monitor.getStateInfo());
+        Assert.assertArrayEquals(data, this.recvArgs.getData());
+
+        protocol.remmoveMessageHandler(this);
+    }
+
+    @Test
+    public void testHugeLength() {
+        for (boolean compiled : new boolean[] { false, true }) {
+            HLProtocol<Object> protocol = new HLProtocol<Object>(
+                    5,  // lenStartOffset
+                    0,  // lenEndOffset
+                    1,  // lenFieldIndex
+                    4,  // lenFiedlCount
+                    new LenReader() {
+
+                        @Override
+                        public int read(byte[] data) {
+                            return ((data[0] & 0xff) << 24) + ((data[1] & 0xff) << 16) + ((data[2] & 0xff) << 8) + (data[3] & 0xff);
+                        }
+                    },
+                    new byte[] { 0x10 });
+            protocol.setCompiled(compiled);
+            protocol.addMessageHandler(this);
+            ProtocolMonitor<Object> monitor = protocol.createMonitor("abc");
+
+            // 2G body is not allocated when the length field is read.
+            byte[] huge = new byte[] { 0x10, 0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xf0, 0x00, 0x00 };
+            AbstractProtocolMonitor.feed(monitor, huge, 0, huge.length);
+            Assert.assertEquals("BodyState", monitor.getStateInfo());
+            Assert.assertEquals(huge.length, monitor.getDataLength());
+            monitor.reset();
+
+            // total length overflows.
+            this.errArgs = null;
+            byte[] overflow = new byte[] { 0x10, 0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff };
+            AbstractProtocolMonitor.feed(monitor, overflow, 0, overflow.length);
+            Assert.assertEquals("IdleState", monitor.getStateInfo());
+            Assert.assertEquals(ProtocolEventArgs.ErrorCode.ERR_BODY_LENGTH, this.errArgs.getErrorCode());
+
+            // negative length.
+            this.errArgs = null;
+            byte[] negative = new byte[] { 0x10, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xfe, 0x00 };
+            AbstractProtocolMonitor.feed(monitor, negative, 0, negative.length);
+            Assert.assertEquals("IdleState", monitor.getStateInfo());
+            Assert.assertEquals(ProtocolEventArgs.ErrorCode.ERR_BODY_LENGTH, this.errArgs.getErrorCode());
+
+            // normal message still works.
+            byte[] normal = new byte[] { 0x10, 0x00, 0x00, 0x00, 0x02, 0x41, 0x42 };
+            AbstractProtocolMonitor.feed(monitor, normal, 0, normal.length);
+            Assert.assertArrayEquals(normal, this.recvArgs.getData());
+        }
+    }
 }
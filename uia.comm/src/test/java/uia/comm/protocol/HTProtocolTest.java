@@ -158,4 +158,61 @@ public class HTProtocolTest extends AbstractProtocolTest {
         monitor.read((byte) 0xa7);
         Assert.assertEquals("IdleState", monitor.getStateInfo());
     }
+
+    @Test
+    public void testOverlappedTail() {
+        HTProtocol<Object> protocol = new HTProtocol<Object>(
+                new byte[] { (byte) 0x8a, (byte) 0x8b },
+                new byte[] { (byte) 0xa8, (byte) 0xa8, (byte) 0xa9 });
+        protocol.addMessageHandler(this);
+        ProtocolMonitor<Object> monitor = protocol.createMonitor("abc");
+
+        monitor.read((byte) 0x8a);
+        monitor.read((byte) 0x8a);
+        Assert.assertEquals("HeadState", monitor.getStateInfo());
+        monitor.read((byte) 0x8b);
+        Assert.assertEquals("BodyState", monitor.getStateInfo());
+        monitor.read((byte) 0x41);
+        monitor.read((byte) 0xa8);
+        Assert.assertEquals("TailState", monitor.getStateInfo());
+        monitor.read((byte) 0xa8);
+        monitor.read((byte) 0xa8);
+        Assert.assertEquals("TailState", monitor.getStateInfo());
+        monitor.read((byte) 0xa9);
+        Assert.assertEquals("IdleState", monitor.getStateInfo());
+
+        Assert.assertNull(this.errArgs);
+        Assert.assertArrayEquals(
+                new byte[] { (byte) 0x8a, (byte) 0x8b, 0x41, (byte) 0xa8, (byte) 0xa8, (byte) 0xa8, (byte) 0xa9 },
+                this.recvArgs.getData());
+    }
+    @Test
+    public void testControllerHandler() {
+        HTProtocol<Object> shared = new HTProtocol<Object>(
+                new byte[] { (byte) 0x8a, (byte) 0x8a },
+                new byte[] { (byte) 0xa8, (byte) 0xa8, (byte) 0xa8 });
+        Object c1 = new Object();
+        Object c2 = new Object();
+        AbstractProtocolTest h1 = new AbstractProtocolTest();
+        AbstractProtocolTest h2 = new AbstractProtocolTest();
+        shared.addMessageHandler(c1, h1);
+        shared.addMessageHandler(c2, h2);
+
+        ProtocolMonitor<Object> m1 = shared.createMonitor("c1");
+        m1.setController(c1);
+        ProtocolMonitor<Object> m2 = shared.createMonitor("c2");
+        m2.setController(c2);
+
+        byte[] frame = new byte[] { (byte) 0x8a, (byte) 0x8a, 0x41, (byte) 0xa8, (byte) 0xa8, (byte) 0xa8 };
+        AbstractProtocolMonitor.feed(m1, frame, 0, frame.length);
+        Assert.assertArrayEquals(frame, h1.recvArgs.getData());
+        Assert.assertNull(h2.recvArgs);
+
+        shared.removeMessageHandler(c1);
+        h1.recvArgs = null;
+        AbstractProtocolMonitor.feed(m1, frame, 0, frame.length);
+        AbstractProtocolMonitor.feed(m2, frame, 0, frame.length);
+        Assert.assertNull(h1.recvArgs);
+        Assert.assertArrayEquals(frame, h2.recvArgs.getData());
+    }
 }
@@ -19,12 +19,18 @@
 package uia.comm.protocol;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import uia.comm.protocol.BulkReadTest.Recorder;
 import uia.comm.protocol.ho.HOProtocol;
 import uia.comm.protocol.ht.HTProtocol;
+import uia.comm.protocol.ng.NGProtocol;
+import uia.comm.protocol.xml.XMLProtocol;
 
 /**
  *
@@ -165,4 +171,130 @@ public class MultiProtocolTest extends AbstractProtocolTest {
         monitor.read((byte) 0xa8);
         Assert.assertEquals("IdleState", monitor.getStateInfo());
     }
+
+    @Test
+    public void testHeadFilter() {
+        byte[] alphabet = new byte[] { 0x41, 0x42, 0x43, (byte) 0x8a, (byte) 0xa8, '<', '/', 'r', 'o', 't', '>', 0x00 };
+
+        // without head, every byte is passed to every monitor.
+        Recorder expected = new Recorder(new MultiProtocol<Object>(createProtocols(true)));
+        Recorder actual = new Recorder(new MultiProtocol<Object>(createProtocols(false)));
+        Recorder bulk = new Recorder(new MultiProtocol<Object>(createProtocols(false)));
+
+        Random random = new Random(4321);
+        for (int r = 0; r < 200; r++) {
+            byte[] stream = new byte[random.nextInt(300)];
+            for (int i = 0; i < stream.length; i++) {
+                stream[i] = alphabet[random.nextInt(alphabet.length)];
+            }
+
+            for (byte b : stream) {
+                expected.monitor.read(b);
+                actual.monitor.read(b);
+                Assert.assertEquals(expected.monitor.getStateInfo(), actual.monitor.getStateInfo());
+            }
+            bulk.monitor.read(stream, 0, stream.length);
+
+            Assert.assertEquals(expected.events, actual.events);
+            Assert.assertEquals(expected.events, bulk.events);
+            Assert.assertEquals(expected.monitor.getStateInfo(), bulk.monitor.getStateInfo());
+        }
+    }
+
+    @Test
+    public void testHeadless() {
+        ArrayList<Protocol<MultiProtocolMonitor<Object>>> ps = new ArrayList<Protocol<MultiProtocolMonitor<Object>>>();
+        ps.add(new HTProtocol<MultiProtocolMonitor<Object>>(new byte[] { (byte) 0x8a }, new byte[] { (byte) 0xa8 }));
+        ps.add(new NGProtocol<MultiProtocolMonitor<Object>>());
+        Recorder recorder = new Recorder(new MultiProtocol<Object>(ps));
+
+        recorder.monitor.read(new byte[] { 0x01, 0x02, (byte) 0x8a, 0x03, (byte) 0xa8 }, 0, 5);
+        Assert.assertEquals(1, recorder.events.size());
+        Assert.assertEquals("OK:[-118, 3, -88]", recorder.events.get(0));
+        recorder.monitor.read(new byte[] { 0x01, 0x02 }, 0, 2);
+        Assert.assertEquals(2, recorder.monitor.getDataLength());
+    }
+
+    @Test
+    public void testLockIn() {
+        MultiProtocol<Object> multi = new MultiProtocol<Object>(createProtocols(false));
+        multi.setLockInFrames(2);
+        multi.setFallbackErrors(2);
+        Recorder recorder = new Recorder(multi);
+        MultiProtocolMonitor<Object> monitor = (MultiProtocolMonitor<Object>) recorder.monitor;
+
+        byte[] ht = new byte[] { (byte) 0x8a, (byte) 0x8a, 0x01, (byte) 0xa8, (byte) 0xa8 };
+        byte[] ho = new byte[] { 0x41, 0x42, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06 };
+        byte[] htErr = new byte[] { (byte) 0x8a, (byte) 0x8a, 0x01, (byte) 0xa8, 0x00 };
+
+        monitor.read(ht, 0, ht.length);
+        Assert.assertNull(monitor.getLockedProtocol());
+        monitor.read(ho, 0, ho.length);
+        monitor.read(ht, 0, ht.length);
+        Assert.assertNull(monitor.getLockedProtocol());
+        monitor.read(ht, 0, ht.length);
+        Assert.assertSame(multi.protocols.get(1), monitor.getLockedProtocol());
+        Assert.assertEquals(4, recorder.events.size());
+
+        // other protocols are dropped.
+        monitor.read(ho, 0, ho.length);
+        monitor.read(ht, 0, ht.length);
+        Assert.assertEquals(5, recorder.events.size());
+
+        // fall back after continuous errors.
+        monitor.read(htErr, 0, htErr.length);
+        monitor.read(ht, 0, ht.length);
+        monitor.read(htErr, 0, htErr.length);
+        Assert.assertSame(multi.protocols.get(1), monitor.getLockedProtocol());
+        monitor.read(htErr, 0, htErr.length);
+        Assert.assertNull(monitor.getLockedProtocol());
+
+        monitor.read(ho, 0, ho.length);
+        Assert.assertEquals("OK:" + Arrays.toString(ho), recorder.events.get(recorder.events.size() - 1));
+    }
+
+    private List<Protocol<MultiProtocolMonitor<Object>>> createProtocols(boolean hideHead) {
+        ArrayList<Protocol<MultiProtocolMonitor<Object>>> ps = new ArrayList<Protocol<MultiProtocolMonitor<Object>>>();
+        ps.add(new HOProtocol<MultiProtocolMonitor<Object>>(new byte[] { 0x41, 0x42 }, 8));
+        ps.add(new HTProtocol<MultiProtocolMonitor<Object>>(new byte[] { (byte) 0x8a, (byte) 0x8a }, new byte[] { (byte) 0xa8, (byte) 0xa8 }));
+        ps.add(new XMLProtocol<MultiProtocolMonitor<Object>>("root"));
+        if (hideHead) {
+            for (int i = 0; i < ps.size(); i++) {
+                ps.set(i, new Headless(ps.get(i)));
+            }
+        }
+        return ps;
+    }
+
+    /**
+     * Protocol wrapper which hides the head.
+     */
+    static class Headless implements Protocol<MultiProtocolMonitor<Object>> {
+
+        private final Protocol<MultiProtocolMonitor<Object>> protocol;
+
+        Headless(Protocol<MultiProtocolMonitor<Object>> protocol) {
+            this.protocol = protocol;
+        }
+
+        @Override
+        public String getAliasName() {
+            return this.protocol.getAliasName();
+        }
+
+        @Override
+        public void addMessageHandler(ProtocolEventHandler<MultiProtocolMonitor<Object>> handler) {
+            this.protocol.addMessageHandler(handler);
+        }
+
+        @Override
+        public void remmoveMessageHandler(ProtocolEventHandler<MultiProtocolMonitor<Object>> handler) {
+            this.protocol.remmoveMessageHandler(handler);
+        }
+
+        @Override
+        public ProtocolMonitor<MultiProtocolMonitor<Object>> createMonitor(String name) {
+            return this.protocol.createMonitor(name);
+        }
+    }
 }
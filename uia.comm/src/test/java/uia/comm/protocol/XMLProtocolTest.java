@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright 2017 UIA
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package uia.comm.protocol;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import uia.comm.protocol.xml.XMLProtocol;
+
+/**
+ *
+ * @author Kyle K. Lin
+ *
+ */
+public class XMLProtocolTest extends AbstractProtocolTest {
+
+    private final XMLProtocol<Object> protocol;
+
+    public XMLProtocolTest() {
+        this.protocol = new XMLProtocol<Object>("root");
+        this.protocol.addMessageHandler(this);
+    }
+
+    @Test
+    public void testNormal() {
+        ProtocolMonitor<Object> monitor = this.protocol.createMonitor("abc");
+
+        read(monitor, "xx<root><a>1</a></root>");
+        Assert.assertEquals("IdleState", monitor.getStateInfo());
+        Assert.assertEquals("<root><a>1</a></root>", new String(this.recvArgs.getData()));
+    }
+
+    @Test
+    public void testOverlappedHead() {
+        ProtocolMonitor<Object> monitor = this.protocol.createMonitor("abc");
+
+        read(monitor, "<<root>");
+        Assert.assertEquals("BodyState", monitor.getStateInfo());
+        read(monitor, "1</root>");
+        Assert.assertEquals("IdleState", monitor.getStateInfo());
+        Assert.assertEquals("<root>1</root>", new String(this.recvArgs.getData()));
+    }
+
+    @Test
+    public void testOverlappedTail() {
+        ProtocolMonitor<Object> monitor = this.protocol.createMonitor("abc");
+
+        read(monitor, "<root>1<</root>");
+        Assert.assertEquals("IdleState", monitor.getStateInfo());
+        Assert.assertEquals("<root>1<</root>", new String(this.recvArgs.getData()));
+    }
+
+    @Test
+    public void testHeadRepeat() {
+        ProtocolMonitor<Object> monitor = this.protocol.createMonitor("abc");
+
+        read(monitor, "<root>1<<root>");
+        Assert.assertNotNull(this.errArgs);
+        Assert.assertEquals(ProtocolEventArgs.ErrorCode.ERR_HEAD_REPEAT, this.errArgs.getErrorCode());
+        read(monitor, "2</root>");
+        Assert.assertEquals("<root>2</root>", new String(this.recvArgs.getData()));
+    }
+
+    private void read(ProtocolMonitor<Object> monitor, String data) {
+        for (byte b : data.getBytes()) {
+            monitor.read(b);
+        }
+    }
+}